@@ -0,0 +1,100 @@
+package fr.noop.subtitle.benchmark;
+
+import fr.noop.subtitle.ass.AssParser;
+import fr.noop.subtitle.ass.AssWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.sami.SamiParser;
+import fr.noop.subtitle.sami.SamiWriter;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.srt.SrtWriter;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.stl.StlWriter;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.vtt.VttParser;
+import fr.noop.subtitle.vtt.VttWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Benchmark inputs are the real files of test-files, test45678.stl and subtitle.stl are left out as they do not parse.
+ * test-files has no VTT, ASS or SAMI file, those inputs are synthesized: the cues of SOURCE written in that format.
+ */
+final class Fixtures {
+    static final String DIRECTORY = "test-files";
+    static final String SOURCE = "SWEDISHDICKS_101_CORRECTS_08022018.stl";
+    static final String SYNTHETIC = "synthetic.";
+
+    private Fixtures() {
+    }
+
+    static SubtitleParser parser(String format) {
+        switch (format) {
+            case "srt":
+                return new SrtParser("utf-8");
+            case "vtt":
+                return new VttParser("utf-8");
+            case "ass":
+                return new AssParser("utf-8");
+            case "smi":
+                return new SamiParser("utf-8");
+            case "stl":
+                return new StlParser();
+            default:
+                throw new IllegalArgumentException(String.format("No parser for %s", format));
+        }
+    }
+
+    static SubtitleWriter writer(String format) {
+        switch (format) {
+            case "srt":
+                return new SrtWriter("utf-8");
+            case "vtt":
+                return new VttWriter("utf-8");
+            case "ass":
+                return new AssWriter("utf-8");
+            case "smi":
+                return new SamiWriter("utf-8");
+            case "xml":
+                return new TtmlWriter();
+            case "stl":
+                return new StlWriter();
+            default:
+                throw new IllegalArgumentException(String.format("No writer for %s", format));
+        }
+    }
+
+    /**
+     * @return the format of a benchmark input, given by its extension
+     */
+    static String format(String file) {
+        return file.substring(file.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    /**
+     * @return the cues of a file from test-files
+     */
+    static SubtitleObject source(String file) throws Exception {
+        try (InputStream is = new FileInputStream(Paths.get(DIRECTORY, file).toFile())) {
+            return parser(format(file)).parse(is, false);
+        }
+    }
+
+    /**
+     * @return the content of a file from test-files, or of a synthetic file named synthetic.&lt;format&gt;
+     */
+    static byte[] input(String file) throws Exception {
+        if (!file.startsWith(SYNTHETIC)) {
+            return Files.readAllBytes(Paths.get(DIRECTORY, file));
+        }
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer(format(file)).write(source(SOURCE), os);
+        return os.toByteArray();
+    }
+}
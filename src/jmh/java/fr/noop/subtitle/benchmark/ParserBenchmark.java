@@ -0,0 +1,77 @@
+package fr.noop.subtitle.benchmark;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of every parser, run with -prof gc to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({
+            "105-Collerette_TC-pourSme_Fr-20_20181207_Tto.stl",
+            "16LDS_SousTitres_FRA_25FPS_20180131.stl",
+            "32004-001_subtitle_FRE.STL",
+            "82911-001_subtitle_FRE.stl",
+            "Banque.stl",
+            "Chickie_24_enSDH.stl",
+            "LG_SWEDISHDICKS_INTERNATIONALVERSION_101_HD_8CH_EN_FRSUB_16X9_178_25_DIGITAL_CONFORMED_FINAL.stl",
+            "S0852015000_Sony_AwayAndBack_S_F_FRA.stl",
+            "SC002288_StudioCanal_AirAmerica_S_Complets_F_FRA.stl",
+            "SLE05N0_Eclair_TUCKERMAX_S_F_FRA.stl",
+            "SWEDISHDICKS_101_CORRECTS_08022018.stl",
+            "bug_with_60_seconds.stl",
+            "episode5_29.97fps_engSDHtest.stl",
+            "first_time_in_cue_with_frame_at_25.stl",
+            "playground-s01e01.stl",
+            "test_arabic_stl.stl",
+            "SWEDISHDICKS_101_CORRECTS_08022018_SECONVERT.srt",
+            "utf8_with_BOM.srt",
+            "synthetic.vtt",
+            "synthetic.ass",
+            "synthetic.smi"})
+    public String file;
+
+    private String format;
+    private byte[] input;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.format = Fixtures.format(this.file);
+        this.input = Fixtures.input(this.file);
+    }
+
+    /**
+     * Build the whole subtitle object
+     */
+    @Benchmark
+    public SubtitleObject parse() throws Exception {
+        return Fixtures.parser(this.format).parse(new ByteArrayInputStream(this.input), false);
+    }
+
+    /**
+     * Pull cues one at a time
+     */
+    @Benchmark
+    public void read(Blackhole blackhole) throws Exception {
+        try (SubtitleCueReader reader = Fixtures.parser(this.format).read(new ByteArrayInputStream(this.input), false)) {
+            SubtitleCue cue;
+
+            while ((cue = reader.next()) != null) {
+                blackhole.consume(cue);
+            }
+        }
+    }
+}
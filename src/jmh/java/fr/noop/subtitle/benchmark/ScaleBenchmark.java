@@ -0,0 +1,76 @@
+package fr.noop.subtitle.benchmark;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.util.SubtitleGenerator;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time of generated files from 10^4 to 10^6 cues, to see how each parser scales.
+ * STL is left out, a file cannot hold more than 65536 subtitles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScaleBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int cues;
+
+    @Param({"srt", "vtt", "ass", "smi"})
+    public String format;
+
+    private Path input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SubtitleGenerator generator = new SubtitleGenerator(0);
+        generator.setCueCount(this.cues);
+        generator.setStyleDensity(0.2f);
+        generator.setOverlapRate(0.05f);
+
+        this.input = Files.createTempFile("scale", "." + this.format);
+        SubtitleWriter writer = Fixtures.writer(this.format);
+
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(this.input))) {
+            writer.begin(generator.getProperties(), os);
+            SubtitleCue cue;
+
+            while ((cue = generator.next()) != null) {
+                writer.accept(cue);
+            }
+
+            writer.end();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(this.input);
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws Exception {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(this.input));
+             SubtitleCueReader reader = Fixtures.parser(this.format).read(is, false)) {
+            SubtitleCue cue;
+
+            while ((cue = reader.next()) != null) {
+                blackhole.consume(cue);
+            }
+        }
+    }
+}
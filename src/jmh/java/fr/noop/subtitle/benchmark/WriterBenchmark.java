@@ -0,0 +1,46 @@
+package fr.noop.subtitle.benchmark;
+
+import fr.noop.subtitle.model.SubtitleObject;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of every writer, run with -prof gc to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+    @Param({"srt", "vtt", "ass", "smi", "xml", "stl"})
+    public String format;
+
+    @Param({
+            "SWEDISHDICKS_101_CORRECTS_08022018.stl",
+            "SLE05N0_Eclair_TUCKERMAX_S_F_FRA.stl",
+            "SWEDISHDICKS_101_CORRECTS_08022018_SECONVERT.srt",
+            "utf8_with_BOM.srt"})
+    public String file;
+
+    private SubtitleObject source;
+    private ByteArrayOutputStream os;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.source = Fixtures.source(this.file);
+        this.os = new ByteArrayOutputStream();
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        // Output buffer is reused so only the writer allocations are measured
+        this.os.reset();
+        Fixtures.writer(this.format).write(this.source, this.os);
+        return this.os.size();
+    }
+}
@@ -1,5 +1,6 @@
 package fr.noop.subtitle;
 
+import fr.noop.subtitle.model.SubtitleCue;
 import fr.noop.subtitle.model.SubtitleParser;
 import fr.noop.subtitle.model.SubtitleObject;
 import fr.noop.subtitle.model.SubtitleParsingException;
@@ -20,6 +21,7 @@ import org.apache.commons.io.input.BOMInputStream;
 
 public class Analyse {
     private Options options = new Options();
+    private Convert convert = new Convert();
 
     private void configureOptions() {
         this.options.addOption("h", "help", false, "print help");
@@ -70,9 +72,11 @@ public class Analyse {
         if (inputSubtitle.hasProperty(Property.START_TIMECODE_PRE_ROLL)) {
             obj.put("start_timecode", formatTimecode(inputSubtitle, (SubtitleTimeCode) inputSubtitle.getProperty(Property.START_TIMECODE_PRE_ROLL)));
         }
-        if (inputSubtitle.getCues().size() > 0) {
-            obj.put("first_cue", formatTimecode(inputSubtitle, (SubtitleTimeCode) inputSubtitle.getCues().get(0).getStartTime()));
-            obj.put("last_cue", formatTimecode(inputSubtitle, (SubtitleTimeCode) inputSubtitle.getCues().get(inputSubtitle.getCues().size() - 1).getStartTime()));        
+        // Stl cues are only built for the first and last ones
+        SubtitleCue firstCue = inputSubtitle.getFirstCue();
+        if (firstCue != null) {
+            obj.put("first_cue", formatTimecode(inputSubtitle, firstCue.getStartTime()));
+            obj.put("last_cue", formatTimecode(inputSubtitle, inputSubtitle.getLastCue().getStartTime()));
         }
         if (inputSubtitle.hasProperty(Property.DISPLAY_STANDARD)) {
             obj.put("subtitle_type", String.format("EBU STL subtitle (%s)", inputSubtitle.getProperty(SubtitleObject.Property.DISPLAY_STANDARD)));
@@ -81,6 +85,15 @@ public class Analyse {
         return obj;
     }
 
+    /**
+     * Analyse a stream, the file path gives the subtitle format
+     */
+    public JSONObject analyse(InputStream is, String filePath) throws IOException, SubtitleParsingException {
+        SubtitleParser subtitleParser = this.convert.buildParser(filePath, "utf-8");
+        SubtitleObject inputSubtitle = subtitleParser.parse(new BOMInputStream(is), true);
+        return getProperties(inputSubtitle);
+    }
+
     private void run(String[] args) {
         // Create the parser
         CommandLineParser parser = new DefaultParser();
@@ -96,7 +109,7 @@ public class Analyse {
             SubtitleParser subtitleParser = null;
 
             try {
-                subtitleParser = new Convert().buildParser(fileAnalysed, "utf-8");
+                subtitleParser = this.convert.buildParser(fileAnalysed, "utf-8");
             } catch(IOException e) {
                 System.err.println(String.format("Unable to build parser for file %s: %s", fileAnalysed, e.getMessage()));
                 System.exit(1);
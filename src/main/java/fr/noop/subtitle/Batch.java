@@ -0,0 +1,415 @@
+package fr.noop.subtitle;
+
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+import org.apache.commons.cli.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Convert many files in a single JVM.
+ * Jobs come from a directory or from a manifest and run on a fixed thread pool,
+ * a failing file is reported in the summary without stopping the other ones.
+ */
+public class Batch {
+    private Options options = new Options();
+    private Convert convert = new Convert();
+
+    /**
+     * A conversion from an input file to an output file
+     */
+    public static class Job {
+        private String inputFilePath;
+        private String outputFilePath;
+
+        public Job(String inputFilePath, String outputFilePath) {
+            this.inputFilePath = inputFilePath;
+            this.outputFilePath = outputFilePath;
+        }
+
+        public String getInputFilePath() {
+            return this.inputFilePath;
+        }
+
+        public String getOutputFilePath() {
+            return this.outputFilePath;
+        }
+    }
+
+    /**
+     * Outcome of a job
+     */
+    public static class Result {
+        private Job job;
+        private String error; // Null if the conversion succeeded
+        private long duration; // In milliseconds
+
+        public Result(Job job, String error, long duration) {
+            this.job = job;
+            this.error = error;
+            this.duration = duration;
+        }
+
+        public Job getJob() {
+            return this.job;
+        }
+
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+
+        public String getError() {
+            return this.error;
+        }
+
+        public long getDuration() {
+            return this.duration;
+        }
+    }
+
+    private void configureOptions() {
+        this.options.addOption("h", "help", false, "print help");
+
+        // Input directory
+        this.options.addOption(Option.builder("i")
+                .longOpt("input-dir")
+                .hasArg()
+                .desc("Input directory, every supported file is converted")
+                .build());
+
+        // Manifest file
+        this.options.addOption(Option.builder("m")
+                .longOpt("manifest-file")
+                .hasArg()
+                .desc("Manifest file, one tab separated input and output file per line")
+                .build());
+
+        // Output directory
+        this.options.addOption(Option.builder("o")
+                .longOpt("output-dir")
+                .hasArg()
+                .desc("Output directory, required with an input directory")
+                .build());
+
+        // Output format
+        this.options.addOption(Option.builder("of")
+                .longOpt("output-format")
+                .hasArg()
+                .desc("Output file extension, required with an input directory")
+                .build());
+
+        // Number of threads
+        this.options.addOption(Option.builder("t")
+                .longOpt("threads")
+                .hasArg()
+                .desc("Number of files converted at the same time")
+                .build());
+
+        // Summary report file
+        this.options.addOption(Option.builder("r")
+                .longOpt("report-file")
+                .hasArg()
+                .desc("Output summary report file")
+                .build());
+
+        Convert.addConversionOptions(this.options);
+    }
+
+    public Batch() {
+        this.configureOptions();
+    }
+
+    private void printHelp() {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("subtitle-batch", this.options);
+    }
+
+    /**
+     * List the jobs converting every parsable file of a directory tree
+     * Output files keep the relative path of their input file
+     */
+    public List<Job> listJobs(Path inputDir, Path outputDir, String outputFormat) throws IOException {
+        try (Stream<Path> paths = Files.walk(inputDir)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> this.convert.isParsable(path.toString()))
+                    .sorted()
+                    .map(path -> {
+                        String name = inputDir.relativize(path).toString();
+                        name = name.substring(0, name.lastIndexOf('.') + 1) + outputFormat;
+                        return new Job(path.toString(), outputDir.resolve(name).toString());
+                    })
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Read the jobs of a manifest file
+     * Each line holds an input and an output file separated by a tab, empty lines and lines starting with # are ignored
+     */
+    public List<Job> readManifest(Path manifestFile) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] files = line.split("\t");
+
+                if (files.length != 2) {
+                    throw new IOException(String.format("Invalid manifest line %d: %s", lineNumber, line));
+                }
+
+                jobs.add(new Job(files[0], files[1]));
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Check the output files before any job runs
+     * A job must not write the output of another job, nor overwrite an input file it may still be reading
+     *
+     * @return the error of each job, null if the job can run
+     */
+    List<String> checkOutputs(List<Job> jobs) {
+        Set<Path> inputs = new HashSet<>();
+        Map<Path, Integer> outputs = new HashMap<>();
+
+        for (Job job : jobs) {
+            inputs.add(Paths.get(job.getInputFilePath()).toAbsolutePath().normalize());
+            outputs.merge(Paths.get(job.getOutputFilePath()).toAbsolutePath().normalize(), 1, Integer::sum);
+        }
+
+        List<String> errors = new ArrayList<>(jobs.size());
+
+        for (Job job : jobs) {
+            Path output = Paths.get(job.getOutputFilePath()).toAbsolutePath().normalize();
+
+            if (inputs.contains(output)) {
+                errors.add(String.format("Output file %s is also an input file", job.getOutputFilePath()));
+            } else if (outputs.get(output) > 1) {
+                errors.add(String.format("Output file %s is written by several jobs", job.getOutputFilePath()));
+            } else {
+                errors.add(null);
+            }
+        }
+
+        return errors;
+    }
+
+    /**
+     * Run the jobs on a fixed thread pool, jobs having a conflicting output file fail without running
+     *
+     * @return the results in the order of the jobs
+     */
+    public List<Result> convert(List<Job> jobs, CommandLine line, int threads) throws InterruptedException {
+        List<String> errors = this.checkOutputs(jobs);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<Result>> futures = new ArrayList<>(jobs.size());
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                futures.add(errors.get(i) == null ? executor.submit(() -> this.convert(job, line)) : null);
+            }
+
+            List<Result> results = new ArrayList<>(jobs.size());
+
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i) == null) {
+                    results.add(new Result(jobs.get(i), errors.get(i), 0));
+                    continue;
+                }
+
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // An error escaping the job, such as a stack overflow, only fails this job
+                    Job job = jobs.get(i);
+                    String error = String.format("Unable to convert file %s: %s", job.getInputFilePath(), e.getCause());
+                    results.add(new Result(job, error, 0));
+                }
+            }
+
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    Result convert(Job job, CommandLine line) {
+        long start = System.nanoTime();
+        String error = null;
+
+        try {
+            Path outputDir = Paths.get(job.getOutputFilePath()).toAbsolutePath().getParent();
+
+            if (outputDir != null) {
+                Files.createDirectories(outputDir);
+            }
+
+            this.convert.convert(job.getInputFilePath(), job.getOutputFilePath(), line);
+        } catch (IOException | SubtitleParsingException e) {
+            error = e.getMessage();
+        } catch (RuntimeException e) {
+            // A malformed file must not stop the batch
+            error = String.format("Unable to convert file %s: %s", job.getInputFilePath(), e);
+        }
+
+        return new Result(job, error, (System.nanoTime() - start) / 1000000);
+    }
+
+    public JSONObject getSummary(List<Result> results) {
+        JSONArray files = new JSONArray();
+        int failed = 0;
+
+        for (Result result : results) {
+            JSONObject file = new JSONObject();
+            file.put("input_file", result.getJob().getInputFilePath());
+            file.put("output_file", result.getJob().getOutputFilePath());
+            file.put("success", result.isSuccess());
+            file.put("duration", result.getDuration());
+
+            if (!result.isSuccess()) {
+                file.put("error", result.getError());
+                failed++;
+            }
+
+            files.put(file);
+        }
+
+        JSONObject obj = new JSONObject();
+        obj.put("total", results.size());
+        obj.put("converted", results.size() - failed);
+        obj.put("failed", failed);
+        obj.put("files", files);
+        return obj;
+    }
+
+    private void run(String[] args) {
+        // Create the parser
+        CommandLineParser parser = new DefaultParser();
+
+        try {
+            // Parse the command line to get options
+            CommandLine line = parser.parse(this.options, args);
+
+            if (line.hasOption('h')) {
+                this.printHelp();
+                System.exit(1);
+            }
+
+            // Get options
+            String inputDir = line.getOptionValue("i");
+            String manifestFile = line.getOptionValue("m");
+            String outputDir = line.getOptionValue("o");
+            String outputFormat = line.getOptionValue("of");
+            String reportFile = line.getOptionValue("r");
+            int threads = Runtime.getRuntime().availableProcessors();
+
+            if ((inputDir == null) == (manifestFile == null)
+                    || (inputDir != null && (outputDir == null || outputFormat == null))) {
+                this.printHelp();
+                System.exit(1);
+            }
+
+            if (line.hasOption("t")) {
+                try {
+                    threads = Integer.parseInt(line.getOptionValue("t"));
+                } catch (NumberFormatException e) {
+                    System.err.println(String.format("Invalid number of threads %s", line.getOptionValue("t")));
+                    System.exit(1);
+                }
+
+                if (threads < 1) {
+                    System.err.println(String.format("Invalid number of threads %d", threads));
+                    System.exit(1);
+                }
+            }
+
+            // List jobs
+            List<Job> jobs = null;
+
+            try {
+                if (inputDir != null) {
+                    jobs = this.listJobs(Paths.get(inputDir), Paths.get(outputDir), outputFormat);
+                } else {
+                    jobs = this.readManifest(Paths.get(manifestFile));
+                }
+            } catch (IOException e) {
+                System.err.println(String.format("Unable to list files to convert: %s", e.getMessage()));
+                System.exit(1);
+            }
+
+            // Convert files
+            List<Result> results = null;
+
+            try {
+                results = this.convert(jobs, line, threads);
+            } catch (InterruptedException e) {
+                System.err.println("Conversion interrupted");
+                System.exit(1);
+            }
+
+            JSONObject summary = this.getSummary(results);
+
+            for (Result result : results) {
+                if (!result.isSuccess()) {
+                    System.err.println(result.getError());
+                }
+            }
+
+            System.out.println(String.format("%d files converted, %d failed",
+                    summary.getInt("converted"), summary.getInt("failed")));
+
+            // Write summary report
+            if (reportFile != null) {
+                try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(reportFile))) {
+                    summary.write(writer);
+                } catch (IOException e) {
+                    System.err.println(String.format("Unable to write report file %s: %s", reportFile, e.getMessage()));
+                    System.exit(1);
+                }
+            }
+
+            System.exit(summary.getInt("failed") > 0 ? 1 : 0);
+        } catch (ParseException exp) {
+            this.printHelp();
+            System.exit(1);
+        }
+    }
+
+    public static void main(String[] args) {
+        Batch batch = new Batch();
+        batch.run(args);
+    }
+}
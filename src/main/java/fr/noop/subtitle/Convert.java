@@ -10,6 +10,9 @@
 
 package fr.noop.subtitle;
 
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleCueSink;
 import fr.noop.subtitle.model.SubtitleObject;
 import fr.noop.subtitle.model.SubtitleParser;
 import fr.noop.subtitle.model.SubtitleParsingException;
@@ -20,6 +23,9 @@ import fr.noop.subtitle.model.SubtitleWriterWithHeader;
 import fr.noop.subtitle.model.SubtitleWriterWithTimecode;
 import fr.noop.subtitle.model.SubtitleWriterWithDsc;
 import fr.noop.subtitle.model.SubtitleWriterWithOffset;
+import fr.noop.subtitle.stl.StlObject;
+import fr.noop.subtitle.stl.StlTti;
+import fr.noop.subtitle.util.SubtitleTimeCode;
 
 import org.apache.commons.cli.*;
 import org.apache.commons.io.input.BOMInputStream;
@@ -27,9 +33,15 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
 import java.nio.file.*;
 
-import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
 
 public class Convert {
     private Options options = new Options();
@@ -62,6 +74,7 @@ public class Convert {
     }
 
     private enum ConvertParser {
+        TTML(ConvertFormat.TTML, "fr.noop.subtitle.ttml.TtmlParser", false),
         SAMI(ConvertFormat.SAMI, "fr.noop.subtitle.sami.SamiParser", true),
         VTT(ConvertFormat.VTT, "fr.noop.subtitle.vtt.VttParser", true),
         SRT(ConvertFormat.SRT, "fr.noop.subtitle.srt.SrtParser", true),
@@ -71,6 +84,7 @@ public class Convert {
         private ConvertFormat format;
         private String className;
         private boolean charsetConstructor;
+        private volatile Constructor<?> constructor; // Resolved on first use
 
         ConvertParser(ConvertFormat format, String className, boolean charsetConstructor) {
             this.format = format;
@@ -93,6 +107,18 @@ public class Convert {
             return this.charsetConstructor;
         }
 
+        /**
+         * @return the parser constructor, looked up once and reused by every conversion
+         */
+        public Constructor<?> getConstructor() throws ReflectiveOperationException {
+            if (this.constructor == null) {
+                Class<?> parserClass = Class.forName(this.className);
+                this.constructor = this.charsetConstructor ? parserClass.getConstructor(String.class) : parserClass.getConstructor();
+            }
+
+            return this.constructor;
+        }
+
         public static ConvertParser getEnum(ConvertFormat format) {
             for(ConvertParser v : values())
                 if (v.getFormat() == format) {
@@ -119,6 +145,7 @@ public class Convert {
         private boolean withTimecode;
         private boolean withDsc;
         private boolean withOffset;
+        private volatile Constructor<?> constructor; // Resolved on first use
 
         ConvertWriter(ConvertFormat format, String className, boolean charsetConstructor, boolean withHeader, boolean withFrameRate, boolean withInputFrameRate, boolean withTimecode, boolean withDsc, boolean withOffset) {
             this.format = format;
@@ -171,6 +198,18 @@ public class Convert {
             return this.withOffset;
         }
 
+        /**
+         * @return the writer constructor, looked up once and reused by every conversion
+         */
+        public Constructor<?> getConstructor() throws ReflectiveOperationException {
+            if (this.constructor == null) {
+                Class<?> writerClass = Class.forName(this.className);
+                this.constructor = this.charsetConstructor ? writerClass.getConstructor(String.class) : writerClass.getConstructor();
+            }
+
+            return this.constructor;
+        }
+
         public static ConvertWriter getEnum(ConvertFormat format) {
             for(ConvertWriter v : values())
                 if (v.getFormat() == format) {
@@ -202,8 +241,23 @@ public class Convert {
                 .desc("Output file")
                 .build());
 
+        // Output subtitle object to json file option
+        this.options.addOption(Option.builder("ojf")
+                .required(false)
+                .longOpt("output-json-file")
+                .hasArg()
+                .desc("Output subtitle object to json file")
+                .build());
+
+        addConversionOptions(this.options);
+    }
+
+    /**
+     * Configure the options shared by every conversion
+     */
+    static void addConversionOptions(Options options) {
         // Input charset option
-        this.options.addOption(Option.builder("ic")
+        options.addOption(Option.builder("ic")
                 .required(false)
                 .longOpt("input-charset")
                 .hasArg()
@@ -211,7 +265,7 @@ public class Convert {
                 .build());
 
         // Output charset option
-        this.options.addOption(Option.builder("oc")
+        options.addOption(Option.builder("oc")
                 .required(false)
                 .longOpt("output-charset")
                 .hasArg()
@@ -219,7 +273,7 @@ public class Convert {
                 .build());
 
         // Output timecode option
-        this.options.addOption(Option.builder("otc")
+        options.addOption(Option.builder("otc")
                 .required(false)
                 .longOpt("output-timecode")
                 .hasArg()
@@ -227,14 +281,14 @@ public class Convert {
                 .build());
 
         // Output charset option
-        this.options.addOption(Option.builder("dsm")
+        options.addOption(Option.builder("dsm")
                 .required(false)
                 .longOpt("disable-strict-mode")
                 .desc("Disable strict mode")
                 .build());
 
         // Input header file
-        this.options.addOption(Option.builder("hf")
+        options.addOption(Option.builder("hf")
                 .required(false)
                 .longOpt("header-file")
                 .hasArg()
@@ -242,7 +296,7 @@ public class Convert {
                 .build());
 
         // Output frame rate option
-        this.options.addOption(Option.builder("ofr")
+        options.addOption(Option.builder("ofr")
                 .required(false)
                 .longOpt("output-framerate")
                 .hasArg()
@@ -250,7 +304,7 @@ public class Convert {
                 .build());
        
         // Input frame rate option
-        this.options.addOption(Option.builder("ifr")
+        options.addOption(Option.builder("ifr")
                 .required(false)
                 .longOpt("Input-framerate")
                 .hasArg()
@@ -258,7 +312,7 @@ public class Convert {
                 .build());
 
         // Output display standard code option
-        this.options.addOption(Option.builder("dsc")
+        options.addOption(Option.builder("dsc")
                 .required(false)
                 .longOpt("output-dsc")
                 .hasArg()
@@ -266,20 +320,12 @@ public class Convert {
                 .build());
 
         // Output offset option
-        this.options.addOption(Option.builder("off")
+        options.addOption(Option.builder("off")
                 .required(false)
                 .longOpt("output-offset")
                 .hasArg()
                 .desc("Output offset timecode")
                 .build());
-
-        // Output subtitle object to json file option
-        this.options.addOption(Option.builder("ojf")
-                .required(false)
-                .longOpt("output-json-file")
-                .hasArg()
-                .desc("Output subtitle object to json file")
-                .build());
     }
 
     public Convert() {
@@ -314,52 +360,87 @@ public class Convert {
             // Get options
             String inputFilePath = line.getOptionValue("i");
             String outputFilePath = line.getOptionValue("o");
-            String inputCharset = line.getOptionValue("ic", "utf-8");
-            String outputCharset = line.getOptionValue("oc", "utf-8");
-            String outputTimecode = line.getOptionValue("otc");
-            String headerFilePath = line.getOptionValue("hf");
-            String outputFrameRate = line.getOptionValue("ofr");
-            String inputFrameRate = line.getOptionValue("ifr");
-            String outputDsc = line.getOptionValue("dsc");
-            String outputOffset = line.getOptionValue("off");
-            String outputJsonFile = line.getOptionValue("ojf");
-            boolean disableStrictMode = line.hasOption("disable-strict-mode");
-
-            // Build parser for input file
-            SubtitleParser subtitleParser = null;
 
             try {
-                subtitleParser = this.buildParser(inputFilePath, inputCharset);
-            } catch(IOException e) {
-                System.err.println(String.format("Unable to build parser for file %s: %s", inputFilePath, e.getMessage()));
+                this.convert(inputFilePath, outputFilePath, line);
+            } catch (IOException | SubtitleParsingException e) {
+                System.err.println(e.getMessage());
                 System.exit(1);
             }
+        }
+        catch(ParseException exp) {
+            this.printHelp();
+            System.exit(1);
+        }
+    }
 
-            InputStream is = null;
-            BOMInputStream bom = null;
+    /**
+     * Convert a single file using the conversion options of a command line
+     * Input and output files are closed once the conversion is done, so this can be called repeatedly in the same JVM
+     */
+    public void convert(String inputFilePath, String outputFilePath, CommandLine line) throws IOException, SubtitleParsingException {
+        // Open input file
+        InputStream is = null;
 
-            // Open input file
-            try {
-                 is = new FileInputStream(inputFilePath);
-                 bom = new BOMInputStream(is);
-            } catch(IOException e) {
-                System.err.println(String.format("Input file %s does not exist: %s", inputFilePath, e.getMessage()));
-                System.exit(1);
-            }
+        try {
+            is = new FileInputStream(inputFilePath);
+        } catch(IOException e) {
+            throw new IOException(String.format("Input file %s does not exist: %s", inputFilePath, e.getMessage()), e);
+        }
+
+        try (InputStream in = is) {
+            this.convert(in, inputFilePath, null, outputFilePath, line);
+        }
+    }
 
-            // Parse input file
-            SubtitleObject inputSubtitle = null;
+    /**
+     * Convert a stream using the conversion options of a command line
+     * File paths give the input and output formats and are used in error messages
+     * The output file is created when no output stream is given, otherwise the output stream is not closed
+     */
+    public void convert(InputStream is, String inputFilePath, OutputStream os, String outputFilePath, CommandLine line) throws IOException, SubtitleParsingException {
+        // Get options
+        String inputCharset = line.getOptionValue("ic", "utf-8");
+        String outputCharset = line.getOptionValue("oc", "utf-8");
+        String outputTimecode = line.getOptionValue("otc");
+        String headerFilePath = line.getOptionValue("hf");
+        String outputFrameRate = line.getOptionValue("ofr");
+        String inputFrameRate = line.getOptionValue("ifr");
+        String outputDsc = line.getOptionValue("dsc");
+        String outputOffset = line.getOptionValue("off");
+        String outputJsonFile = line.getOptionValue("ojf");
+        boolean disableStrictMode = line.hasOption("disable-strict-mode");
+
+        // Build parser for input file
+        SubtitleParser subtitleParser = null;
 
-            try {
+        try {
+            subtitleParser = this.buildParser(inputFilePath, inputCharset);
+        } catch(IOException e) {
+            throw new IOException(String.format("Unable to build parser for file %s: %s", inputFilePath, e.getMessage()), e);
+        }
+
+        BOMInputStream bom = new BOMInputStream(is);
+
+        // Parse input file
+        // Cues are streamed from the input to the output file unless the whole object is needed
+        SubtitleObject inputSubtitle = null;
+        SubtitleCueReader inputReader = null;
+
+        try {
+            if (outputJsonFile != null) {
                 inputSubtitle = subtitleParser.parse(bom, !disableStrictMode);
-            } catch (IOException e) {
-                System.err.println(String.format("Unable ro read input file %s: %s", inputFilePath, e.getMessage()));
-                System.exit(1);
-            } catch (SubtitleParsingException e) {
-                System.err.println(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
-                System.exit(1);
+            } else {
+                inputReader = subtitleParser.read(bom, !disableStrictMode);
             }
+        } catch (IOException e) {
+            throw new IOException(String.format("Unable ro read input file %s: %s", inputFilePath, e.getMessage()), e);
+        } catch (SubtitleParsingException e) {
+            throw new SubtitleParsingException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
+        }
 
+        // The reader is released whether the conversion succeeds or not
+        try {
             // Parser header file
             String headerText = null;
             try {
@@ -367,8 +448,7 @@ public class Convert {
                     headerText = new String(Files.readAllBytes(Paths.get(headerFilePath)));
                 }
             } catch(IOException e) {
-                System.err.println(String.format("Header file %s does not exist: %s", headerFilePath, e.getMessage()));
-                System.exit(1);
+                throw new IOException(String.format("Header file %s does not exist: %s", headerFilePath, e.getMessage()), e);
             }
 
             // Build writer for the output file
@@ -377,80 +457,114 @@ public class Convert {
             try {
                 writer = this.buildWriter(outputFilePath, outputCharset, headerText, inputFrameRate, outputFrameRate, outputTimecode, outputDsc, outputOffset);
             } catch(IOException e) {
-                System.err.println(String.format("Unable to build writer for file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+                throw new IOException(String.format("Unable to build writer for file %s: %s", outputFilePath, e.getMessage()), e);
             }
 
-            // Create output file
-            OutputStream os = null;
+            // Create output file, unless an output stream is given
+            OutputStream fos;
 
-            try {
-                os = new FileOutputStream(outputFilePath);
-            } catch(IOException e) {
-                System.err.println(String.format("Unable to create output file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+            if (os == null) {
+                try {
+                    fos = new FileOutputStream(outputFilePath);
+                } catch(IOException e) {
+                    throw new IOException(String.format("Unable to create output file %s: %s", outputFilePath, e.getMessage()), e);
+                }
+            } else {
+                fos = null;
             }
 
             // Write output file
-            try {
-                writer.write(inputSubtitle, os);
-                if (outputJsonFile != null) {
-                    try (BufferedWriter jsonWriter = Files.newBufferedWriter(Paths.get(outputJsonFile))) {
-                        String subtitleString = new Gson().toJson(inputSubtitle);
-                        JSONObject subtitleJsonObject = new JSONObject(subtitleString);
-                        subtitleJsonObject.write(jsonWriter);
-                    } catch (IOException e) {
-                        System.err.println(String.format("Unable to write json output file %s: %s", outputJsonFile, e.getMessage()));
-                        System.exit(1);
-                    }
+            try (fos) {
+                OutputStream out = fos != null ? fos : os;
+
+                if (inputReader != null) {
+                    this.copy(inputReader, writer, out);
+                } else {
+                    writer.write(inputSubtitle, out);
                 }
             } catch (IOException e) {
-                System.err.println(String.format("Unable to write output file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+                throw new IOException(String.format("Unable to write output file %s: %s", outputFilePath, e.getMessage()), e);
+            } catch (SubtitleParsingException e) {
+                throw new SubtitleParsingException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
+            }
+        } finally {
+            if (inputReader != null) {
+                inputReader.close();
             }
         }
-        catch(ParseException exp) {
-            this.printHelp();
-            System.exit(1);
+
+        if (outputJsonFile != null) {
+            if (inputSubtitle instanceof StlObject) {
+                // Raw text fields are not serialized, decode them
+                for (StlTti tti : ((StlObject) inputSubtitle).getTtis()) {
+                    tti.getTf();
+                }
+                for (SubtitleCue cue : inputSubtitle.getCues()) {
+                    cue.getCharacterCodes();
+                }
+            }
+
+            try (BufferedWriter jsonWriter = Files.newBufferedWriter(Paths.get(outputJsonFile))) {
+                String subtitleString = new GsonBuilder()
+                        .registerTypeHierarchyAdapter(SubtitleTimeCode.class, new TimeCodeSerializer())
+                        .create()
+                        .toJson(inputSubtitle);
+                JSONObject subtitleJsonObject = new JSONObject(subtitleString);
+                subtitleJsonObject.write(jsonWriter);
+            } catch (IOException e) {
+                throw new IOException(String.format("Unable to write json output file %s: %s", outputJsonFile, e.getMessage()), e);
+            }
         }
     }
 
-    public SubtitleParser buildParser(String filePath, String charset) throws IOException {
-        String ext = this.getFileExtension(filePath);
+    /**
+     * Write cues as soon as they are read
+     */
+    void copy(SubtitleCueReader reader, SubtitleCueSink sink, OutputStream os) throws IOException, SubtitleParsingException {
+        try {
+            sink.begin(reader.getProperties(), os);
+            SubtitleCue cue;
+
+            while ((cue = reader.next()) != null) {
+                sink.accept(cue);
+            }
+
+            sink.end();
+        } finally {
+            // Temporary files of an unfinished output are removed
+            sink.abort();
+        }
+    }
 
+    public SubtitleParser buildParser(String filePath, String charset) throws IOException {
         // Get subtitle parser class
-        ConvertFormat convertFormat = ConvertFormat.getEnum(ext.toLowerCase());
+        ConvertFormat convertFormat = this.getFormat(filePath, true);
         ConvertParser convertParser = ConvertParser.getEnum(convertFormat);
 
         // Instantiate parser class
         try {
-            Class<?> parserClass = Class.forName(convertParser.getClassName());
-
             if (convertParser.hasCharsetConstructor()) {
-                return (SubtitleParser) parserClass.getConstructor(String.class).newInstance(charset);
+                return (SubtitleParser) convertParser.getConstructor().newInstance(charset);
             } else {
-                return (SubtitleParser) parserClass.getConstructor().newInstance();
+                return (SubtitleParser) convertParser.getConstructor().newInstance();
             }
         } catch (Exception e) {
             throw new IOException(String.format("Unable to instantiate class %s", convertParser.getClassName()));
         }
     }
 
-    private SubtitleWriter buildWriter(String filePath, String charset, String headerText, String inputFrameRate, String frameRate, String timecode, String dsc, String offset) throws IOException {
-        String ext = this.getFileExtension(filePath);
-
+    SubtitleWriter buildWriter(String filePath, String charset, String headerText, String inputFrameRate, String frameRate, String timecode, String dsc, String offset) throws IOException {
         // Get subtitle writer class
-        ConvertFormat convertFormat = ConvertFormat.getEnum(ext);
+        ConvertFormat convertFormat = this.getFormat(filePath, false);
         ConvertWriter convertWriter = ConvertWriter.getEnum(convertFormat);
 
         // Instantiate writer class
         try {
-            Class<?> writerClass = Class.forName(convertWriter.getClassName());
             SubtitleWriter instance = null;
             if (convertWriter.hasCharsetConstructor()) {
-                instance = (SubtitleWriter) writerClass.getConstructor(String.class).newInstance(charset);
+                instance = (SubtitleWriter) convertWriter.getConstructor().newInstance(charset);
             } else {
-                instance = (SubtitleWriter) writerClass.getConstructor().newInstance();
+                instance = (SubtitleWriter) convertWriter.getConstructor().newInstance();
             }
             if (convertWriter.withFrameRate()) {
                 ((SubtitleWriterWithFrameRate) instance).setFrameRate(frameRate);
@@ -476,6 +590,28 @@ public class Convert {
         }
     }
 
+    private ConvertFormat getFormat(String filePath, boolean ignoreCase) throws IOException {
+        String ext = this.getFileExtension(filePath);
+
+        try {
+            return ConvertFormat.getEnum(ignoreCase ? ext.toLowerCase() : ext);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Unsupported file extension %s", ext));
+        }
+    }
+
+    /**
+     * @return True if a parser is available for this file
+     */
+    public boolean isParsable(String filePath) {
+        try {
+            this.getFormat(filePath, true);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     private String getFileExtension(String filePath) throws IOException {
         String ext = null;
 
@@ -496,4 +632,19 @@ public class Convert {
         Convert convert = new Convert();
         convert.run(args);
     }
+
+    /**
+     * Keep the time code fields of the json output, time codes only store milliseconds
+     */
+    private static class TimeCodeSerializer implements JsonSerializer<SubtitleTimeCode> {
+        @Override
+        public JsonElement serialize(SubtitleTimeCode timeCode, Type type, JsonSerializationContext context) {
+            JsonObject json = new JsonObject();
+            json.addProperty("hour", timeCode.getHour());
+            json.addProperty("minute", timeCode.getMinute());
+            json.addProperty("second", timeCode.getSecond());
+            json.addProperty("millisecond", timeCode.getMillisecond());
+            return json;
+        }
+    }
 }
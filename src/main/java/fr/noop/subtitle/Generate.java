@@ -0,0 +1,166 @@
+package fr.noop.subtitle;
+
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.util.SubtitleGenerator;
+
+import org.apache.commons.cli.*;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Write large synthetic subtitle files with the writers of the library, to test how parsers scale.
+ * Cues are generated while they are written, so the number of cues is not limited by memory.
+ */
+public class Generate {
+    private Options options = new Options();
+    private Convert convert = new Convert();
+
+    private void configureOptions() {
+        this.options.addOption("h", "help", false, "print help");
+
+        // Output file
+        this.options.addOption(Option.builder("o")
+                .required()
+                .longOpt("output-file")
+                .hasArg()
+                .desc("Output file, its extension gives the format")
+                .build());
+
+        // Number of cues
+        this.options.addOption(Option.builder("n")
+                .longOpt("cues")
+                .hasArg()
+                .desc("Number of cues, 10000 by default")
+                .build());
+
+        // Output charset option
+        this.options.addOption(Option.builder("oc")
+                .longOpt("output-charset")
+                .hasArg()
+                .desc("Output charset, utf-8 by default")
+                .build());
+
+        // Frame rate
+        this.options.addOption(Option.builder("fr")
+                .longOpt("framerate")
+                .hasArg()
+                .desc("Frame rate, 25 by default")
+                .build());
+
+        // Styling density
+        this.options.addOption(Option.builder("sd")
+                .longOpt("style-density")
+                .hasArg()
+                .desc("Part of the cues having styled text, from 0 to 1")
+                .build());
+
+        // Overlap rate
+        this.options.addOption(Option.builder("or")
+                .longOpt("overlap-rate")
+                .hasArg()
+                .desc("Part of the cues overlapping the previous cue, from 0 to 1")
+                .build());
+
+        // Multi block rate
+        this.options.addOption(Option.builder("mb")
+                .longOpt("multi-block-rate")
+                .hasArg()
+                .desc("Part of the cues needing several STL TTI blocks, from 0 to 1")
+                .build());
+
+        // Random seed
+        this.options.addOption(Option.builder("s")
+                .longOpt("seed")
+                .hasArg()
+                .desc("Random seed, the same seed gives the same file")
+                .build());
+    }
+
+    public Generate() {
+        this.configureOptions();
+    }
+
+    private void printHelp() {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("subtitle-generate", this.options);
+    }
+
+    /**
+     * Write the generated cues to a file
+     */
+    public void generate(SubtitleGenerator generator, String outputFilePath, String outputCharset) throws IOException {
+        SubtitleWriter writer = this.convert.buildWriter(outputFilePath, outputCharset, null, null, null, null, null, null);
+
+        try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
+            // Stl writer patches its header through the file channel
+            OutputStream os = outputFilePath.toLowerCase().endsWith(".stl") ? fos : new BufferedOutputStream(fos);
+            this.convert.copy(generator, writer, os);
+            os.flush();
+        } catch (SubtitleParsingException e) {
+            // Generated cues are never parsed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private float parseRate(CommandLine line, String option) throws ParseException {
+        float rate = Float.parseFloat(line.getOptionValue(option, "0"));
+
+        if (rate < 0 || rate > 1) {
+            throw new ParseException(String.format("Option %s must be between 0 and 1", option));
+        }
+
+        return rate;
+    }
+
+    private void run(String[] args) {
+        // Create the parser
+        CommandLineParser parser = new DefaultParser();
+
+        try {
+            // Parse the command line to get options
+            CommandLine line = parser.parse(this.options, args);
+
+            if (line.hasOption('h')) {
+                this.printHelp();
+                System.exit(1);
+            }
+
+            // Get options
+            String outputFilePath = line.getOptionValue("o");
+            String outputCharset = line.getOptionValue("oc", "utf-8");
+            SubtitleGenerator generator = null;
+
+            try {
+                generator = new SubtitleGenerator(Long.parseLong(line.getOptionValue("s", "0")));
+                generator.setCueCount(Integer.parseInt(line.getOptionValue("n", "10000")));
+                generator.setFrameRate(Float.parseFloat(line.getOptionValue("fr", "25")));
+                generator.setStyleDensity(this.parseRate(line, "sd"));
+                generator.setOverlapRate(this.parseRate(line, "or"));
+                generator.setMultiBlockRate(this.parseRate(line, "mb"));
+            } catch (NumberFormatException e) {
+                System.err.println(String.format("Invalid number: %s", e.getMessage()));
+                System.exit(1);
+            }
+
+            try {
+                this.generate(generator, outputFilePath, outputCharset);
+            } catch (IOException e) {
+                System.err.println(String.format("Unable to write output file %s: %s", outputFilePath, e.getMessage()));
+                System.exit(1);
+            }
+        } catch (ParseException exp) {
+            System.err.println(exp.getMessage());
+            this.printHelp();
+            System.exit(1);
+        }
+    }
+
+    public static void main(String[] args) {
+        Generate generate = new Generate();
+        generate.run(args);
+    }
+}
@@ -0,0 +1,287 @@
+package fr.noop.subtitle;
+
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.cli.*;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident conversion server listening on a local address.
+ * Parsers and writers are built with the constructors cached by Convert, so requests do not pay the start up cost of a new JVM.
+ *
+ * POST /convert?input=file.stl&amp;output=file.srt&amp;ofr=25 converts the request body, conversion options are the ones of Convert
+ * except the ones naming a file, which would let a request read the files of the server.
+ * POST /analyse?input=file.stl returns the analysis report of the request body.
+ */
+public class Server {
+    // Conversion options accepted from a request
+    private static final Set<String> REQUEST_OPTIONS = Set.of("ic", "oc", "otc", "dsm", "ofr", "ifr", "dsc", "off");
+
+    private Options options = new Options();
+    private Options conversionOptions = new Options();
+    private Convert convert = new Convert();
+    private Analyse analyse = new Analyse();
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    private void configureOptions() {
+        this.options.addOption("h", "help", false, "print help");
+
+        // Listening address
+        this.options.addOption(Option.builder("a")
+                .longOpt("address")
+                .hasArg()
+                .desc("Listening address, 127.0.0.1 by default")
+                .build());
+
+        // Listening port
+        this.options.addOption(Option.builder("p")
+                .longOpt("port")
+                .hasArg()
+                .desc("Listening port, 8080 by default")
+                .build());
+
+        // Number of threads
+        this.options.addOption(Option.builder("t")
+                .longOpt("threads")
+                .hasArg()
+                .desc("Number of requests handled at the same time")
+                .build());
+
+        Options allConversionOptions = new Options();
+        Convert.addConversionOptions(allConversionOptions);
+
+        for (Option option : allConversionOptions.getOptions()) {
+            if (REQUEST_OPTIONS.contains(option.getOpt())) {
+                this.conversionOptions.addOption(option);
+            }
+        }
+    }
+
+    public Server() {
+        this.configureOptions();
+    }
+
+    private void printHelp() {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("subtitle-server", this.options);
+    }
+
+    /**
+     * Start listening
+     */
+    public void start(InetSocketAddress address, int threads) throws IOException {
+        this.httpServer = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.httpServer.setExecutor(this.executor);
+        this.httpServer.createContext("/convert", new ConvertHandler());
+        this.httpServer.createContext("/analyse", new AnalyseHandler());
+        this.httpServer.start();
+    }
+
+    /**
+     * Stop listening, requests being handled are given one second to complete
+     */
+    public void stop() {
+        this.httpServer.stop(1);
+        this.executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return this.httpServer.getAddress();
+    }
+
+    /**
+     * Decode the query string of a request
+     */
+    private static Map<String, String> getParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+
+            int i = parameter.indexOf('=');
+            String key = i == -1 ? parameter : parameter.substring(0, i);
+            String value = i == -1 ? "" : parameter.substring(i + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Base handler accepting POST requests having an input parameter
+     */
+    private abstract class PostHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (InputStream is = exchange.getRequestBody()) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    sendError(exchange, 405, "Only POST requests are accepted");
+                    return;
+                }
+
+                Map<String, String> parameters = getParameters(exchange);
+
+                if (parameters.get("input") == null) {
+                    sendError(exchange, 400, "Missing input parameter");
+                    return;
+                }
+
+                this.handle(exchange, is, parameters);
+            } catch (RuntimeException e) {
+                // A malformed file must not stop the server
+                sendError(exchange, 500, String.format("Unable to handle request: %s", e));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        protected abstract void handle(HttpExchange exchange, InputStream is, Map<String, String> parameters) throws IOException;
+    }
+
+    private class ConvertHandler extends PostHandler {
+        @Override
+        protected void handle(HttpExchange exchange, InputStream is, Map<String, String> parameters) throws IOException {
+            String inputFilePath = parameters.remove("input");
+            String outputFilePath = parameters.remove("output");
+
+            if (outputFilePath == null) {
+                sendError(exchange, 400, "Missing output parameter");
+                return;
+            }
+
+            // Other parameters are conversion options
+            List<String> args = new ArrayList<>();
+
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                args.add("-" + parameter.getKey());
+
+                if (!parameter.getValue().isEmpty()) {
+                    args.add(parameter.getValue());
+                }
+            }
+
+            CommandLine line = null;
+
+            try {
+                line = new DefaultParser().parse(conversionOptions, args.toArray(new String[0]));
+            } catch (ParseException e) {
+                sendError(exchange, 400, String.format("Invalid conversion options: %s", e.getMessage()));
+                return;
+            }
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+            try {
+                convert.convert(is, inputFilePath, os, outputFilePath, line);
+            } catch (IOException | SubtitleParsingException e) {
+                sendError(exchange, 422, e.getMessage());
+                return;
+            }
+
+            send(exchange, 200, "application/octet-stream", os.toByteArray());
+        }
+    }
+
+    private class AnalyseHandler extends PostHandler {
+        @Override
+        protected void handle(HttpExchange exchange, InputStream is, Map<String, String> parameters) throws IOException {
+            JSONObject report = null;
+
+            try {
+                report = analyse.analyse(is, parameters.get("input"));
+            } catch (IOException | SubtitleParsingException e) {
+                sendError(exchange, 422, e.getMessage());
+                return;
+            }
+
+            send(exchange, 200, "application/json", report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void run(String[] args) {
+        // Create the parser
+        CommandLineParser parser = new DefaultParser();
+
+        try {
+            // Parse the command line to get options
+            CommandLine line = parser.parse(this.options, args);
+
+            if (line.hasOption('h')) {
+                this.printHelp();
+                System.exit(1);
+            }
+
+            // Get options
+            String address = line.getOptionValue("a", "127.0.0.1");
+            int port = 0;
+            int threads = 0;
+
+            try {
+                port = Integer.parseInt(line.getOptionValue("p", "8080"));
+                threads = Integer.parseInt(line.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            } catch (NumberFormatException e) {
+                System.err.println(String.format("Invalid number: %s", e.getMessage()));
+                System.exit(1);
+            }
+
+            try {
+                this.start(new InetSocketAddress(address, port), threads);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println(String.format("Unable to listen on %s:%d: %s", address, port, e.getMessage()));
+                System.exit(1);
+            }
+
+            System.out.println(String.format("Listening on %s", this.getAddress()));
+        } catch (ParseException exp) {
+            this.printHelp();
+            System.exit(1);
+        }
+    }
+
+    public static void main(String[] args) {
+        Server server = new Server();
+        server.run(args);
+    }
+}
@@ -23,6 +23,7 @@ import fr.noop.subtitle.util.SubtitleRegion.VerticalAlign;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 
 public class AssWriter implements SubtitleWriterWithHeader, SubtitleWriterWithFrameRate, SubtitleWriterWithInputFrameRate, SubtitleWriterWithTimecode {
     private String charset; // Charset used to encode file
@@ -31,35 +32,54 @@ public class AssWriter implements SubtitleWriterWithHeader, SubtitleWriterWithFr
     private String inputFramerate;
     private String outputTimecode;
 
+    // Current output
+    private OutputStream os;
+    private SubtitleTimeCode startTimecode;
+    private float frameRate;
+    private SubtitleTimeCode.Conversion conversion;
+
     public AssWriter(String charset) {
         this.charset = charset;
     }
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.os = os;
+
         try {
             if (this.headerText != null) {
                 // Write Header from file ([Script Info] & [V4+ Styles])
                 os.write(headerText.getBytes(this.charset));
                 os.write(new String("\n").getBytes(this.charset));
             } else {
-                this.writeDefaultHeader(subtitleObject, os);
+                this.writeDefaultHeader(properties, os);
             }
 
             // Write cues
-            this.writeEvents(subtitleObject, os, outputTimecode, headerText, newFrameRate);
+            this.writeEventsHeader(properties, os);
         } catch (UnsupportedEncodingException e) {
             throw new IOException("Encoding error in input subtitle");
         }
     }
 
-    private void writeScriptInfo(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        this.writeEvent(cue, this.os, this.outputTimecode, this.headerText, this.newFrameRate);
+    }
+
+    @Override
+    public void end() throws IOException {
+        this.os.write(new String("\n").getBytes(this.charset));
+        this.os.flush();
+    }
+
+    private void writeScriptInfo(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
         os.write(new String("[Script Info]\n").getBytes(this.charset));
         os.write(new String("; Script generated by Nomalab Subtitle library\n").getBytes(this.charset));
-        if (subtitleObject.hasProperty(SubtitleObject.Property.TITLE)) {
+        if (properties.get(SubtitleObject.Property.TITLE) != null) {
             // Write title
             os.write(String.format("Title: %s\n",
-                    subtitleObject.getProperty(SubtitleObject.Property.TITLE)
+                    properties.get(SubtitleObject.Property.TITLE)
             ).getBytes(this.charset));
         }
         os.write(new String("ScriptType: v4.00+\n").getBytes(this.charset));
@@ -80,79 +100,80 @@ public class AssWriter implements SubtitleWriterWithHeader, SubtitleWriterWithFr
         os.write(new String("\n").getBytes(this.charset));
     }
 
-    private void writeDefaultHeader(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    private void writeDefaultHeader(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
         // Write Script Info
-        this.writeScriptInfo(subtitleObject, os);
+        this.writeScriptInfo(properties, os);
 
         // Write Style
         this.writeV4Styles(os);
     }
 
-    private void writeEvents(SubtitleObject subtitleObject, OutputStream os, String outputTimecode, String headerText, String newFrameRate) throws IOException {
-        SubtitleTimeCode startTimecode = new SubtitleTimeCode(0);
-        if (subtitleObject.hasProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL)) {
-            startTimecode = (SubtitleTimeCode) subtitleObject.getProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
+    private void writeEventsHeader(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.startTimecode = new SubtitleTimeCode(0);
+        if (properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL) != null) {
+            this.startTimecode = (SubtitleTimeCode) properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
         }
-        float frameRate = 25;
+        this.frameRate = 25;
         if (this.inputFramerate != null) {
-            frameRate = Float.parseFloat(this.inputFramerate);
-        } else if (subtitleObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
-            frameRate = (float) subtitleObject.getProperty(SubtitleObject.Property.FRAME_RATE);
+            this.frameRate = Float.parseFloat(this.inputFramerate);
+        } else if (properties.get(SubtitleObject.Property.FRAME_RATE) != null) {
+            this.frameRate = (float) properties.get(SubtitleObject.Property.FRAME_RATE);
         }
+        this.conversion = new SubtitleTimeCode.Conversion(this.startTimecode, this.outputTimecode, this.frameRate, this.newFrameRate, null);
         os.write(new String("[Events]\n").getBytes(this.charset));
         os.write(new String(
                 "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n"
         ).getBytes(this.charset));
-        for (SubtitleCue cue : subtitleObject.getCues()) {
-            String cueText = "";
-
-            SubtitleTimeCode startTC = cue.getStartTime().convertWithOptions(startTimecode, outputTimecode, frameRate, newFrameRate, null);
-            SubtitleTimeCode endTC = cue.getEndTime().convertWithOptions(startTimecode, outputTimecode, frameRate, newFrameRate, null);
-
-            String styleName = "Nomalab_Default";
-            int vp = 0;
-
-            if (headerText != null) {
-                // styles defined in input header file
-                styleName = "Default";
-                if (cue instanceof SubtitleRegionCue) {
-                    SubtitleRegion region = ((SubtitleRegionCue) cue).getRegion();
-                    SubtitleText firstLineText = cue.getLines().get(0).getTexts().get(0);
-                    if (firstLineText instanceof SubtitleStyled) {
-                        SubtitleStyle style = ((SubtitleStyled) firstLineText).getStyle();
-                        if (region.getVerticalAlign() == VerticalAlign.TOP) {
-                            if (style.getTextAlign() == TextAlign.CENTER) {
-                                styleName = "Top";
-                            }
-                            if (style.getTextAlign() == TextAlign.LEFT) {
-                                styleName = "Top_Left";
-                            }
-                            if (style.getTextAlign() == TextAlign.RIGHT) {
-                                styleName = "Top_Right";
-                            }
-                        } else {
-                            if (style.getTextAlign() == TextAlign.LEFT) {
-                                styleName = "Bottom_Left";
-                            }
-                            if (style.getTextAlign() == TextAlign.RIGHT) {
-                                styleName = "Bottom_Right";
-                            }
+    }
+
+    private void writeEvent(SubtitleCue cue, OutputStream os, String outputTimecode, String headerText, String newFrameRate) throws IOException {
+        String cueText = "";
+
+        SubtitleTimeCode startTC = this.conversion.apply(cue.getStartTime());
+        SubtitleTimeCode endTC = this.conversion.apply(cue.getEndTime());
+
+        String styleName = "Nomalab_Default";
+        int vp = 0;
+
+        if (headerText != null) {
+            // styles defined in input header file
+            styleName = "Default";
+            if (cue instanceof SubtitleRegionCue) {
+                SubtitleRegion region = ((SubtitleRegionCue) cue).getRegion();
+                SubtitleText firstLineText = cue.getLines().get(0).getTexts().get(0);
+                if (firstLineText instanceof SubtitleStyled) {
+                    SubtitleStyle style = ((SubtitleStyled) firstLineText).getStyle();
+                    if (region.getVerticalAlign() == VerticalAlign.TOP) {
+                        if (style.getTextAlign() == TextAlign.CENTER) {
+                            styleName = "Top";
+                        }
+                        if (style.getTextAlign() == TextAlign.LEFT) {
+                            styleName = "Top_Left";
+                        }
+                        if (style.getTextAlign() == TextAlign.RIGHT) {
+                            styleName = "Top_Right";
+                        }
+                    } else {
+                        if (style.getTextAlign() == TextAlign.LEFT) {
+                            styleName = "Bottom_Left";
+                        }
+                        if (style.getTextAlign() == TextAlign.RIGHT) {
+                            styleName = "Bottom_Right";
                         }
                     }
                 }
-            } else {
-                if (cue instanceof SubtitleRegionCue) {
-                    vp = ((SubtitleRegionCue) cue).getRegion().getVerticalPosition();
-                }
             }
+        } else {
+            if (cue instanceof SubtitleRegionCue) {
+                vp = ((SubtitleRegionCue) cue).getRegion().getVerticalPosition();
+            }
+        }
 
-            cueText += addStyle(cue, headerText);
+        cueText += addStyle(cue, headerText);
 
-            os.write(String.format("Dialogue: 0,%s,%s,%s,,0,0,%d,,%s\n",
-                    startTC.singleHourTimeToString(), endTC.singleHourTimeToString(), styleName, vp, cueText
-            ).getBytes(this.charset));
-        }
-        os.write(new String("\n").getBytes(this.charset));
+        os.write(String.format("Dialogue: 0,%s,%s,%s,,0,0,%d,,%s\n",
+                startTC.singleHourTimeToString(), endTC.singleHourTimeToString(), styleName, vp, cueText
+        ).getBytes(this.charset));
     }
 
     private String addStyle(SubtitleCue cue, String headerText) {
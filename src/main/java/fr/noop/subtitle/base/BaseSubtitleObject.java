@@ -11,8 +11,11 @@
 package fr.noop.subtitle.base;
 
 import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
 import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -34,6 +37,18 @@ public abstract class BaseSubtitleObject implements SubtitleObject {
         this.cues.add(cue);
     }
 
+    /**
+     * Add the properties and all the remaining cues of a reader
+     */
+    public void addCues(SubtitleCueReader reader) throws IOException, SubtitleParsingException {
+        this.properties.putAll(reader.getProperties());
+        SubtitleCue cue;
+
+        while ((cue = reader.next()) != null) {
+            this.addCue(cue);
+        }
+    }
+
     public List<SubtitleCue> getCues() {
         return this.cues;
     }
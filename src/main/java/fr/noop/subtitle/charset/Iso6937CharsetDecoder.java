@@ -10,7 +10,6 @@
 
 package fr.noop.subtitle.charset;
 
-import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
@@ -21,35 +20,169 @@ import java.text.Normalizer;
  * Created by clebeaupin on 28/09/15.
  */
 public class Iso6937CharsetDecoder extends CharsetDecoder {
+    // Decoded char of each byte
+    private static final char[] DECODED = new char[256];
+    // Precomposed char of each diacritic and base byte, 0 if there is none
+    private static final char[][] COMPOSED = new char[256][];
+
+    static {
+        for (int by = 0; by < 256; by++) {
+            DECODED[by] = (char) Iso6937CharsetMapping.decode(by);
+        }
+
+        for (int diacritic = 0xc1; diacritic <= 0xcf; diacritic++) {
+            if (!isDiacritic(diacritic)) {
+                continue;
+            }
+
+            COMPOSED[diacritic] = new char[256];
+
+            for (int base = 0; base < 256; base++) {
+                String decomposed = new String(new char[] {(char) base, DECODED[diacritic]});
+                String composed = Normalizer.normalize(decomposed, Normalizer.Form.NFC);
+
+                if (composed.length() == 1) {
+                    COMPOSED[diacritic][base] = composed.charAt(0);
+                }
+            }
+        }
+    }
+
     public Iso6937CharsetDecoder(Iso6937Charset cs) {
         super(cs, 1.0f, 1.0f);
     }
 
+    private static boolean isDiacritic(int by) {
+        return (by >= 0xc1 && by <= 0xc8) ||
+                (by >= 0xca && by <= 0xcb) ||
+                (by >= 0xcd && by <= 0xcf);
+    }
+
+    /**
+     * @return true if the byte is printable ascii decoded as itself, 0x24 is the currency sign
+     */
+    private static boolean isPlain(int by) {
+        return by >= 0x20 && by <= 0x7e && by != 0x24;
+    }
+
     protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+        if (in.hasArray() && out.hasArray()) {
+            return this.decodeArrayLoop(in, out);
+        }
+
+        return this.decodeBufferLoop(in, out);
+    }
+
+    private CoderResult decodeArrayLoop(ByteBuffer in, CharBuffer out) {
+        byte[] src = in.array();
+        int sp = in.arrayOffset() + in.position();
+        int sl = in.arrayOffset() + in.limit();
+        char[] dst = out.array();
+        int dp = out.arrayOffset() + out.position();
+        int dl = out.arrayOffset() + out.limit();
+
         try {
-            while (in.hasRemaining()) {
+            while (sp < sl) {
+                // Copy a run of plain ascii at once
+                int run = Math.min(sl - sp, dl - dp);
+                int i = 0;
+                while (i < run && isPlain(src[sp + i])) {
+                    dst[dp + i] = (char) src[sp + i];
+                    i++;
+                }
+                sp += i;
+                dp += i;
+
+                if (sp == sl) {
+                    break;
+                }
+                if (dp == dl) {
+                    return CoderResult.OVERFLOW;
+                }
+
                 // Convert to int to get unsigned byte
-                int by = (in.get() & 0xff);
-                char ch = (char) by;
-
-                // Check if it's a composed char
-                if ((by >= 0xc1 && by <= 0xc8) ||
-                        (by >= 0xca && by <= 0xcb) ||
-                        (by >= 0xcd && by <= 0xcf)
-                ) {
-                    // This is an accent
-                    String decomposed = String.format("%s%s", (char) in.get(), (char) Iso6937CharsetMapping.decode(by));
-                    String composed = Normalizer.normalize(decomposed, Normalizer.Form.NFC);
-                    out.put(composed);
+                int by = src[sp] & 0xff;
+
+                if (!isDiacritic(by)) {
+                    // This is not a composed char
+                    dst[dp++] = DECODED[by];
+                    sp++;
                     continue;
                 }
 
-                // This is not a composed char
-                out.put((char) Iso6937CharsetMapping.decode(by));
+                // This is an accent, followed by the base char
+                if (sp + 1 == sl) {
+                    return CoderResult.UNDERFLOW;
+                }
+
+                int base = src[sp + 1] & 0xff;
+                char composed = COMPOSED[by][base];
+
+                if (composed != 0) {
+                    dst[dp++] = composed;
+                } else {
+                    // No precomposed char, keep the combining char after the base char
+                    if (dl - dp < 2) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    dst[dp++] = (char) base;
+                    dst[dp++] = DECODED[by];
+                }
+                sp += 2;
             }
-        } catch (BufferOverflowException x) { return CoderResult.OVERFLOW; }
 
-        return CoderResult.UNDERFLOW;
+            return CoderResult.UNDERFLOW;
+        } finally {
+            in.position(sp - in.arrayOffset());
+            out.position(dp - out.arrayOffset());
+        }
     }
 
-}
\ No newline at end of file
+    private CoderResult decodeBufferLoop(ByteBuffer in, CharBuffer out) {
+        int mark = in.position();
+
+        try {
+            while (in.hasRemaining()) {
+                if (!out.hasRemaining()) {
+                    return CoderResult.OVERFLOW;
+                }
+
+                // Convert to int to get unsigned byte
+                int by = in.get(mark) & 0xff;
+
+                if (!isDiacritic(by)) {
+                    // This is not a composed char
+                    out.put(DECODED[by]);
+                    mark++;
+                    in.position(mark);
+                    continue;
+                }
+
+                // This is an accent, followed by the base char
+                if (in.remaining() < 2) {
+                    return CoderResult.UNDERFLOW;
+                }
+
+                int base = in.get(mark + 1) & 0xff;
+                char composed = COMPOSED[by][base];
+
+                if (composed != 0) {
+                    out.put(composed);
+                } else {
+                    // No precomposed char, keep the combining char after the base char
+                    if (out.remaining() < 2) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    out.put((char) base);
+                    out.put(DECODED[by]);
+                }
+                mark += 2;
+                in.position(mark);
+            }
+
+            return CoderResult.UNDERFLOW;
+        } finally {
+            in.position(mark);
+        }
+    }
+}
@@ -10,48 +10,151 @@
 
 package fr.noop.subtitle.charset;
 
-import java.nio.BufferOverflowException;
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.text.Normalizer;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * Created by clebeaupin on 28/09/15.
  */
 public class Iso6937CharsetEncoder extends CharsetEncoder {
+    // Chars below this limit are encoded through a dense table: latin, latin extended and spacing modifiers
+    private static final int DENSE_LIMIT = 0x300;
+
+    // Other chars having a canonical decomposition or a mapping, hangul syllables are left out
+    private static final int[][] SPARSE_RANGES = {{DENSE_LIMIT, 0x30ff}, {0xf900, 0xfb4f}};
+
+    // Encoded bytes of a char: number of bytes << 16 | first byte << 8 | second byte
+    private static final int[] DENSE = new int[DENSE_LIMIT];
+    // Other chars having a specific encoding, sorted
+    private static final char[] SPARSE_CHARS;
+    private static final int[] SPARSE;
+
+    static {
+        for (int ch = 0; ch < DENSE_LIMIT; ch++) {
+            DENSE[ch] = encodeChar((char) ch);
+        }
+
+        char[] chars = new char[1024];
+        int[] encoded = new int[1024];
+        int count = 0;
+
+        for (int[] range : SPARSE_RANGES) {
+            for (int ch = range[0]; ch <= range[1]; ch++) {
+                int sequence = encodeChar((char) ch);
+
+                if (sequence == single(ch)) {
+                    continue;
+                }
+                if (count == chars.length) {
+                    chars = Arrays.copyOf(chars, count * 2);
+                    encoded = Arrays.copyOf(encoded, count * 2);
+                }
+                chars[count] = (char) ch;
+                encoded[count] = sequence;
+                count++;
+            }
+        }
+
+        SPARSE_CHARS = Arrays.copyOf(chars, count);
+        SPARSE = Arrays.copyOf(encoded, count);
+    }
 
     public Iso6937CharsetEncoder(Iso6937Charset cs) {
         super(cs, 2.0f, 2.0f);
     }
 
+    private static int single(int by) {
+        return 1 << 16 | (by & 0xff);
+    }
+
+    /**
+     * Encode a char from its canonical decomposition, only used to build the tables
+     */
+    private static int encodeChar(char ch) {
+        // Try to decompose char
+        String decomposed = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+
+        if (decomposed.length() == 2) {
+            // This is a composed char
+            // Store the accent at the first position
+            // Then the non accented character
+            int accent = Iso6937CharsetMapping.encode(decomposed.charAt(1)) & 0xff;
+            return 2 << 16 | accent << 8 | (decomposed.charAt(0) & 0xff);
+        }
+
+        // This is not composed char
+        return single(Iso6937CharsetMapping.encode(ch));
+    }
+
+    private static int lookup(char ch) {
+        if (ch < DENSE_LIMIT) {
+            return DENSE[ch];
+        }
+
+        int index = Arrays.binarySearch(SPARSE_CHARS, ch);
+        return index >= 0 ? SPARSE[index] : single(ch);
+    }
+
     protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+        if (in.hasArray() && out.hasArray()) {
+            return this.encodeArrayLoop(in, out);
+        }
+
+        return this.encodeBufferLoop(in, out);
+    }
+
+    private CoderResult encodeArrayLoop(CharBuffer in, ByteBuffer out) {
+        char[] src = in.array();
+        int sp = in.arrayOffset() + in.position();
+        int sl = in.arrayOffset() + in.limit();
+        byte[] dst = out.array();
+        int dp = out.arrayOffset() + out.position();
+        int dl = out.arrayOffset() + out.limit();
+
         try {
-            while (in.hasRemaining()) {
-                char ch = in.get();
-
-                // Try to decompose char
-                String decomposed = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
-
-                if (decomposed.length() == 2) {
-                    // This is a composed char
-                    // Store the accent at the first position
-                    // Then the non accented character
-                    //System.out.format(">>> %x %x", (byte) Iso6937CharsetMapping.encode(decomposed.charAt(1)), (byte) decomposed.charAt(0));
-                    out.put((byte) Iso6937CharsetMapping.encode(decomposed.charAt(1)));
-                    out.put((byte) decomposed.charAt(0));
-                    continue;
+            while (sp < sl) {
+                int sequence = lookup(src[sp]);
+
+                if (sequence >>> 16 == 1) {
+                    if (dp == dl) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    dst[dp++] = (byte) sequence;
+                } else {
+                    if (dl - dp < 2) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    dst[dp++] = (byte) (sequence >> 8);
+                    dst[dp++] = (byte) sequence;
                 }
+                sp++;
+            }
 
-                // This is not composed char
-                int chEncoded = Iso6937CharsetMapping.encode(ch);
-                out.put((byte) chEncoded);
+            return CoderResult.UNDERFLOW;
+        } finally {
+            in.position(sp - in.arrayOffset());
+            out.position(dp - out.arrayOffset());
+        }
+    }
+
+    private CoderResult encodeBufferLoop(CharBuffer in, ByteBuffer out) {
+        while (in.hasRemaining()) {
+            int sequence = lookup(in.get(in.position()));
+
+            if (out.remaining() < sequence >>> 16) {
+                return CoderResult.OVERFLOW;
             }
+            if (sequence >>> 16 == 2) {
+                out.put((byte) (sequence >> 8));
+            }
+            out.put((byte) sequence);
+            in.get();
         }
-        catch (BufferOverflowException x) { return CoderResult.OVERFLOW; }
+
         return CoderResult.UNDERFLOW;
     }
 }
@@ -0,0 +1,20 @@
+package fr.noop.subtitle.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Pull based reader returning the cues of a subtitle file one at a time.
+ */
+public interface SubtitleCueReader extends Closeable {
+    /**
+     * Properties read from the header of the file.
+     */
+    public Map<SubtitleObject.Property, Object> getProperties();
+
+    /**
+     * @return the next cue or null when the end of the file is reached
+     */
+    public SubtitleCue next() throws IOException, SubtitleParsingException;
+}
@@ -0,0 +1,33 @@
+package fr.noop.subtitle.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Push based writer receiving the cues of a subtitle one at a time.
+ * Calls must follow the order begin, accept for each cue, end.
+ */
+public interface SubtitleCueSink {
+    /**
+     * Start writing a subtitle having these properties
+     */
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException;
+
+    /**
+     * Write the next cue
+     */
+    public void accept(SubtitleCue cue) throws IOException;
+
+    /**
+     * Finish writing, the output stream is flushed but not closed
+     */
+    public void end() throws IOException;
+
+    /**
+     * Release the resources of an unfinished output, the output stream is not closed.
+     * Does nothing once end has completed, so it can be called in a finally block.
+     */
+    public default void abort() throws IOException {
+    }
+}
@@ -32,4 +32,20 @@ public interface SubtitleObject {
     public Object getProperty(Property property);
     public Map<Property, Object> getProperties();
     public List<SubtitleCue> getCues();
+
+    /**
+     * @return the first cue or null if there is none
+     */
+    public default SubtitleCue getFirstCue() {
+        List<SubtitleCue> cues = this.getCues();
+        return cues.isEmpty() ? null : cues.get(0);
+    }
+
+    /**
+     * @return the last cue or null if there is none
+     */
+    public default SubtitleCue getLastCue() {
+        List<SubtitleCue> cues = this.getCues();
+        return cues.isEmpty() ? null : cues.get(cues.size() - 1);
+    }
 }
@@ -12,6 +12,8 @@ package fr.noop.subtitle.model;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Created by clebeaupin on 02/10/15.
@@ -19,4 +21,33 @@ import java.io.InputStream;
 public interface SubtitleParser {
     public SubtitleObject parse(InputStream is) throws IOException, SubtitleParsingException;
     public SubtitleObject parse(InputStream is, boolean strict) throws IOException, SubtitleParsingException;
+
+    public default SubtitleCueReader read(InputStream is) throws IOException, SubtitleParsingException {
+        return this.read(is, true);
+    }
+
+    /**
+     * Read the cues one at a time.
+     * By default the whole file is parsed first, streaming parsers override this method.
+     */
+    public default SubtitleCueReader read(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
+        SubtitleObject subtitleObject = this.parse(is, strict);
+        Iterator<SubtitleCue> cues = subtitleObject.getCues().iterator();
+
+        return new SubtitleCueReader() {
+            @Override
+            public Map<SubtitleObject.Property, Object> getProperties() {
+                return subtitleObject.getProperties();
+            }
+
+            @Override
+            public SubtitleCue next() {
+                return cues.hasNext() ? cues.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
 }
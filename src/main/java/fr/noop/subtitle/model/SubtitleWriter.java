@@ -10,14 +10,24 @@
 
 package fr.noop.subtitle.model;
 
-import fr.noop.subtitle.base.BaseSubtitleObject;
-
 import java.io.IOException;
 import java.io.OutputStream;
 
 /**
  * Created by clebeaupin on 02/10/15.
  */
-public interface SubtitleWriter {
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException;
+public interface SubtitleWriter extends SubtitleCueSink {
+    public default void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+        try {
+            this.begin(subtitleObject.getProperties(), os);
+
+            for (SubtitleCue cue : subtitleObject.getCues()) {
+                this.accept(cue);
+            }
+
+            this.end();
+        } finally {
+            this.abort();
+        }
+    }
 }
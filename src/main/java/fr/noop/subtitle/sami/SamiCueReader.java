@@ -0,0 +1,157 @@
+package fr.noop.subtitle.sami;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+
+/**
+ * Read SAMI cues one at a time.
+ * A cue ends when the next one starts, so one cue is kept ahead.
+ */
+public class SamiCueReader implements SubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        BODY_START,
+        BODY_END,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    private BufferedReader br;
+    private CursorStatus cursorStatus = CursorStatus.NONE;
+    private SamiCue cue = null; // Cue being read
+
+    SamiCueReader(BufferedReader br) {
+        this.br = br;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public SamiCue next() throws IOException, SubtitleParsingException {
+        String textLine;
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+            // Lower case text line
+            String lcTextLine = textLine.toLowerCase();
+
+            if (lcTextLine.startsWith("</body>") || cursorStatus == CursorStatus.BODY_END) {
+                cursorStatus = CursorStatus.BODY_END;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.NONE) {
+                if (!lcTextLine.startsWith("<body>")) {
+                    continue;
+                }
+
+                cursorStatus = CursorStatus.BODY_START;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.BODY_START) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // The next element after the body element is always the sync element
+                if (!lcTextLine.startsWith("<sync")) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unexpected time code: %s", textLine));
+                }
+            }
+
+            if ((cursorStatus == CursorStatus.BODY_START) ||
+                    (cursorStatus == CursorStatus.CUE_TEXT) && lcTextLine.startsWith("<sync")) {
+                // Get start time
+                String text = textLine.substring(5).trim();
+
+                if (!text.toLowerCase().startsWith("start=")) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unexpected time code: %s", textLine));
+                }
+
+                // Make sure this is an integer
+                String startTime = text.substring(6, text.length() - 1).trim();
+                long time;
+
+                try {
+                    time = Long.valueOf(startTime);
+                } catch (NumberFormatException e) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unable to parse start time: %s",
+                            textLine));
+                }
+
+                // New cue
+                SamiCue previousCue = cue;
+                cue = new SamiCue();
+                cue.setStartTime(new SubtitleTimeCode(time));
+                cursorStatus = CursorStatus.CUE_TIMECODE;
+
+                // Set end time for previous cue
+                // Previous cue is only complete once the next sync is read
+                if (previousCue != null) {
+                    previousCue.setEndTime(new SubtitleTimeCode(time));
+                    return previousCue;
+                }
+
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.CUE_TIMECODE || cursorStatus == CursorStatus.CUE_TEXT) {
+                // Remove <P> and </P> information
+                String text = textLine;
+
+                // Remove p start tag
+                if (lcTextLine.startsWith("<p")) {
+                    text = text.substring(text.indexOf(">")+1);
+                }
+
+                // Remove p end tag
+                if (lcTextLine.endsWith("</p>")) {
+                    text = text.substring(0, text.length()-4);
+                }
+
+                // Add new text line
+                SubtitleTextLine line = new SubtitleTextLine();
+                line.addText(new SubtitlePlainText(text));
+                cue.addLine(line);
+                cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", textLine));
+        }
+
+        // This is the end
+        // Set end time for the last cue
+        SamiCue lastCue = cue;
+
+        if (lastCue != null) {
+            // Last cue duration is 2s
+            lastCue.setEndTime(new SubtitleTimeCode(lastCue.getStartTime().getTime() + 2000));
+            cue = null;
+        }
+
+        return lastCue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
@@ -13,6 +13,7 @@ package fr.noop.subtitle.sami;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 
 import fr.noop.subtitle.model.SubtitleCue;
 import fr.noop.subtitle.model.SubtitleObject;
@@ -23,58 +24,68 @@ import fr.noop.subtitle.model.SubtitleWriter;
  */
 public class SamiWriter implements SubtitleWriter {
     private String charset; // Charset used to encode file
+    private OutputStream os; // Current output
 
     public SamiWriter(String charset) {
         this.charset = charset;
     }
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.os = os;
+
         try {
             // Start SAMI
             os.write(new String("<SAMI>\n").getBytes(this.charset));
 
             // Write header
 
-            // Write cues
-            this.writeCues(subtitleObject, os);
+            // Start BODY
+            os.write(new String("<Body>\n").getBytes(this.charset));
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Encoding error in input subtitle");
+        }
+    }
+
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        try {
+            // Write Start time
+            os.write(String.format("  <SYNC Start=%d>\n", cue.getStartTime().getTime()).getBytes(this.charset));
+
+            // Write text
+            os.write(String.format("    <P>%s\n", cue.getText()).getBytes(this.charset));
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Encoding error in input subtitle");
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        try {
+            // End BODY
+            os.write(new String("</Body>\n").getBytes(this.charset));
 
             // End SAMI
             os.write(new String("</SAMI>\n").getBytes(this.charset));
+            os.flush();
         } catch (UnsupportedEncodingException e) {
             throw new IOException("Encoding error in input subtitle");
         }
     }
 
-    private void writeHeader(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    private void writeHeader(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
         // Start HEAD
         os.write(new String("<Head>\n").getBytes(this.charset));
 
-        if (subtitleObject.hasProperty(SubtitleObject.Property.TITLE)) {
+        if (properties.get(SubtitleObject.Property.TITLE) != null) {
             // Write title
             os.write(String.format("  <Title>%s</Title>\n",
-                    subtitleObject.getProperty(SubtitleObject.Property.TITLE)
+                    properties.get(SubtitleObject.Property.TITLE)
             ).getBytes(this.charset));
         }
 
         // End HEAD
         os.write(new String("</Head>\n").getBytes(this.charset));
     }
-
-    private void writeCues(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        // Start BODY
-        os.write(new String("<Body>\n").getBytes(this.charset));
-
-        for (SubtitleCue cue : subtitleObject.getCues()) {
-            // Write Start time
-
-            os.write(String.format("  <SYNC Start=%d>\n", cue.getStartTime().getTime()).getBytes(this.charset));
-
-            // Write text
-            os.write(String.format("    <P>%s\n", cue.getText()).getBytes(this.charset));
-        }
-
-        // End BODY
-        os.write(new String("</Body>\n").getBytes(this.charset));
-    }
 }
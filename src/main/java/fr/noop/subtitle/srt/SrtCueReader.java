@@ -0,0 +1,143 @@
+package fr.noop.subtitle.srt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+import fr.noop.subtitle.util.SubtitleTimeCodeScanner;
+
+/**
+ * Read SRT cues one at a time
+ */
+public class SrtCueReader implements SubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        CUE_ID,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    private BufferedReader br;
+    private CursorStatus cursorStatus = CursorStatus.NONE;
+    private SrtCue cue = null;
+    private SubtitleRegion region = null;
+    private SubtitleTimeCode previousIn = new SubtitleTimeCode(0);
+    private SubtitleTimeCode previousOut = new SubtitleTimeCode(0);
+    private final SubtitleTimeCodeScanner timeCodeScanner = new SubtitleTimeCodeScanner();
+    private final SrtTextTokenizer tokenizer = new SrtTextTokenizer();
+
+    SrtCueReader(BufferedReader br) {
+        this.br = br;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        // SRT files have no header
+        return new HashMap<>();
+    }
+
+    @Override
+    public SrtCue next() throws IOException, SubtitleParsingException {
+        String textLine;
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+
+            if (cursorStatus == CursorStatus.NONE) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // New cue
+                cue = new SrtCue();
+                region = new SubtitleRegion(0, 0);
+                tokenizer.begin(region);
+
+                // First textLine is the cue number
+                try {
+                    Integer.parseInt(textLine);
+                } catch (NumberFormatException e) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unable to parse cue number: %s",
+                            textLine));
+                }
+
+                cue.setId(textLine);
+                cursorStatus = CursorStatus.CUE_ID;
+                continue;
+            }
+
+            // Second textLine defines the start and end time codes
+            // 00:01:21,456 --> 00:01:23,417
+            if (cursorStatus == CursorStatus.CUE_ID) {
+                if (SubtitleTimeCodeScanner.indexOfArrow(textLine) == -1) {
+                    throw new SubtitleParsingException(String.format(
+                            "Timecode textLine is badly formated: %s", textLine));
+                }
+
+                timeCodeScanner.scan(textLine);
+                SubtitleTimeCode startTime = SubtitleTimeCode.valueOf(timeCodeScanner.getStartTime());
+                SubtitleTimeCode endTime = SubtitleTimeCode.valueOf(timeCodeScanner.getEndTime());
+                if (previousOut.compareTo(startTime) == 1) {
+                    System.out.printf("Subtitle from %s to %s overlaps previous subtitle (%s - %s)\n",
+                    startTime, endTime, previousIn, previousOut);
+                }
+                previousIn = startTime;
+                previousOut = endTime;
+
+                cue.setStartTime(startTime);
+                cue.setEndTime(endTime);
+                cursorStatus = CursorStatus.CUE_TIMECODE;
+                continue;
+            }
+
+            // Following lines are the cue lines
+            if (!textLine.isEmpty() && (cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    cursorStatus == CursorStatus.CUE_TEXT)) {
+                SubtitleTextLine line = tokenizer.tokenize(textLine);
+
+                if (!line.isEmpty()) {
+                    cue.addLine(line);
+                }
+                cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.CUE_TEXT && textLine.isEmpty()) {
+                // End of cue
+                cursorStatus = CursorStatus.NONE;
+                return this.endCue();
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", textLine));
+        }
+
+        // End of file
+        return this.endCue();
+    }
+
+    private SrtCue endCue() {
+        SrtCue endedCue = this.cue;
+
+        if (endedCue != null) {
+            endedCue.setRegion(this.region);
+        }
+
+        this.cue = null;
+        this.region = null;
+        return endedCue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
@@ -0,0 +1,215 @@
+package fr.noop.subtitle.srt;
+
+import fr.noop.subtitle.srt.HexRGB.Color;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleRegion.VerticalAlign;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
+import fr.noop.subtitle.util.SubtitleStyle.FontWeight;
+import fr.noop.subtitle.util.SubtitleStyle.TextAlign;
+import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+
+/**
+ * Split the text lines of a SRT cue into styled texts in a single pass.
+ * {\anN} overrides, font colors, italic, bold and underline tags are read, \N is ignored.
+ * Styles go on in the next lines of the cue until they are closed.
+ */
+class SrtTextTokenizer {
+    // Alignments of the {\anN} overrides, indexed by N as on a numeric keypad
+    private static final VerticalAlign[] VERTICAL_ALIGNS = {
+            null,
+            VerticalAlign.BOTTOM, VerticalAlign.BOTTOM, VerticalAlign.BOTTOM,
+            VerticalAlign.MIDDLE, VerticalAlign.MIDDLE, VerticalAlign.MIDDLE,
+            VerticalAlign.TOP, VerticalAlign.TOP, VerticalAlign.TOP};
+    private static final TextAlign[] TEXT_ALIGNS = {
+            null,
+            TextAlign.LEFT, TextAlign.CENTER, TextAlign.RIGHT,
+            TextAlign.LEFT, TextAlign.CENTER, TextAlign.RIGHT,
+            TextAlign.LEFT, TextAlign.CENTER, TextAlign.RIGHT};
+
+    private final StringBuilder text = new StringBuilder();
+    private SubtitleRegion region;
+    private SubtitleStyle textStyle;
+    private SubtitleTextLine line;
+
+    /**
+     * Start a new cue
+     */
+    void begin(SubtitleRegion region) {
+        this.region = region;
+        this.textStyle = new SubtitleStyle();
+    }
+
+    /**
+     * @return the texts of a line, may be empty
+     */
+    SubtitleTextLine tokenize(String textLine) {
+        this.line = new SubtitleTextLine();
+        this.text.setLength(0);
+        int length = textLine.length();
+        int index = 0;
+
+        while (index < length) {
+            char c = textLine.charAt(index);
+            int end = -1;
+
+            if (c == '<') {
+                end = this.readTag(textLine, index);
+            } else if (c == '{') {
+                end = this.readOverride(textLine, index);
+            } else if (c == '\\' && index + 1 < length && textLine.charAt(index + 1) == 'N') {
+                // Ignore \N
+                end = index + 2;
+            }
+
+            if (end == -1) {
+                this.text.append(c);
+                index++;
+            } else {
+                index = end;
+            }
+        }
+
+        this.addText();
+        return this.line;
+    }
+
+    /**
+     * @return the end of the tag or -1 if this is not a known tag
+     */
+    private int readTag(String textLine, int start) {
+        int close = textLine.indexOf('>', start);
+
+        if (close == -1) {
+            return -1;
+        }
+
+        boolean closing = start + 1 < close && textLine.charAt(start + 1) == '/';
+        int nameStart = closing ? start + 2 : start + 1;
+
+        if (close - nameStart == 1) {
+            char name = Character.toLowerCase(textLine.charAt(nameStart));
+
+            if (name != 'i' && name != 'b' && name != 'u') {
+                return -1;
+            }
+
+            this.addText();
+
+            if (name == 'i') {
+                this.textStyle.setFontStyle(closing ? FontStyle.NORMAL : FontStyle.ITALIC);
+            } else if (name == 'b') {
+                this.textStyle.setFontWeight(closing ? FontWeight.NORMAL : FontWeight.BOLD);
+            } else {
+                this.textStyle.setTextDecoration(closing ? TextDecoration.NONE : TextDecoration.UNDERLINE);
+            }
+
+            return close + 1;
+        }
+
+        if (!textLine.regionMatches(true, nameStart, "font", 0, 4)) {
+            return -1;
+        }
+
+        this.addText();
+
+        if (closing) {
+            this.textStyle.getProperties().remove(SubtitleStyle.Property.COLOR);
+            return close + 1;
+        }
+
+        // Color attribute, quoted or not
+        int attribute = indexOfIgnoreCase(textLine, "color=", nameStart + 4, close);
+
+        if (attribute != -1) {
+            int valueStart = attribute + 6;
+            int valueEnd = close;
+
+            if (valueStart < close && textLine.charAt(valueStart) == '"') {
+                valueStart++;
+                int quote = textLine.indexOf('"', valueStart);
+                valueEnd = quote != -1 && quote < close ? quote : close;
+            }
+
+            Color color = findColor(textLine.substring(valueStart, valueEnd).trim());
+
+            // White is the default color
+            if (color == null || color == Color.WHITE) {
+                this.textStyle.getProperties().remove(SubtitleStyle.Property.COLOR);
+            } else {
+                this.textStyle.setColor(color.getColorName());
+            }
+        }
+
+        return close + 1;
+    }
+
+    /**
+     * @return the end of the {\anN} override or -1 if this is not an alignment override
+     */
+    private int readOverride(String textLine, int start) {
+        if (start + 6 > textLine.length() || !textLine.startsWith("\\an", start + 1)) {
+            return -1;
+        }
+
+        int digit = textLine.charAt(start + 4) - '0';
+
+        if (digit < 1 || digit > 9 || textLine.charAt(start + 5) != '}') {
+            return -1;
+        }
+
+        this.region.setVerticalAlign(VERTICAL_ALIGNS[digit]);
+        this.textStyle.setTextAlign(TEXT_ALIGNS[digit]);
+        return start + 6;
+    }
+
+    private void addText() {
+        if (this.text.length() == 0) {
+            return;
+        }
+
+        if (this.textStyle.hasProperties()) {
+            this.line.addText(new SubtitleStyledText(this.text.toString(), this.textStyle.intern()));
+        } else {
+            this.line.addText(new SubtitlePlainText(this.text.toString()));
+        }
+
+        this.text.setLength(0);
+    }
+
+    private static int indexOfIgnoreCase(String string, String searched, int from, int to) {
+        for (int i = from; i + searched.length() <= to; i++) {
+            if (string.regionMatches(true, i, searched, 0, searched.length())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param value Hex code, short hex code or color name
+     * @return the color or null if it is unknown
+     */
+    private static Color findColor(String value) {
+        if (value.length() == 4 && value.charAt(0) == '#') {
+            // #rgb is #rrggbb
+            value = new StringBuilder(7).append('#')
+                    .append(value.charAt(1)).append(value.charAt(1))
+                    .append(value.charAt(2)).append(value.charAt(2))
+                    .append(value.charAt(3)).append(value.charAt(3))
+                    .toString();
+        }
+
+        for (Color color : Color.values()) {
+            if (color.getHexValue().equalsIgnoreCase(value) || color.getColorName().equalsIgnoreCase(value)) {
+                return color;
+            }
+        }
+
+        return null;
+    }
+}
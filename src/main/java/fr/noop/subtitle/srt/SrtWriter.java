@@ -29,6 +29,7 @@ import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 
 /**
  * Created by clebeaupin on 02/10/15.
@@ -40,76 +41,92 @@ public class SrtWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
     private String inputFrameRate;
     private String outputOffset;
 
+    // Current output
+    private OutputStream os;
+    private int subtitleIndex;
+    private SubtitleTimeCode startTimeCode;
+    private float frameRate;
+    private SubtitleTimeCode.Conversion conversion;
+
     public SrtWriter(String charset) {
         this.charset = charset;
     }
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        try {
-            int subtitleIndex = 0;
-            SubtitleTimeCode startTimeCode = new SubtitleTimeCode(0);
-            float frameRate = 25;
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.os = os;
+        this.subtitleIndex = 0;
+        this.startTimeCode = new SubtitleTimeCode(0);
+        this.frameRate = 25;
+
+        if (properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL) != null) {
+            this.startTimeCode = (SubtitleTimeCode) properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
+        }
+        if (this.inputFrameRate != null) {
+            this.frameRate = Float.parseFloat(this.inputFrameRate);
+        } else if (properties.get(SubtitleObject.Property.FRAME_RATE) != null) {
+            this.frameRate = (float) properties.get(SubtitleObject.Property.FRAME_RATE);
+        }
+        this.conversion = new SubtitleTimeCode.Conversion(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
+    }
 
-            if (subtitleObject.hasProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL)){
-                startTimeCode = (SubtitleTimeCode) subtitleObject.getProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
-            }
-            if (this.inputFrameRate != null) {
-                frameRate = Float.parseFloat(this.inputFrameRate);
-            } else if (subtitleObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
-                frameRate = (float) subtitleObject.getProperty(SubtitleObject.Property.FRAME_RATE);
-            }
-            for (SubtitleCue cue : subtitleObject.getCues()) {
-                subtitleIndex++;
-
-                // Write number of subtitle
-                String number = String.format("%d\n", subtitleIndex);
-                os.write(number.getBytes(this.charset));
-
-                // Write Start time and end time
-                SubtitleTimeCode startTC = cue.getStartTime().convertWithOptions(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
-                SubtitleTimeCode endTC = cue.getEndTime().convertWithOptions(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
-
-                String startToEnd = String.format("%s --> %s\n",
-                        this.formatTimeCode(startTC),
-                        this.formatTimeCode(endTC));
-                os.write(startToEnd.getBytes(this.charset));
-
-                // Write text
-                String text = "";
-                for (SubtitleLine line : cue.getLines()) {
-                    for (SubtitleText inText : line.getTexts()) {
-                        String textString = inText.toString();
-                        if (inText instanceof SubtitleStyled) {
-                            SubtitleStyle style = ((SubtitleStyled)inText).getStyle();
-                            if (style.getFontStyle() == FontStyle.ITALIC || style.getFontStyle() == FontStyle.OBLIQUE) {
-                                textString = String.format("<i>%s</i>", textString);
-                            }
-                            if (style.getFontWeight() == FontWeight.BOLD) {
-                                textString = String.format("<b>%s</b>", textString);
-                            }
-                            if (style.getTextDecoration() == TextDecoration.UNDERLINE) {
-                                textString = String.format("<u>%s</u>", textString);
-                            }
-                            if (style.getColor() != null) {
-                                Color color = HexRGB.Color.getEnumFromName(style.getColor());
-                                textString = String.format("<font color=\"%s\">%s</font>", color.getHexValue(), textString);
-                            }
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        try {
+            subtitleIndex++;
+
+            // Write number of subtitle
+            String number = String.format("%d\n", subtitleIndex);
+            os.write(number.getBytes(this.charset));
+
+            // Write Start time and end time
+            SubtitleTimeCode startTC = this.conversion.apply(cue.getStartTime());
+            SubtitleTimeCode endTC = this.conversion.apply(cue.getEndTime());
+
+            String startToEnd = String.format("%s --> %s\n",
+                    this.formatTimeCode(startTC),
+                    this.formatTimeCode(endTC));
+            os.write(startToEnd.getBytes(this.charset));
+
+            // Write text
+            String text = "";
+            for (SubtitleLine line : cue.getLines()) {
+                for (SubtitleText inText : line.getTexts()) {
+                    String textString = inText.toString();
+                    if (inText instanceof SubtitleStyled) {
+                        SubtitleStyle style = ((SubtitleStyled)inText).getStyle();
+                        if (style.getFontStyle() == FontStyle.ITALIC || style.getFontStyle() == FontStyle.OBLIQUE) {
+                            textString = String.format("<i>%s</i>", textString);
+                        }
+                        if (style.getFontWeight() == FontWeight.BOLD) {
+                            textString = String.format("<b>%s</b>", textString);
+                        }
+                        if (style.getTextDecoration() == TextDecoration.UNDERLINE) {
+                            textString = String.format("<u>%s</u>", textString);
+                        }
+                        if (style.getColor() != null) {
+                            Color color = HexRGB.Color.getEnumFromName(style.getColor());
+                            textString = String.format("<font color=\"%s\">%s</font>", color.getHexValue(), textString);
                         }
-                        text += textString;
                     }
-                    text += "\n";
+                    text += textString;
                 }
-                os.write(text.getBytes(this.charset));
-
-                // Write emptyline
-                os.write("\n".getBytes(this.charset));
+                text += "\n";
             }
+            os.write(text.getBytes(this.charset));
+
+            // Write emptyline
+            os.write("\n".getBytes(this.charset));
         } catch (UnsupportedEncodingException e) {
             throw new IOException("Encoding error in input subtitle");
         }
     }
 
+    @Override
+    public void end() throws IOException {
+        this.os.flush();
+    }
+
     private String formatTimeCode(SubtitleTimeCode timeCode) {
         return String.format("%02d:%02d:%02d,%03d",
                 timeCode.getHour(),
@@ -13,10 +13,6 @@ package fr.noop.subtitle.stl;
 import fr.noop.subtitle.base.BaseSubtitleCue;
 import fr.noop.subtitle.model.SubtitleRegionCue;
 import fr.noop.subtitle.util.*;
-import fr.noop.subtitle.util.SubtitleStyle.Effect;
-import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
-import fr.noop.subtitle.util.SubtitleStyle.TextAlign;
-import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,153 +34,71 @@ public class StlCue extends BaseSubtitleCue implements SubtitleRegionCue {
     // height and y values vary depending on TTI vp value and cue number of lines
     SubtitleRegion region;
     StlGsi.Dsc dsc;
+    transient String charset;
 
     public StlCue(StlTti tti, StlGsi gsi) {
-        super(tti.getTci(), tti.getTco());
+        this(List.of(tti), gsi, new StlTextScanner(gsi.getCct().getCharset()));
+    }
+
+    /**
+     * @param ttis Blocks of a subtitle, the first one followed by its extension blocks
+     */
+    StlCue(List<StlTti> ttis, StlGsi gsi, StlTextScanner scanner) {
+        super(ttis.get(0).getTci(), ttis.get(0).getTco());
         this.dsc = gsi.getDsc();
-        this.addTti(tti);
+        this.charset = gsi.getCct().getCharset();
+        this.ttis.addAll(ttis);
+        // Build cue text from tti text fields
+        scanner.scan(this.ttis, this.dsc, this);
+    }
+
+    private StlCue(StlCue previous, StlCue next) {
+        super(next.getStartTime(), next.getEndTime(), new ArrayList<>(previous.getLines()));
+        this.dsc = next.dsc;
+        this.charset = next.charset;
+        this.ttis.addAll(previous.ttis);
+        this.ttis.addAll(next.ttis);
+        this.getLines().addAll(next.getLines());
     }
 
     public List<StlTti> getTtis() {
         return this.ttis;
     }
 
+    /**
+     * Add an extension block, its text field continues the text field of the previous block
+     */
     public void addTti(StlTti tti) {
+        this.addTti(tti, new StlTextScanner(this.charset));
+    }
+
+    void addTti(StlTti tti, StlTextScanner scanner) {
         this.ttis.add(tti);
-        this.addText(tti);
+        this.setCharacterCodes(null);
+        // A row may continue in the new block, text is built again
+        this.setLines(new ArrayList<>());
+        scanner.scan(this.ttis, this.dsc, this);
     }
 
     /**
-     * Build cue text from tti text field
+     * Cumulative subtitles are added to the ones already displayed
+     *
+     * @return a cue displaying the lines of this cue followed by the lines of the next one, at the time of the next one
      */
-    private void addText(StlTti tti) {
-        String tf = tti.getTf();
-        this.setCharacterCodes(tf);
-
-        for (String tfPart: tf.split("\u008a")) {
-            SubtitleTextLine line = new SubtitleTextLine();
-            SubtitleStyle textStyle = null;
-            String text = null;
-            boolean startText = true; // Set to true to start ingesting text
-            int cIndex = 0; // Char index
-
-            while (cIndex < tfPart.length()) {
-                // Current char and current byte
-                char cc = tfPart.charAt(cIndex);
-                int cByte = (cc & 0xff); // get unsigned byte
-                cIndex++;
-
-                // If not defined, create new text with new style
-                if (text == null) {
-                    text = new String();
-                    if (dsc == StlGsi.Dsc.TELETEXT_LEVEL_1 || dsc == StlGsi.Dsc.TELETEXT_LEVEL_2){ // teletext case
-                        if (tti.getJc() == StlTti.Jc.NONE) {
-                            // Start ingesting text before start box directive (0x0b)
-                            startText = true;
-                        } else {
-                            startText = false;
-                        }
-                    }
-                }
-
-                if (textStyle == null) {
-                    textStyle = new SubtitleStyle();
-                    if (tti.getJc() == StlTti.Jc.CENTER) {
-                        textStyle.setTextAlign(TextAlign.CENTER);
-                    }
-                    if (tti.getJc() == StlTti.Jc.LEFT) {
-                        textStyle.setTextAlign(TextAlign.LEFT);
-                    }
-                    if (tti.getJc() == StlTti.Jc.RIGHT) {
-                        textStyle.setTextAlign(TextAlign.RIGHT);
-                    }
-                }
-
-                // Start box directive // teletext case
-                if (cByte == 0x0b) {
-                    startText = true;
-                }
-
-                // Do not process these values
-                if ((cByte >= 0x08 && cByte <= 0x09) ||
-                        (cByte >= 0x0b && cByte <= 0x0f) ||
-                        (cByte >= 0x18 && cByte <= 0x1f) ||
-                        (cByte >= 0x86 && cByte <= 0x8f)) {
-                    continue;
-                }
-
-                // FIXME: Process text decoration
-                if (cByte == 0x80 || cByte == 0x82 || cByte == 0x84) {
-                    startText = true;
-
-                    if (text != null && !text.isEmpty()) {
-                        if (!textStyle.hasProperties()) {
-                            line.addText(new SubtitlePlainText(text));
-                        } else {
-                            line.addText(new SubtitleStyledText(text, new SubtitleStyle(textStyle)));
-                        }
-                        text = new String();
-                    }
-
-                    if (cByte == StlTti.TextStyle.ITALIC_ON.getValue()) {
-                        textStyle.setFontStyle(FontStyle.ITALIC);
-                    }
-                    if (cByte == StlTti.TextStyle.UNDERLINE_ON.getValue()) {
-                        textStyle.setTextDecoration(TextDecoration.UNDERLINE);
-                    }
-                    if (cByte == StlTti.TextStyle.BOXING_ON.getValue()) {
-                        textStyle.setEffect(Effect.BOX);
-                    }
-
-                    continue;
-                }
-
-                // Color information
-                if ((cByte >= 0x00 && cByte <= 0x07) ||
-                        (cByte >= 0x10 && cByte <= 0x17)) {
-                    textStyle.setColor(StlTti.TextColor.getEnum(cByte).getColor());
-                    continue;
-                }
-
-                // Text content is closed
-                if (cByte == 0x0a || cByte == 0x81 || cByte == 0x83 || cByte == 0x85) {
-                    if (!textStyle.hasProperties()) {
-                        // Style override any properties
-                        // So do not register it
-                        textStyle = null;
-                    }
-
-                    if (text != null && !text.isEmpty()) {
-                        if (textStyle == null) {
-                            line.addText(new SubtitlePlainText(text));
-                        } else {
-                            line.addText(new SubtitleStyledText(text, textStyle));
-                        }
-                    }
-
-                    text = new String();
-                    textStyle = null;
-                    continue;
-                }
-
-                // Readable char
-                if (startText) {
-                    text += cc;
-                }
-            }
-            // if text not added before; add it
-            if (text != null && !text.isEmpty()) {
-                if (textStyle == null || !textStyle.hasProperties()) {
-                    line.addText(new SubtitlePlainText(text));
-                } else {
-                    line.addText(new SubtitleStyledText(text, textStyle));
-                }
-            }
-            // Add text row
-            if (!line.isEmpty()) {
-                this.addLine(line);
-            }
+    StlCue append(StlCue next) {
+        return new StlCue(this, next);
+    }
+
+    /**
+     * @return the text field of the last tti, decoded on demand
+     */
+    @Override
+    public String getCharacterCodes() {
+        if (super.getCharacterCodes() == null) {
+            this.setCharacterCodes(this.ttis.get(this.ttis.size() - 1).getTf());
         }
+
+        return super.getCharacterCodes();
     }
 
     public boolean isEmpty() {
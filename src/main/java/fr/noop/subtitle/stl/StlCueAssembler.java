@@ -0,0 +1,123 @@
+package fr.noop.subtitle.stl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Assemble cues from TTI blocks read in file order.
+ * Extension blocks are merged in the cue of their subtitle and user data blocks are skipped.
+ * Each subtitle of a cumulative set is displayed with the subtitles of the set already displayed,
+ * until the next subtitle of the set is displayed.
+ * Only the blocks of the current subtitle and the previous cue of a cumulative set are held.
+ */
+class StlCueAssembler {
+    // Extension Block Number (EBN)
+    static final int EBN_LAST = 0xFF; // Last block of a subtitle
+    static final int EBN_USER_DATA = 0xFE;
+
+    // Cumulative Status (CS)
+    static final int CS_FIRST = 0x01;
+    static final int CS_INTERMEDIATE = 0x02;
+    static final int CS_LAST = 0x03;
+
+    private final StlGsi gsi;
+    private final StlTextScanner scanner;
+    private final List<StlTti> blocks = new ArrayList<>(); // Blocks of the current subtitle
+    private final Deque<StlCue> cues = new ArrayDeque<>(); // Assembled cues
+    private StlCue cumulative; // Cue of a cumulative set waiting for the next subtitle of the set
+
+    StlCueAssembler(StlGsi gsi, StlTextScanner scanner) {
+        this.gsi = gsi;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Add the next block of the file
+     */
+    void add(StlTti tti) {
+        if (tti.getEbn() == EBN_USER_DATA) {
+            return;
+        }
+
+        // The last block of the previous subtitle is missing
+        if (!this.blocks.isEmpty() && this.blocks.get(0).getSn() != tti.getSn()) {
+            this.assemble();
+        }
+
+        this.blocks.add(tti);
+
+        if (tti.getEbn() == EBN_LAST) {
+            this.assemble();
+        }
+    }
+
+    /**
+     * All blocks have been added, assemble the pending ones
+     */
+    void finish() {
+        if (!this.blocks.isEmpty()) {
+            this.assemble();
+        }
+
+        if (this.cumulative != null) {
+            this.complete(this.cumulative);
+            this.cumulative = null;
+        }
+    }
+
+    /**
+     * @return the next assembled cue or null if more blocks are needed
+     */
+    StlCue poll() {
+        return this.cues.poll();
+    }
+
+    private void assemble() {
+        StlCue cue = new StlCue(this.blocks, this.gsi, this.scanner);
+        int cs = this.blocks.get(0).getCs();
+        this.blocks.clear();
+
+        if (this.cumulative != null) {
+            if (cs == CS_INTERMEDIATE || cs == CS_LAST) {
+                // Previous subtitles of the set are displayed until this one is added
+                if (this.cumulative.getEndTime().compareTo(cue.getStartTime()) > 0) {
+                    this.cumulative.setEndTime(cue.getStartTime());
+                }
+
+                StlCue previous = this.cumulative;
+                this.cumulative = previous.append(cue);
+                this.complete(previous);
+
+                if (cs == CS_LAST) {
+                    this.complete(this.cumulative);
+                    this.cumulative = null;
+                }
+
+                return;
+            }
+
+            // The last subtitle of the set is missing
+            this.complete(this.cumulative);
+            this.cumulative = null;
+        }
+
+        if (cs == CS_FIRST) {
+            this.cumulative = cue;
+            return;
+        }
+
+        this.complete(cue);
+    }
+
+    private void complete(StlCue cue) {
+        // Do not create cue if tti text field is empty
+        if (cue.isEmpty()) {
+            return;
+        }
+
+        cue.setRegion(StlObject.buildRegion(cue, this.gsi));
+        this.cues.add(cue);
+    }
+}
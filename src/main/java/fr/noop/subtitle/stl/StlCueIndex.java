@@ -0,0 +1,265 @@
+package fr.noop.subtitle.stl;
+
+import fr.noop.subtitle.util.SubtitleTimeBase;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Random access index over the TTI blocks of a memory mapped STL file.
+ * Time codes are kept in primitive arrays, blocks are only decoded when a cue is requested.
+ */
+public class StlCueIndex {
+    // Offsets inside a TTI block
+    private static final int SN_OFFSET = 1;
+    private static final int EBN_OFFSET = 3;
+    private static final int TCI_OFFSET = 5;
+    private static final int TCO_OFFSET = 9;
+
+    private final StlParser parser;
+    private final StlGsi gsi;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int[] tci; // Time code in of each block, in milliseconds
+    private final int[] tco; // Time code out of each block, in milliseconds
+    private final int[] blockBySn; // First block of each subtitle number, -1 if none
+    private final int[] order; // Blocks sorted by time code in
+    private final int[] maxTco; // Highest time code out of the sorted blocks up to each position
+
+    StlCueIndex(StlParser parser, StlGsi gsi, ByteBuffer buffer) {
+        this.parser = parser;
+        this.gsi = gsi;
+        this.buffer = buffer;
+        this.size = gsi.getTnb();
+        this.tci = new int[this.size];
+        this.tco = new int[this.size];
+
+        SubtitleTimeBase timeBase = gsi.getDfc().getTimeBase();
+        int maxSn = -1;
+
+        for (int block = 0; block < this.size; block++) {
+            int offset = offset(block);
+            this.tci[block] = StlParser.readTimeMillis(buffer, offset + TCI_OFFSET, timeBase);
+            this.tco[block] = StlParser.readTimeMillis(buffer, offset + TCO_OFFSET, timeBase);
+            maxSn = Math.max(maxSn, this.readSn(block));
+        }
+
+        // Map subtitle numbers to their first text block
+        this.blockBySn = new int[maxSn + 1];
+        Arrays.fill(this.blockBySn, -1);
+
+        for (int block = 0; block < this.size; block++) {
+            int sn = this.readSn(block);
+
+            if (this.blockBySn[sn] == -1 && this.readEbn(block) != StlCueAssembler.EBN_USER_DATA) {
+                this.blockBySn[sn] = block;
+            }
+        }
+
+        // Sort blocks by time code in, keeping file order for equal time codes
+        this.order = this.sortByTci();
+        this.maxTco = new int[this.size];
+        int max = Integer.MIN_VALUE;
+
+        for (int i = 0; i < this.size; i++) {
+            max = Math.max(max, this.tco[this.order[i]]);
+            this.maxTco[i] = max;
+        }
+    }
+
+    private static int offset(int block) {
+        return StlParser.GSI_BLOCK_SIZE + block * StlParser.TTI_BLOCK_SIZE;
+    }
+
+    private int readEbn(int block) {
+        return this.buffer.get(offset(block) + EBN_OFFSET) & 0xff;
+    }
+
+    private int readSn(int block) {
+        int offset = offset(block) + SN_OFFSET;
+        return (this.buffer.get(offset) & 0xff) | (this.buffer.get(offset + 1) & 0xff) << 8;
+    }
+
+    private int[] sortByTci() {
+        // Pack time code and block number in a long to sort without boxing
+        long[] keys = new long[this.size];
+
+        for (int block = 0; block < this.size; block++) {
+            keys[block] = (long) this.tci[block] << 32 | block;
+        }
+
+        Arrays.sort(keys);
+        int[] sorted = new int[this.size];
+
+        for (int i = 0; i < this.size; i++) {
+            sorted[i] = (int) keys[i];
+        }
+
+        return sorted;
+    }
+
+    public StlGsi getGsi() {
+        return this.gsi;
+    }
+
+    /**
+     * @return the number of TTI blocks
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the time code in of a block in milliseconds
+     */
+    public int getTci(int block) {
+        return this.tci[block];
+    }
+
+    /**
+     * @return the time code out of a block in milliseconds
+     */
+    public int getTco(int block) {
+        return this.tco[block];
+    }
+
+    /**
+     * @return the first block of a subtitle number or -1 if there is none
+     */
+    public int getBlock(int sn) {
+        if (sn < 0 || sn >= this.blockBySn.length) {
+            return -1;
+        }
+
+        return this.blockBySn[sn];
+    }
+
+    /**
+     * Decode a single TTI block.
+     */
+    public StlTti getTti(int block) {
+        if (block < 0 || block >= this.size) {
+            throw new IndexOutOfBoundsException(String.format("Block %d is out of range", block));
+        }
+
+        return this.parser.readTti(this.buffer.slice(offset(block), StlParser.TTI_BLOCK_SIZE), this.gsi);
+    }
+
+    /**
+     * Cues may be requested from several threads, each request gets its own scanner
+     */
+    private StlTextScanner newScanner() {
+        return new StlTextScanner(this.gsi.getCct().getCharset());
+    }
+
+    /**
+     * @return the cue having this subtitle number or null if it does not exist or is empty
+     */
+    public StlCue getCue(int sn) {
+        int block = this.getBlock(sn);
+
+        if (block == -1) {
+            return null;
+        }
+
+        return this.buildCue(block, this.newScanner());
+    }
+
+    /**
+     * Build a cue from a block and its extension blocks.
+     * Subtitles of a cumulative set are built on their own.
+     */
+    private StlCue buildCue(int block, StlTextScanner scanner) {
+        StlCueAssembler assembler = new StlCueAssembler(this.gsi, scanner);
+        int sn = this.readSn(block);
+        int ebn;
+
+        do {
+            ebn = this.readEbn(block);
+            assembler.add(this.getTti(block));
+            block++;
+        } while (ebn != StlCueAssembler.EBN_LAST && block < this.size && this.readSn(block) == sn);
+
+        assembler.finish();
+        return assembler.poll();
+    }
+
+    /**
+     * @return true if the block continues the text field of the previous block
+     */
+    private boolean isExtension(int block) {
+        if (block == 0 || this.readSn(block - 1) != this.readSn(block)) {
+            return false;
+        }
+
+        int previousEbn = this.readEbn(block - 1);
+        return previousEbn != StlCueAssembler.EBN_LAST && previousEbn != StlCueAssembler.EBN_USER_DATA;
+    }
+
+    /**
+     * @return the blocks displayed at this time (in milliseconds), in file order
+     */
+    public int[] getActiveBlocks(int time) {
+        // Find the last block starting before or at time
+        int low = 0;
+        int high = this.size - 1;
+        int last = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (this.tci[this.order[mid]] <= time) {
+                last = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // Walk back while a block may still be displayed
+        int[] active = new int[0];
+        int count = 0;
+
+        for (int i = last; i >= 0 && this.maxTco[i] > time; i--) {
+            int block = this.order[i];
+
+            if (this.tco[block] > time) {
+                if (count == active.length) {
+                    active = Arrays.copyOf(active, Math.max(4, count * 2));
+                }
+
+                active[count++] = block;
+            }
+        }
+
+        active = Arrays.copyOf(active, count);
+        Arrays.sort(active);
+        return active;
+    }
+
+    /**
+     * @return the non empty cues displayed at this time
+     */
+    public List<StlCue> getActiveCues(SubtitleTimeCode time) {
+        List<StlCue> cues = new ArrayList<>();
+        StlTextScanner scanner = this.newScanner();
+
+        for (int block : this.getActiveBlocks((int) time.getTime())) {
+            // Extension blocks are built with their first block
+            if (this.readEbn(block) == StlCueAssembler.EBN_USER_DATA || this.isExtension(block)) {
+                continue;
+            }
+
+            StlCue cue = this.buildCue(block, scanner);
+
+            if (cue != null) {
+                cues.add(cue);
+            }
+        }
+
+        return cues;
+    }
+}
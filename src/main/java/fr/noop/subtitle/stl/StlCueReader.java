@@ -0,0 +1,129 @@
+package fr.noop.subtitle.stl;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Read STL cues one TTI block at a time.
+ * Blocks are either read from a stream or sliced from a memory mapped buffer.
+ */
+public class StlCueReader implements SubtitleCueReader {
+    private StlParser parser;
+    private StlGsi gsi;
+    private DataInputStream dis; // Stream source
+    private ByteBuffer buffer; // Memory mapped source
+    private int subtitleIndex = 0;
+    private StlTti previousTti = null;
+    private StlCueAssembler assembler;
+
+    StlCueReader(StlParser parser, StlGsi gsi, DataInputStream dis) {
+        this.parser = parser;
+        this.gsi = gsi;
+        this.dis = dis;
+    }
+
+    StlCueReader(StlParser parser, StlGsi gsi, ByteBuffer buffer) {
+        this.parser = parser;
+        this.gsi = gsi;
+        this.buffer = buffer;
+    }
+
+    public StlGsi getGsi() {
+        return this.gsi;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        return StlObject.buildProperties(this.gsi);
+    }
+
+    /**
+     * @return the next TTI block or null when all blocks have been read
+     */
+    public StlTti nextTti() throws SubtitleParsingException {
+        if (this.subtitleIndex >= this.gsi.getTnb()) {
+            return null;
+        }
+
+        ByteBuffer block = this.nextBlock();
+        this.subtitleIndex++;
+
+        StlTti tti = this.parser.readTti(block, this.gsi);
+        this.checkOverlap(tti);
+        this.previousTti = tti;
+        return tti;
+    }
+
+    private ByteBuffer nextBlock() throws SubtitleParsingException {
+        if (this.buffer != null) {
+            // Parse block in place
+            int offset = StlParser.GSI_BLOCK_SIZE + this.subtitleIndex * StlParser.TTI_BLOCK_SIZE;
+
+            if (offset + StlParser.TTI_BLOCK_SIZE > this.buffer.limit()) {
+                throw new SubtitleParsingException("Unable to parse tti block");
+            }
+
+            return this.buffer.slice(offset, StlParser.TTI_BLOCK_SIZE);
+        }
+
+        // Each block gets its own buffer because the text field is decoded lazily
+        byte[] ttiBytes = new byte[StlParser.TTI_BLOCK_SIZE];
+
+        try {
+            this.dis.readFully(ttiBytes);
+        } catch (IOException e) {
+            throw new SubtitleParsingException("Unable to parse tti block");
+        }
+
+        return ByteBuffer.wrap(ttiBytes);
+    }
+
+    private void checkOverlap(StlTti tti) {
+        if (this.previousTti == null) {
+            return;
+        }
+
+        if (this.previousTti.getTco().compareTo(tti.getTci()) == 1) {
+            float frameRate = this.gsi.getDfc().getFrameRate();
+            System.out.printf("Subtitle from %s to %s overlaps previous subtitle (%s - %s)\n",
+            tti.getTci().formatWithFramerate(frameRate), tti.getTco().formatWithFramerate(frameRate),
+            this.previousTti.getTci().formatWithFramerate(frameRate), this.previousTti.getTco().formatWithFramerate(frameRate));
+        }
+    }
+
+    @Override
+    public StlCue next() throws SubtitleParsingException {
+        if (this.assembler == null) {
+            this.assembler = new StlCueAssembler(this.gsi, new StlTextScanner(this.gsi.getCct().getCharset()));
+        }
+
+        StlCue cue;
+
+        // Read blocks until a subtitle is complete
+        while ((cue = this.assembler.poll()) == null) {
+            StlTti tti = this.nextTti();
+
+            if (tti == null) {
+                this.assembler.finish();
+                return this.assembler.poll();
+            }
+
+            this.assembler.add(tti);
+        }
+
+        return cue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.dis != null) {
+            this.dis.close();
+        }
+    }
+}
@@ -11,6 +11,7 @@
 package fr.noop.subtitle.stl;
 
 import fr.noop.subtitle.util.SubtitleTimeCode;
+import fr.noop.subtitle.util.SubtitleTimeBase;
 import java.util.Date;
 import fr.noop.subtitle.stl.LanguageCode.Lc;
 
@@ -100,6 +101,10 @@ public class StlGsi {
             return this.frameRate;
         }
 
+        public SubtitleTimeBase getTimeBase() {
+            return SubtitleTimeBase.valueOf(this.frameRate);
+        }
+
         public static Dfc getEnum(String value) {
             for(Dfc v : values())
                 if(v.getValue().equalsIgnoreCase(value)) return v;
@@ -11,29 +11,45 @@
 package fr.noop.subtitle.stl;
 
 import fr.noop.subtitle.base.BaseSubtitleObject;
+import fr.noop.subtitle.model.SubtitleCue;
 import fr.noop.subtitle.stl.StlGsi.Dsc;
 import fr.noop.subtitle.util.SubtitleRegion;
 import fr.noop.subtitle.util.SubtitleRegion.VerticalAlign;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by clebeaupin on 22/09/15.
+ *
+ * Cues are only built from the tti blocks when they are requested.
  */
 public class StlObject extends BaseSubtitleObject {
     private StlGsi gsi;
     List<StlTti> ttis = new ArrayList<>();
+    private transient int builtTtis = 0; // Number of ttis already turned into cues
+    private transient StlTextScanner scanner;
 
     public StlObject(StlGsi gsi) {
-        this.setProperty(Property.TITLE, gsi.getOpt());
-        this.setProperty(Property.FRAME_RATE, gsi.getDfc().getFrameRate());
-        this.setProperty(Property.START_TIMECODE_PRE_ROLL, gsi.getTcp());
-        this.setProperty(Property.DISPLAY_STANDARD, gsi.getDsc());
-        this.setProperty(Property.MAX_ROWS, gsi.getMnr());
+        this.getProperties().putAll(buildProperties(gsi));
         this.gsi = gsi;
     }
 
+    /**
+     * Properties shared by all cues, read from the gsi
+     */
+    static Map<Property, Object> buildProperties(StlGsi gsi) {
+        Map<Property, Object> properties = new HashMap<>();
+        properties.put(Property.TITLE, gsi.getOpt());
+        properties.put(Property.FRAME_RATE, gsi.getDfc().getFrameRate());
+        properties.put(Property.START_TIMECODE_PRE_ROLL, gsi.getTcp());
+        properties.put(Property.DISPLAY_STANDARD, gsi.getDsc());
+        properties.put(Property.MAX_ROWS, gsi.getMnr());
+        return properties;
+    }
+
     public StlGsi getGsi() {
         return this.gsi;
     }
@@ -48,18 +64,129 @@ public class StlObject extends BaseSubtitleObject {
 
     public void setTtis(List<StlTti> ttis) {
         this.ttis = ttis;
+        this.builtTtis = ttis.size();
     }
 
     public void addTti(StlTti tti) {
         this.ttis.add(tti);
-        // Create cue from tti
-        StlCue cue = new StlCue(tti, gsi);
+    }
+
+    @Override
+    public List<SubtitleCue> getCues() {
+        // Create cues from the ttis added since the last call
+        if (this.builtTtis < this.ttis.size()) {
+            StlCueAssembler assembler = this.newAssembler();
+
+            while (this.builtTtis < this.ttis.size()) {
+                assembler.add(this.ttis.get(this.builtTtis++));
+            }
+
+            assembler.finish();
+            StlCue cue;
+
+            while ((cue = assembler.poll()) != null) {
+                this.addCue(cue);
+            }
+        }
+
+        return super.getCues();
+    }
+
+    /**
+     * Only decode the text fields needed to find the first cue
+     */
+    @Override
+    public SubtitleCue getFirstCue() {
+        if (this.builtTtis > 0 || !super.getCues().isEmpty()) {
+            return super.getFirstCue();
+        }
+
+        StlCueAssembler assembler = this.newAssembler();
+
+        for (StlTti tti : this.ttis) {
+            assembler.add(tti);
+            StlCue cue = assembler.poll();
+
+            if (cue != null) {
+                return cue;
+            }
+        }
+
+        assembler.finish();
+        return assembler.poll();
+    }
 
-        // Do not create cue if tti text field is empty
-        if (cue.isEmpty()) {
-            return;
+    /**
+     * Only decode the text fields needed to find the last cue
+     */
+    @Override
+    public SubtitleCue getLastCue() {
+        if (this.builtTtis > 0 || !super.getCues().isEmpty()) {
+            return super.getLastCue();
         }
 
+        int end = this.ttis.size();
+
+        while (end > 0) {
+            // Assemble the last subtitle or cumulative set, then the previous one while they are empty
+            int start = this.findSubtitleStart(end - 1);
+            StlCueAssembler assembler = this.newAssembler();
+
+            for (StlTti tti : this.ttis.subList(start, end)) {
+                assembler.add(tti);
+            }
+
+            assembler.finish();
+            StlCue last = null;
+            StlCue cue;
+
+            while ((cue = assembler.poll()) != null) {
+                last = cue;
+            }
+
+            if (last != null) {
+                return last;
+            }
+
+            end = start;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the first block of the subtitle or cumulative set having this block
+     */
+    private int findSubtitleStart(int index) {
+        while (index > 0) {
+            StlTti tti = this.ttis.get(index);
+            boolean extension = this.ttis.get(index - 1).getSn() == tti.getSn();
+            boolean cumulative = tti.getCs() == StlCueAssembler.CS_INTERMEDIATE || tti.getCs() == StlCueAssembler.CS_LAST;
+
+            if (!extension && !cumulative) {
+                break;
+            }
+
+            index--;
+        }
+
+        return index;
+    }
+
+    private StlCueAssembler newAssembler() {
+        if (this.scanner == null) {
+            this.scanner = new StlTextScanner(this.gsi.getCct().getCharset());
+        }
+
+        return new StlCueAssembler(this.gsi, this.scanner);
+    }
+
+    /**
+     * Create the region of a cue from its first tti
+     */
+    static SubtitleRegion buildRegion(StlCue cue, StlGsi gsi) {
+        StlTti tti = cue.getTtis().get(0);
+
         // Create cue region
         // Use tti vertical position
         // and gsi maximum number of rows information
@@ -84,9 +211,6 @@ public class StlObject extends BaseSubtitleObject {
             region.setVerticalAlign(VerticalAlign.TOP);
         }
 
-        cue.setRegion(region);
-
-        // Add cue to stl object
-        this.addCue(cue);
+        return region;
     }
 }
@@ -12,17 +12,19 @@ package fr.noop.subtitle.stl;
 
 import fr.noop.subtitle.model.SubtitleParser;
 import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleTimeBase;
 import fr.noop.subtitle.util.SubtitleTimeCode;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.time.Duration;
-import java.time.temporal.TemporalUnit;
 import java.util.Date;
 import org.apache.commons.lang3.StringUtils;
 
@@ -30,6 +32,14 @@ import org.apache.commons.lang3.StringUtils;
  * Created by clebeaupin on 21/09/15.
  */
 public class StlParser implements SubtitleParser {
+    // GSI block is 1024 bytes long, each TTI block is 128 bytes long
+    static final int GSI_BLOCK_SIZE = 1024;
+    static final int TTI_BLOCK_SIZE = 128;
+
+    // Text field is stored at the end of the TTI block
+    static final int TF_OFFSET = 16;
+    static final int TF_SIZE = 112;
+
     public StlParser() {
     }
 
@@ -40,46 +50,98 @@ public class StlParser implements SubtitleParser {
 
     @Override
     public StlObject parse(InputStream is, boolean strict) throws SubtitleParsingException {
-        BufferedInputStream bis = new BufferedInputStream(is);
-        DataInputStream dis = new DataInputStream(bis);
+        return this.parse(this.read(is, strict));
+    }
 
+    /**
+     * Parse a STL file through a memory mapped buffer.
+     * TTI blocks are addressed by their fixed offset in the file and are not copied:
+     * text fields are only decoded when they are accessed.
+     */
+    public StlObject parse(Path path) throws IOException, SubtitleParsingException {
+        return parse(path, true);
+    }
+
+    public StlObject parse(Path path, boolean strict) throws IOException, SubtitleParsingException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel, strict);
+        }
+    }
+
+    public StlObject parse(FileChannel channel, boolean strict) throws IOException, SubtitleParsingException {
+        return this.parse(this.read(channel, strict));
+    }
+
+    private StlObject parse(StlCueReader reader) throws SubtitleParsingException {
         // Create STL subtitle
-        StlObject stl;
+        StlObject stl = new StlObject(reader.getGsi());
+
+        // Iterate over all TTI blocks and parse them
+        StlTti tti;
+
+        while ((tti = reader.nextTti()) != null) {
+            stl.addTti(tti);
+        }
+
+        return stl;
+    }
+
+    @Override
+    public StlCueReader read(InputStream is) throws SubtitleParsingException {
+        return read(is, true);
+    }
+
+    @Override
+    public StlCueReader read(InputStream is, boolean strict) throws SubtitleParsingException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
 
         try {
             // Read GSI block
-            StlGsi gsi = this.readGsi(dis);
-            stl = new StlObject(gsi);
+            byte[] gsiBytes = new byte[GSI_BLOCK_SIZE];
+            dis.readFully(gsiBytes);
+            return new StlCueReader(this, this.readGsi(ByteBuffer.wrap(gsiBytes)), dis);
         } catch (IOException e) {
             throw new SubtitleParsingException("Unable to parse Gsi block");
         }
+    }
 
-        // Iterate over all TTI blocks and parse them
-        int subtitleIndex = 0;
-        SubtitleTimeCode previousIn = new SubtitleTimeCode(0);
-        SubtitleTimeCode previousOut = new SubtitleTimeCode(0);
-
-        while (subtitleIndex++ < stl.getGsi().getTnb()) {
-            StlTti tti;
-
-            try {
-                tti = this.readTti(dis, stl.getGsi());
-                if (previousOut.compareTo(tti.getTci()) == 1) {
-                    float frameRate = stl.getGsi().getDfc().getFrameRate();
-                    System.out.printf("Subtitle from %s to %s overlaps previous subtitle (%s - %s)\n",
-                    tti.getTci().formatWithFramerate(frameRate), tti.getTco().formatWithFramerate(frameRate),
-                    previousIn.formatWithFramerate(frameRate), previousOut.formatWithFramerate(frameRate));
-                }
-                previousIn = tti.getTci();
-                previousOut = tti.getTco();
-            } catch (IOException e) {
-                throw new SubtitleParsingException("Unable to parse tti block");
-            }
+    public StlCueReader read(FileChannel channel, boolean strict) throws IOException, SubtitleParsingException {
+        ByteBuffer buffer = this.map(channel);
 
-            stl.addTti(tti);
+        // Read GSI block
+        return new StlCueReader(this, this.readGsi(buffer.slice(0, GSI_BLOCK_SIZE)), buffer);
+    }
+
+    /**
+     * Build a random access index over a STL file.
+     * Only time codes and subtitle numbers are read, text fields are decoded on demand.
+     */
+    public StlCueIndex index(Path path) throws IOException, SubtitleParsingException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return index(channel);
         }
+    }
 
-        return stl;
+    public StlCueIndex index(FileChannel channel) throws IOException, SubtitleParsingException {
+        ByteBuffer buffer = this.map(channel);
+        StlGsi gsi = this.readGsi(buffer.slice(0, GSI_BLOCK_SIZE));
+
+        if (GSI_BLOCK_SIZE + (long) gsi.getTnb() * TTI_BLOCK_SIZE > buffer.limit()) {
+            throw new SubtitleParsingException("Unable to parse tti block");
+        }
+
+        return new StlCueIndex(this, gsi, buffer);
+    }
+
+    private ByteBuffer map(FileChannel channel) throws IOException, SubtitleParsingException {
+        // The mapping remains valid once the channel is closed
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (buffer.limit() < GSI_BLOCK_SIZE) {
+            throw new SubtitleParsingException("Unable to parse Gsi block");
+        }
+
+        return buffer;
     }
 
     private Date readDate(String dateString) {
@@ -93,7 +155,7 @@ public class StlParser implements SubtitleParser {
         }
     }
 
-    private SubtitleTimeCode readTimeCode(String timeCodeString, float frameRate) throws IOException {
+    private SubtitleTimeCode readTimeCode(String timeCodeString, SubtitleTimeBase timeBase) {
         if (timeCodeString.equals("")) {
             return new SubtitleTimeCode(0, 0, 0, 0);
         }
@@ -103,10 +165,7 @@ public class StlParser implements SubtitleParser {
         t.minute = Integer.parseInt(timeCodeString.substring(2, 4));
         t.second = Integer.parseInt(timeCodeString.substring(4, 6));
         int frame = Integer.parseInt(timeCodeString.substring(6, 8));
-        
-        // Frame duration in milliseconds
-        float frameDuration = (1000 / frameRate);
-        t.millisecond = Math.round(frame * frameDuration);
+        t.millisecond = timeBase.frameToMillis(frame);
         // and some STL have 1-25 encoded frame...
         InnerTime fixedT = fixTime(t);
         // Build time code
@@ -150,16 +209,14 @@ public class StlParser implements SubtitleParser {
         }
     }
 
-    private SubtitleTimeCode readTimeCode(DataInputStream dis, float frameRate) throws IOException {
+    private SubtitleTimeCode readTimeCode(ByteBuffer bb, SubtitleTimeBase timeBase) {
         InnerTime t = new InnerTime();
 
-        t.hour = dis.readUnsignedByte();
-        t.minute = dis.readUnsignedByte();
-        t.second = dis.readUnsignedByte();
-        int frame = dis.readUnsignedByte();
-        // Frame duration in milliseconds
-        float frameDuration = (1000 / frameRate);
-        t.millisecond = Math.round(frame * frameDuration);
+        t.hour = readUnsignedByte(bb);
+        t.minute = readUnsignedByte(bb);
+        t.second = readUnsignedByte(bb);
+        int frame = readUnsignedByte(bb);
+        t.millisecond = timeBase.frameToMillis(frame);
         // and some STL have 1-25 encoded frame...
         InnerTime fixedT = fixTime(t);
 
@@ -168,95 +225,105 @@ public class StlParser implements SubtitleParser {
         return st;
     }
 
-    private String readString(DataInputStream dis, int length, String charset) throws IOException {
-        byte[] bytes = new byte[length];
-        dis.readFully(bytes, 0, length);
+    /**
+     * Read a TCI or TCO time code at an absolute offset and return it in milliseconds,
+     * without building any intermediate object.
+     */
+    static int readTimeMillis(ByteBuffer bb, int offset, SubtitleTimeBase timeBase) {
+        int hour = bb.get(offset) & 0xff;
+        int minute = bb.get(offset + 1) & 0xff;
+        int second = bb.get(offset + 2) & 0xff;
+        int frame = bb.get(offset + 3) & 0xff;
+
+        // Same frame rounding as readTimeCode, carry over is implicit
+        return ((hour * 60 + minute) * 60 + second) * 1000 + timeBase.frameToMillis(frame);
+    }
 
-        // Remove spaces at start and end of the string
-        return StringUtils.strip(new String(bytes, charset));
+    private int readUnsignedByte(ByteBuffer bb) {
+        return bb.get() & 0xff;
     }
 
-    private String readString(DataInputStream dis, int length) throws IOException {
+    private String readString(ByteBuffer bb, int length) {
         byte[] bytes = new byte[length];
-        dis.readFully(bytes, 0, length);
+        bb.get(bytes, 0, length);
 
         // Remove spaces at start and end of the string
         return StringUtils.strip(new String(bytes));
     }
 
-    private StlGsi readGsi(DataInputStream dis) throws IOException {
+    StlGsi readGsi(ByteBuffer bb) {
         // Read and extract metadata from GSI block
         // GSI block is 1024 bytes long
         StlGsi gsi = new StlGsi();
 
         // Read Code Page Number (CPN)
         byte[] cpnBytes = new byte[3];
-        dis.readFully(cpnBytes, 0, 3);
+        bb.get(cpnBytes, 0, 3);
         int cpn = cpnBytes[0] << 16 | cpnBytes[1] << 8 | cpnBytes[2];
         gsi.setCpn(StlGsi.Cpn.getEnum(cpn));
 
         // Read Disk Format Code (DFC)
-        gsi.setDfc(StlGsi.Dfc.getEnum(this.readString(dis, 8)));
+        gsi.setDfc(StlGsi.Dfc.getEnum(this.readString(bb, 8)));
 
         // Read Display Standard Code (DSC)
-        gsi.setDsc(StlGsi.Dsc.getEnum(dis.readUnsignedByte()));
+        gsi.setDsc(StlGsi.Dsc.getEnum(this.readUnsignedByte(bb)));
 
         // Read Character Code Table number (CCT)
-        gsi.setCct(StlGsi.Cct.getEnum(dis.readShort()));
+        gsi.setCct(StlGsi.Cct.getEnum(bb.getShort()));
 
         // Read Character Language Code (LC)
-        gsi.setLc(LanguageCode.Lc.getEnum(dis.readShort()));
+        gsi.setLc(LanguageCode.Lc.getEnum(bb.getShort()));
 
         // Read Original Programme Title (OPT)
-        gsi.setOpt(this.readString(dis, 32));
+        gsi.setOpt(this.readString(bb, 32));
 
         // Read Original Programme Title (OET)
-        gsi.setOet(this.readString(dis, 32));
+        gsi.setOet(this.readString(bb, 32));
 
         // Read Translated Programme Title (TPT)
-        gsi.setTpt(this.readString(dis, 32));
+        gsi.setTpt(this.readString(bb, 32));
 
         // Read translated Episode Title (TET)
-        gsi.setTet(this.readString(dis, 32));
+        gsi.setTet(this.readString(bb, 32));
 
         // Read Translator's Name (TN)
-        gsi.setTn(this.readString(dis, 32));
+        gsi.setTn(this.readString(bb, 32));
 
         // Read Translator's Contact Details (TCD)
-        gsi.setTcd(this.readString(dis, 32));
+        gsi.setTcd(this.readString(bb, 32));
 
         // Read Subtitle List Reference Code (SLR)
-        gsi.setSlr(this.readString(dis, 16));
+        gsi.setSlr(this.readString(bb, 16));
 
         // Read Creation Date (CD)
-        gsi.setCd(this.readDate(this.readString(dis, 6)));
+        gsi.setCd(this.readDate(this.readString(bb, 6)));
 
         // Read Revision Date (RD)
-        gsi.setRd(this.readDate(this.readString(dis, 6)));
+        gsi.setRd(this.readDate(this.readString(bb, 6)));
 
         // Read Revision number RN
-        gsi.setRn(Short.reverseBytes(dis.readShort()));
+        gsi.setRn(Short.reverseBytes(bb.getShort()));
 
         // Read Total Number of Text and Timing Information (TTI) blocks (TNB)
-        gsi.setTnb(Integer.parseInt(this.readString(dis, 5)));
+        gsi.setTnb(Integer.parseInt(this.readString(bb, 5)));
 
         // Read Total Number of Subtitles (TNS)
-        gsi.setTns(Integer.parseInt(this.readString(dis, 5)));
+        gsi.setTns(Integer.parseInt(this.readString(bb, 5)));
 
         // Read Total Number of Subtitle Groups (TNG)
-        dis.skipBytes(3);
+        bb.position(bb.position() + 3);
 
         // Read Maximum Number of Displayable Characters in any text row (MNC)
-        gsi.setMnc(Integer.parseInt(this.readString(dis, 2)));
+        gsi.setMnc(Integer.parseInt(this.readString(bb, 2)));
 
         // Read Maximum Number of Displayable Rows (MNR)
-        gsi.setMnr(Integer.parseInt(this.readString(dis, 2)));
+        gsi.setMnr(Integer.parseInt(this.readString(bb, 2)));
         // Read Time Code: Status (TCS)
-        gsi.setTcs(StlGsi.Tcs.getEnum(dis.readUnsignedByte()));
+        gsi.setTcs(StlGsi.Tcs.getEnum(this.readUnsignedByte(bb)));
 
         // Read Time Code: Start-of-Programme (TCP)
         try {
-            gsi.setTcp(this.readTimeCode(this.readString(dis, 8), gsi.getDfc().getFrameRate()));
+            gsi.setTcp(this.readTimeCode(this.readString(bb, 8), gsi.getDfc().getTimeBase()));
         } catch (NumberFormatException e) {
             System.out.printf("Can't read timecode with message : %s, setting 00:00:00:00 as timecode\n", e.getMessage());
             gsi.setTcp(new SubtitleTimeCode(0));
@@ -264,80 +331,79 @@ public class StlParser implements SubtitleParser {
         
         // Read Time Code: First In-Cue (TCF)
         try {
-            gsi.setTcf(this.readTimeCode(this.readString(dis, 8), gsi.getDfc().getFrameRate()));
+            gsi.setTcf(this.readTimeCode(this.readString(bb, 8), gsi.getDfc().getTimeBase()));
         } catch (NumberFormatException e) {
             System.out.printf("Can't read timecode with message : %s, setting 00:00:00:00 as timecode\n", e.getMessage());
             gsi.setTcf(new SubtitleTimeCode(0));
         }
 
         // Read Total Number of Disks (TND)
-        gsi.setTnd((short) dis.readUnsignedByte());
+        gsi.setTnd((short) this.readUnsignedByte(bb));
 
         // Read Disk Sequence Number (DSN)
-        gsi.setDsn((short) dis.readUnsignedByte());
+        gsi.setDsn((short) this.readUnsignedByte(bb));
 
         // Read Country of Origin (CO)
-        gsi.setCo(this.readString(dis, 3));
+        gsi.setCo(this.readString(bb, 3));
 
         // Read Publisher (PUB)
-        gsi.setPub(this.readString(dis, 32));
+        gsi.setPub(this.readString(bb, 32));
 
         // Read Editor's Name (EN)
-        gsi.setEn(this.readString(dis, 32));
+        gsi.setEn(this.readString(bb, 32));
 
         // Read Editor's Contact Details (ECD)
-        gsi.setEcd(this.readString(dis, 32));
+        gsi.setEcd(this.readString(bb, 32));
 
         // Spare Bytes
-        dis.skipBytes(75);
+        bb.position(bb.position() + 75);
 
         // Read User-Defined Area (UDA)
-        gsi.setUda(this.readString(dis, 576));
+        gsi.setUda(this.readString(bb, 576));
         return gsi;
     }
 
-    private StlTti readTti(DataInputStream dis, StlGsi gsi) throws IOException {
+    StlTti readTti(ByteBuffer bb, StlGsi gsi) {
         // Get charset from gsi
         String charset = gsi.getCct().getCharset();
 
         // Get frame rate from gsi
-        float frameRate = gsi.getDfc().getFrameRate();
+        SubtitleTimeBase timeBase = gsi.getDfc().getTimeBase();
 
         // Read and extract metadata from TTI block
         // Each TTI block is 128 bytes long
         StlTti tti = new StlTti();
 
         // Read Subtitle Group Number (SGN)
-        tti.setSgn((short) dis.readUnsignedByte());
+        tti.setSgn((short) this.readUnsignedByte(bb));
 
         // Read Subtitle Number (SN)
-        tti.setSn(Short.reverseBytes(dis.readShort()));
+        tti.setSn(Short.reverseBytes(bb.getShort()));
 
         // Read Extension Block Number (EBN)
-        tti.setEbn((short) dis.readUnsignedByte());
+        tti.setEbn((short) this.readUnsignedByte(bb));
 
         // Read Cumulative Status (CS)
-        tti.setCs((short) dis.readUnsignedByte());
+        tti.setCs((short) this.readUnsignedByte(bb));
 
         // Read Time Code In (TCI)
-        tti.setTci(this.readTimeCode(dis, frameRate));
+        tti.setTci(this.readTimeCode(bb, timeBase));
 
         // Read Time Code Out (TCO)
-        tti.setTco(this.readTimeCode(dis, frameRate));
+        tti.setTco(this.readTimeCode(bb, timeBase));
 
         // Read Vertical Position (VP)
-        tti.setVp((short) dis.readUnsignedByte());
+        tti.setVp((short) this.readUnsignedByte(bb));
 
         // Read Justification Code (JC)
-        tti.setJc(StlTti.Jc.getEnum(dis.readUnsignedByte()));
+        tti.setJc(StlTti.Jc.getEnum(this.readUnsignedByte(bb)));
 
         // Read Comment Flag (CF)
-        tti.setCf((short) dis.readUnsignedByte());
+        tti.setCf((short) this.readUnsignedByte(bb));
 
         // Read TextField (TF)
-        byte[] tfBytes = new byte[112];
-        dis.readFully(tfBytes, 0, 112);
-        tti.setTf(new String(tfBytes, charset));
+        // Keep a view on the block, text is decoded on first access
+        tti.setTf(bb.slice(TF_OFFSET, TF_SIZE), charset);
 
         // TTI is fully parsed
         return tti;
@@ -0,0 +1,285 @@
+package fr.noop.subtitle.stl;
+
+import fr.noop.subtitle.base.BaseSubtitleCue;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyle.Effect;
+import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
+import fr.noop.subtitle.util.SubtitleStyle.TextAlign;
+import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * Build cue lines from the raw bytes of TTI text fields.
+ * Control codes are read on the bytes, only printable runs are decoded with the character code table.
+ * A scanner is reused for all the blocks of a file, it is not thread safe.
+ */
+class StlTextScanner {
+    private static final int NEW_LINE = 0x8a;
+    private static final int START_BOX = 0x0b;
+
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private final CharBuffer chars;
+    private final StringBuilder text = new StringBuilder();
+    private ByteBuffer tf; // Text field being scanned
+    private int tfLimit;
+    private ByteBuffer joined; // Text fields of the extension blocks put end to end
+    private int[] blockEnds = new int[1]; // End of each block text field in the joined buffer
+
+    // Current line
+    private SubtitleTextLine line;
+    private SubtitleStyle textStyle;
+    private boolean startText;
+
+    StlTextScanner(String charset) {
+        this.charset = Charset.forName(charset);
+        this.decoder = this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate((int) Math.ceil(StlParser.TF_SIZE * this.decoder.maxCharsPerByte()));
+    }
+
+    /**
+     * Add the lines of the tti text field to the cue
+     */
+    void scan(StlTti tti, StlGsi.Dsc dsc, BaseSubtitleCue cue) {
+        this.scan(List.of(tti), dsc, cue);
+    }
+
+    /**
+     * Add the lines of a subtitle to the cue.
+     * Extension blocks continue the text field of the previous block, a row may start in a block and end in the next one.
+     * Each row is justified with the code of the block it starts in.
+     */
+    void scan(List<StlTti> ttis, StlGsi.Dsc dsc, BaseSubtitleCue cue) {
+        ByteBuffer tf = ttis.size() == 1 ? this.textField(ttis.get(0)) : this.join(ttis);
+
+        if (ttis.size() == 1) {
+            this.blockEnds[0] = tf.limit();
+        }
+        this.tf = tf;
+        this.tfLimit = tf.limit();
+
+        boolean teletext = dsc == StlGsi.Dsc.TELETEXT_LEVEL_1 || dsc == StlGsi.Dsc.TELETEXT_LEVEL_2;
+        int start = tf.position();
+        int end = tf.limit();
+        int block = 0;
+
+        while (start < end) {
+            // Each row ends with a new line code
+            int lineEnd = start;
+            while (lineEnd < end && (tf.get(lineEnd) & 0xff) != NEW_LINE) {
+                lineEnd++;
+            }
+
+            if (lineEnd > start) {
+                while (start >= this.blockEnds[block]) {
+                    block++;
+                }
+
+                this.scanLine(start, lineEnd, ttis.get(block).getJc(), teletext);
+
+                if (!this.line.isEmpty()) {
+                    cue.addLine(this.line);
+                }
+            }
+
+            start = lineEnd + 1;
+        }
+    }
+
+    private ByteBuffer textField(StlTti tti) {
+        ByteBuffer tf = tti.getTfBytes();
+
+        if (tf == null) {
+            // Text field set as a string
+            tf = ByteBuffer.wrap(tti.getTf().getBytes(this.charset));
+        }
+
+        return tf;
+    }
+
+    private ByteBuffer join(List<StlTti> ttis) {
+        if (this.joined == null || this.joined.capacity() < ttis.size() * StlParser.TF_SIZE) {
+            this.joined = ByteBuffer.allocate(Math.max(ttis.size(), 4) * StlParser.TF_SIZE);
+        }
+        if (this.blockEnds.length < ttis.size()) {
+            this.blockEnds = new int[Math.max(ttis.size(), 4)];
+        }
+
+        this.joined.clear();
+
+        for (int i = 0; i < ttis.size(); i++) {
+            ByteBuffer tf = this.textField(ttis.get(i));
+
+            if (this.joined.remaining() < tf.remaining()) {
+                // Text fields set as strings may be longer than a block
+                ByteBuffer larger = ByteBuffer.allocate((this.joined.capacity() + tf.remaining()) * 2);
+                this.joined.flip();
+                this.joined = larger.put(this.joined);
+            }
+
+            this.joined.put(tf);
+            this.blockEnds[i] = this.joined.position();
+        }
+
+        this.joined.flip();
+        return this.joined;
+    }
+
+    private void scanLine(int start, int end, StlTti.Jc jc, boolean teletext) {
+        ByteBuffer tf = this.tf;
+        this.line = new SubtitleTextLine();
+        this.textStyle = null;
+        this.text.setLength(0);
+        // Teletext text starts after the start box code, unless it is not justified
+        this.startText = !teletext || jc == StlTti.Jc.NONE;
+
+        int index = start;
+
+        while (index < end) {
+            int cByte = tf.get(index) & 0xff;
+
+            if (this.textStyle == null) {
+                this.textStyle = newStyle(jc);
+            }
+
+            // Readable chars, decoded at once
+            if (isReadable(cByte)) {
+                int runEnd = index + 1;
+                while (runEnd < end && isReadable(tf.get(runEnd) & 0xff)) {
+                    runEnd++;
+                }
+
+                if (this.startText) {
+                    this.decode(index, runEnd);
+                }
+
+                index = runEnd;
+                continue;
+            }
+
+            index++;
+
+            // Start box directive // teletext case
+            if (cByte == START_BOX) {
+                this.startText = true;
+            }
+
+            // Do not process these values
+            if ((cByte >= 0x08 && cByte <= 0x09) ||
+                    (cByte >= 0x0b && cByte <= 0x0f) ||
+                    (cByte >= 0x18 && cByte <= 0x1f) ||
+                    (cByte >= 0x86 && cByte <= 0x8f)) {
+                continue;
+            }
+
+            // FIXME: Process text decoration
+            if (cByte == 0x80 || cByte == 0x82 || cByte == 0x84) {
+                this.startText = true;
+
+                if (this.text.length() > 0) {
+                    this.addText(this.textStyle);
+                }
+
+                if (cByte == StlTti.TextStyle.ITALIC_ON.getValue()) {
+                    this.textStyle.setFontStyle(FontStyle.ITALIC);
+                }
+                if (cByte == StlTti.TextStyle.UNDERLINE_ON.getValue()) {
+                    this.textStyle.setTextDecoration(TextDecoration.UNDERLINE);
+                }
+                if (cByte == StlTti.TextStyle.BOXING_ON.getValue()) {
+                    this.textStyle.setEffect(Effect.BOX);
+                }
+
+                continue;
+            }
+
+            // Color information
+            if ((cByte >= 0x00 && cByte <= 0x07) ||
+                    (cByte >= 0x10 && cByte <= 0x17)) {
+                this.textStyle.setColor(StlTti.TextColor.getEnum(cByte).getColor());
+                continue;
+            }
+
+            // Text content is closed
+            if (cByte == 0x0a || cByte == 0x81 || cByte == 0x83 || cByte == 0x85) {
+                if (this.text.length() > 0) {
+                    this.addText(this.textStyle);
+                }
+
+                this.textStyle = null;
+            }
+        }
+
+        // if text not added before; add it
+        if (this.text.length() > 0) {
+            this.addText(this.textStyle);
+        }
+    }
+
+    /**
+     * @return true if the byte is not a control code
+     */
+    private static boolean isReadable(int cByte) {
+        return (cByte >= 0x20 && cByte < 0x80) || cByte >= 0x90;
+    }
+
+    private static SubtitleStyle newStyle(StlTti.Jc jc) {
+        SubtitleStyle textStyle = new SubtitleStyle();
+
+        if (jc == StlTti.Jc.CENTER) {
+            textStyle.setTextAlign(TextAlign.CENTER);
+        }
+        if (jc == StlTti.Jc.LEFT) {
+            textStyle.setTextAlign(TextAlign.LEFT);
+        }
+        if (jc == StlTti.Jc.RIGHT) {
+            textStyle.setTextAlign(TextAlign.RIGHT);
+        }
+
+        return textStyle;
+    }
+
+    private void decode(int start, int end) {
+        this.tf.limit(end).position(start);
+        this.decoder.reset();
+
+        // Runs of extension blocks may not fit in the buffer at once
+        CoderResult result;
+        do {
+            this.chars.clear();
+            result = this.decoder.decode(this.tf, this.chars, true);
+            if (result.isUnderflow()) {
+                this.decoder.flush(this.chars);
+            }
+            this.chars.flip();
+            this.text.append(this.chars);
+        } while (result.isOverflow());
+
+        this.tf.limit(this.tfLimit);
+    }
+
+    /**
+     * Add the current text to the line, style override any properties so an empty style is not registered
+     */
+    private void addText(SubtitleStyle style) {
+        if (style == null || !style.hasProperties()) {
+            this.line.addText(new SubtitlePlainText(this.text.toString()));
+        } else {
+            this.line.addText(new SubtitleStyledText(this.text.toString(), style.intern()));
+        }
+
+        this.text.setLength(0);
+    }
+}
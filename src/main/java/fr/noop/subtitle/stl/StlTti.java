@@ -12,6 +12,9 @@ package fr.noop.subtitle.stl;
 
 import fr.noop.subtitle.util.SubtitleTimeCode;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
 /**
  * Created by clebeaupin on 21/09/15.
  */
@@ -26,6 +29,8 @@ public class StlTti {
     private Jc jc; // Justification Code
     private short cf; // Comment Flag
     private String tf; // Text Field
+    private transient ByteBuffer tfBytes; // Raw Text Field, decoded on first access
+    private transient String tfCharset; // Charset of the raw Text Field
 
     // List of colors defined in STL EBU
     public enum TextColor {
@@ -206,10 +211,30 @@ public class StlTti {
     }
 
     public String getTf() {
+        if (this.tf == null && this.tfBytes != null) {
+            // Decode raw text field only when it is needed
+            this.tf = Charset.forName(this.tfCharset).decode(this.tfBytes.duplicate()).toString();
+        }
+
         return this.tf;
     }
 
+    /**
+     * @return a view of the raw text field, or null if the text field was set as a string
+     */
+    public ByteBuffer getTfBytes() {
+        return this.tfBytes == null ? null : this.tfBytes.duplicate();
+    }
+
     public void setTf(String tf) {
         this.tf = tf;
+        this.tfBytes = null;
+        this.tfCharset = null;
+    }
+
+    public void setTf(ByteBuffer tfBytes, String charset) {
+        this.tf = null;
+        this.tfBytes = tfBytes;
+        this.tfCharset = charset;
     }
 }
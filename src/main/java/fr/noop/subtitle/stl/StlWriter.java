@@ -13,6 +13,7 @@ import fr.noop.subtitle.model.SubtitleWriterWithDsc;
 import fr.noop.subtitle.model.SubtitleWriterWithOffset;
 import fr.noop.subtitle.stl.StlGsi.Dsc;
 import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleTimeBase;
 import fr.noop.subtitle.util.SubtitleTimeCode;
 import fr.noop.subtitle.util.SubtitleFrameRate.FrameRate;
 import fr.noop.subtitle.util.SubtitleRegion.VerticalAlign;
@@ -20,144 +21,341 @@ import fr.noop.subtitle.util.SubtitleStyle.Effect;
 import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
 import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
-
-import org.apache.commons.lang3.StringUtils;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWithFrameRate, SubtitleWriterWithInputFrameRate, SubtitleWriterWithDsc, SubtitleWriterWithOffset {
+    // TNB is written with 5 digits
+    static final int MAX_BLOCKS = 99999;
+    // SN is written on 2 bytes
+    static final int MAX_SUBTITLES = 0x10000;
+    // TTI blocks are written by chunks of 64 KB
+    private static final int CHUNK_BLOCKS = 512;
+
+    // Text field control codes
+    private static final int START_BOX = 0x0b;
+    private static final int END_BOX = 0x0a;
+    private static final int NEW_LINE = 0x8a;
+
+    // Control codes of the style properties
+    private static final Map<String, Integer> COLOR_CODES = new HashMap<>();
+    private static final Map<FontStyle, StlTti.TextStyle> FONT_STYLE_CODES = new EnumMap<>(FontStyle.class);
+    private static final Map<TextDecoration, StlTti.TextStyle> TEXT_DECORATION_CODES = new EnumMap<>(TextDecoration.class);
+    private static final Map<Effect, StlTti.TextStyle> EFFECT_CODES = new EnumMap<>(Effect.class);
+
+    static {
+        for (StlTti.TextColor color : StlTti.TextColor.values()) {
+            // Alpha colors are listed first
+            COLOR_CODES.putIfAbsent(color.getColor(), color.getValue());
+        }
+
+        FONT_STYLE_CODES.put(FontStyle.ITALIC, StlTti.TextStyle.ITALIC_ON);
+        FONT_STYLE_CODES.put(FontStyle.OBLIQUE, StlTti.TextStyle.ITALIC_ON);
+        TEXT_DECORATION_CODES.put(TextDecoration.UNDERLINE, StlTti.TextStyle.UNDERLINE_ON);
+        EFFECT_CODES.put(Effect.BOX, StlTti.TextStyle.BOXING_ON);
+    }
+
     private String outputTimecode;
     private String outputFrameRate;
     private String inputFrameRate;
     private String outputDsc;
     private String outputOffset;
 
+    // Current output
+    private final ByteBuffer gsiBlock = ByteBuffer.allocate(StlParser.GSI_BLOCK_SIZE);
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BLOCKS * StlParser.TTI_BLOCK_SIZE);
+    private OutputStream os;
+    private FileChannel channel; // File output or spool file
+    private long gsiPosition;
+    private boolean gsiPending; // Temporary GSI block is written with the first chunk
+    private Path spoolFile;
+    private CharsetEncoder encoder;
+    private ByteBuffer textField = ByteBuffer.allocate(2 * StlParser.TF_SIZE); // Text field of the current cue
+    private StlGsi gsi;
+    private int subtitleIndex;
+    private int blockCount;
+    private SubtitleTimeCode originalStartTimecode;
+    private float originalFrameRate;
+    private SubtitleTimeCode.Conversion conversion;
+    private Dsc originalDisplayStandard;
+    private int originalMaxRows;
+
     public StlWriter() {
     }
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
         // Original Start Timecode
-        SubtitleTimeCode originalStartTimecode = new SubtitleTimeCode(0);
-        if (subtitleObject.hasProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL)) {
-            originalStartTimecode = (SubtitleTimeCode) subtitleObject.getProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
+        this.originalStartTimecode = new SubtitleTimeCode(0);
+        if (properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL) != null) {
+            this.originalStartTimecode = (SubtitleTimeCode) properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
         }
-        Dsc originalDisplayStandard = null;
-        if (subtitleObject.hasProperty(SubtitleObject.Property.DISPLAY_STANDARD)) {
-            originalDisplayStandard = (Dsc) subtitleObject.getProperty(SubtitleObject.Property.DISPLAY_STANDARD);
+        this.originalDisplayStandard = null;
+        if (properties.get(SubtitleObject.Property.DISPLAY_STANDARD) != null) {
+            this.originalDisplayStandard = (Dsc) properties.get(SubtitleObject.Property.DISPLAY_STANDARD);
         }
-        int originalMaxRows = 1;
-        if (subtitleObject.hasProperty(SubtitleObject.Property.MAX_ROWS)) {
-            originalMaxRows = (int) subtitleObject.getProperty(SubtitleObject.Property.MAX_ROWS);
+        this.originalMaxRows = 1;
+        if (properties.get(SubtitleObject.Property.MAX_ROWS) != null) {
+            this.originalMaxRows = (int) properties.get(SubtitleObject.Property.MAX_ROWS);
         }
-        float originalFrameRate = 25; // default value
+        this.originalFrameRate = 25; // default value
         if (this.inputFrameRate != null) {
-            originalFrameRate = Float.parseFloat(this.inputFrameRate);
-        } else if (subtitleObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
-            originalFrameRate = (float) subtitleObject.getProperty(SubtitleObject.Property.FRAME_RATE);
+            this.originalFrameRate = Float.parseFloat(this.inputFrameRate);
+        } else if (properties.get(SubtitleObject.Property.FRAME_RATE) != null) {
+            this.originalFrameRate = (float) properties.get(SubtitleObject.Property.FRAME_RATE);
+        }
+        this.conversion = new SubtitleTimeCode.Conversion(this.originalStartTimecode, this.outputTimecode, this.originalFrameRate, this.outputFrameRate, this.outputOffset);
+
+        // Counts and first in-cue are only known at the end
+        this.gsi = this.writeGsi(properties, this.originalStartTimecode, this.originalFrameRate);
+        this.subtitleIndex = 0;
+        this.blockCount = 0;
+        this.os = os;
+        this.encoder = Charset.forName(this.gsi.getCct().getCharset()).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.chunk.clear();
+
+        if (os instanceof FileOutputStream) {
+            // Write a temporary GSI block that is patched in place at the end
+            this.channel = ((FileOutputStream) os).getChannel();
+            this.spoolFile = null;
+            this.gsiPosition = this.channel.position();
+            this.writeGsiToBuffer(this.gsi, this.gsiBlock);
+            this.gsiPending = true;
+        } else {
+            // Output is not seekable, spool TTI blocks until the GSI block can be written
+            this.spoolFile = Files.createTempFile("stl-tti", ".tmp");
+            this.channel = FileChannel.open(this.spoolFile, StandardOpenOption.WRITE);
+            this.gsiPending = false;
         }
-        StlGsi gsi = this.writeGsi(subtitleObject, originalStartTimecode, originalFrameRate);
-        StlObject stlObject = new StlObject(gsi);
+    }
+
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        if (this.subtitleIndex >= MAX_SUBTITLES) {
+            throw new IOException(String.format("STL files are limited to %d subtitles", MAX_SUBTITLES));
+        }
+
+        StlTti tti = this.writeTti(cue, this.gsi, this.subtitleIndex, this.originalStartTimecode, this.originalFrameRate, this.originalDisplayStandard, this.originalMaxRows);
+
+        if (this.subtitleIndex == 0) {
+            // TimeCodeFirstInCue
+            this.gsi.setTcf(tti.getTci());
+        }
+
+        this.blockCount += this.writeTtiToFile(tti, this.gsi, MAX_BLOCKS - this.blockCount);
+        this.subtitleIndex++;
+    }
+
+    @Override
+    public void end() throws IOException {
+        // TotalNumberOfTextAndTimingInformationBlocks
+        this.gsi.setTnb(this.blockCount);
+
+        // TotalNumberOfSubtitles
+        this.gsi.setTns(this.subtitleIndex);
+
+        this.flushChunk();
+        this.writeGsiToBuffer(this.gsi, this.gsiBlock);
+
+        if (this.spoolFile == null) {
+            // Patch GSI block
+            long position = this.gsiPosition;
+
+            while (this.gsiBlock.hasRemaining()) {
+                position += this.channel.write(this.gsiBlock, position);
+            }
+        } else {
+            try {
+                this.channel.close();
+                this.os.write(this.gsiBlock.array(), 0, StlParser.GSI_BLOCK_SIZE);
+                Files.copy(this.spoolFile, this.os);
+            } finally {
+                this.abort();
+            }
+        }
+
+        this.os.flush();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        // The channel of a file output belongs to the stream, only the spool file is released
+        if (this.spoolFile == null) {
+            return;
+        }
+
         try {
-            int subtitleIndex = 0;
-            for (SubtitleCue cue : subtitleObject.getCues()) {
-                StlTti tti = this.writeTti(cue, gsi, subtitleIndex, originalStartTimecode, originalFrameRate, originalDisplayStandard, originalMaxRows);
-                stlObject.addTti(tti);
-                subtitleIndex++;
+            this.channel.close();
+        } finally {
+            Files.deleteIfExists(this.spoolFile);
+            this.spoolFile = null;
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Write the TTI blocks of the chunk, preceded by the temporary GSI block when nothing has been written yet
+     */
+    private void flushChunk() throws IOException {
+        this.chunk.flip();
+
+        if (this.gsiPending) {
+            ByteBuffer[] buffers = {this.gsiBlock, this.chunk};
+
+            while (this.chunk.hasRemaining() || this.gsiBlock.hasRemaining()) {
+                this.channel.write(buffers);
+            }
+
+            this.gsiPending = false;
+        } else {
+            while (this.chunk.hasRemaining()) {
+                this.channel.write(this.chunk);
             }
-            this.writeGsiToFile(stlObject, os);
-            this.writeTtiToFile(stlObject, os);
-        } catch (UnsupportedEncodingException e) {
-            throw new IOException("Encoding error in input subtitle");
         }
+
+        this.chunk.clear();
     }
 
-    private void writeGsiToFile(StlObject stlObject, OutputStream os) throws IOException {
+    /**
+     * @return a buffer having room for a TTI block
+     */
+    private ByteBuffer nextBlock() throws IOException {
+        if (this.chunk.remaining() < StlParser.TTI_BLOCK_SIZE) {
+            this.flushChunk();
+        }
+
+        return this.chunk;
+    }
+
+    /**
+     * Put a zero padded decimal number
+     */
+    private static void putDigits(ByteBuffer bb, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            bb.put(bb.position() + i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+
+        bb.position(bb.position() + width);
+    }
+
+    /**
+     * Put a text truncated or padded with spaces to its field length
+     */
+    private static void putText(ByteBuffer bb, String text, int length) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int count = Math.min(bytes.length, length);
+        bb.put(bytes, 0, count);
+
+        for (int i = count; i < length; i++) {
+            bb.put((byte) ' ');
+        }
+    }
+
+    private static void putTimeCode(ByteBuffer bb, SubtitleTimeCode timeCode, SubtitleTimeBase timeBase) {
+        putDigits(bb, timeCode.getHour(), 2);
+        putDigits(bb, timeCode.getMinute(), 2);
+        putDigits(bb, timeCode.getSecond(), 2);
+        putDigits(bb, timeBase.millisToFrame(timeCode.getMillisecond()), 2);
+    }
+
+    private void writeGsiToBuffer(StlGsi gsi, ByteBuffer bb) {
         DateFormat df = new SimpleDateFormat("yyMMdd");
-        StlGsi gsi = stlObject.getGsi();
-        float frameRate = gsi.getDfc().getFrameRate();
-        float frameDuration = (1000 / frameRate);
+        SubtitleTimeBase timeBase = gsi.getDfc().getTimeBase();
+        bb.clear();
         // 0..2 3 Code Page Number
-        os.write((gsi.getCpn().getValue() >> 16));
-        os.write((gsi.getCpn().getValue() >> 8));
-        os.write((gsi.getCpn().getValue() >> 0));
+        bb.put((byte) (gsi.getCpn().getValue() >> 16));
+        bb.put((byte) (gsi.getCpn().getValue() >> 8));
+        bb.put((byte) (gsi.getCpn().getValue() >> 0));
         // 3..10 8 Disk Format Code DFC
-        os.write(gsi.getDfc().getValue().getBytes("utf-8"), 0, 8);
+        putText(bb, gsi.getDfc().getValue(), 8);
         // 11 1 Display Standard Code DSC
-        os.write(gsi.getDsc().getValue());
+        bb.put((byte) gsi.getDsc().getValue());
         // 12..13 2 Character Code Table number CCT
-        os.write(gsi.getCct().getValue() >> 8);
-        os.write(gsi.getCct().getValue() >> 0);
+        bb.put((byte) (gsi.getCct().getValue() >> 8));
+        bb.put((byte) (gsi.getCct().getValue() >> 0));
         // 14..15 2 Language Code LC
-        os.write(gsi.getLc().getValue() >> 8);
-        os.write(gsi.getLc().getValue() >> 0);
+        bb.put((byte) (gsi.getLc().getValue() >> 8));
+        bb.put((byte) (gsi.getLc().getValue() >> 0));
         // 16..47 32 Original Programme Title OPT
-        os.write(StringUtils.rightPad(gsi.getOpt(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getOpt(), 32);
         // 48..79 32 Original Episode Title OET
-        os.write(StringUtils.rightPad(gsi.getOet(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getOet(), 32);
         // 80..111 32 Translated Programme Title TPT
-        os.write(StringUtils.rightPad(gsi.getTpt(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getTpt(), 32);
         // 112..143 32 Translated Episode Title TET
-        os.write(StringUtils.rightPad(gsi.getTet(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getTet(), 32);
         // 144..175 32 Translator's Name TN
-        os.write(StringUtils.rightPad(gsi.getTn(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getTn(), 32);
         // 176..207 32 Translator's Contact Details TCD
-        os.write(StringUtils.rightPad(gsi.getTcd(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getTcd(), 32);
         // 208..223 16 Subtitle List Reference Code SLR
-        os.write(StringUtils.rightPad(gsi.getTcd(), 16).getBytes("utf-8"), 0, 16);
+        putText(bb, gsi.getTcd(), 16);
         // 224..229 6 Creation Date CD
-        os.write(df.format(gsi.getCd()).getBytes("utf-8"), 0, 6);
+        putText(bb, df.format(gsi.getCd()), 6);
         // 230..235 6 Revision Date RD
-        os.write(df.format(gsi.getRd()).getBytes("utf-8"), 0, 6);
+        putText(bb, df.format(gsi.getRd()), 6);
         // 236..237 2 Revision number RN
-        os.write(String.format("%02d", gsi.getRn()).getBytes("utf-8"), 0, 2);
+        putDigits(bb, gsi.getRn(), 2);
         // 238..242 5 Total Number of Text and Timing Information (TTI) blocks TNB
-        os.write(String.format("%05d", gsi.getTnb()).getBytes("utf-8"), 0, 5);
+        putDigits(bb, gsi.getTnb(), 5);
         // 243..247 5 Total Number of Subtitles TNS
-        os.write(String.format("%05d", gsi.getTns()).getBytes("utf-8"), 0, 5);
+        putDigits(bb, gsi.getTns(), 5);
         // 248..250 3 Total Number of Subtitle Groups TNG
-        os.write(String.format("%03d", gsi.getTng()).getBytes("utf-8"), 0, 3);
+        putDigits(bb, gsi.getTng(), 3);
         // 251..252 2 Maximum Number of Displayable Characters in any text row MNC
-        os.write(String.format("%02d", gsi.getMnc()).getBytes("utf-8"), 0, 2);
+        putDigits(bb, gsi.getMnc(), 2);
         // 253..254 2 Maximum Number of Displayable Rows MNR
-        os.write(String.format("%02d", gsi.getMnr()).getBytes("utf-8"), 0, 2);
+        putDigits(bb, gsi.getMnr(), 2);
         // 255 1 Time Code: Status TCS
-        os.write(gsi.getTcs().getValue());
+        bb.put((byte) gsi.getTcs().getValue());
         // 256..263 8 Time Code: Start-of-Programme TCP
-        os.write(String.format("%02d", gsi.getTcp().getHour()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", gsi.getTcp().getMinute()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", gsi.getTcp().getSecond()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", Math.round(gsi.getTcp().getMillisecond() / frameDuration)).getBytes("utf-8"), 0, 2);
+        putTimeCode(bb, gsi.getTcp(), timeBase);
         // 264..271 8 Time Code: First In-Cue TCF
-        os.write(String.format("%02d", gsi.getTcf().getHour()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", gsi.getTcf().getMinute()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", gsi.getTcf().getSecond()).getBytes("utf-8"), 0, 2);
-        os.write(String.format("%02d", Math.round(gsi.getTcf().getMillisecond() / frameDuration)).getBytes("utf-8"), 0, 2);
+        putTimeCode(bb, gsi.getTcf(), timeBase);
         // 272 1 Total Number of Disks TND
-        os.write(String.format("%d", gsi.getTnd()).getBytes("utf-8"));
+        putDigits(bb, gsi.getTnd(), 1);
         // 273 1 Disk Sequence Number DSN
-        os.write(String.format("%d", gsi.getDsn()).getBytes("utf-8"));
+        putDigits(bb, gsi.getDsn(), 1);
         // 274..276 3 Country of Origin
-        os.write(gsi.getCo().getBytes("utf-8"), 0, 3);
+        putText(bb, gsi.getCo(), 3);
         // 277..308 32 Publisher PUB
-        os.write(StringUtils.rightPad(gsi.getPub(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getPub(), 32);
         // 309..340 32 Editor's Name EN
-        os.write(StringUtils.rightPad(gsi.getEn(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getEn(), 32);
         // 341..372 32 Editor's Contact Details ECD
-        os.write(StringUtils.rightPad(gsi.getEcd(), 32).getBytes("utf-8"), 0, 32);
+        putText(bb, gsi.getEcd(), 32);
         // 373..447 75 Spare Bytes
-        os.write(new byte[75]);
+        bb.position(bb.position() + 75);
         // 448..1023 576 User-Defined Area
-        os.write(StringUtils.rightPad(gsi.getUda(), 576).getBytes("utf-8"), 0, 576);
+        putText(bb, gsi.getUda(), 576);
+        bb.flip();
     }
 
     private StlGsi writeGsi(
-        SubtitleObject subtitleObject,
+        Map<SubtitleObject.Property, Object> properties,
         SubtitleTimeCode originalStartTimecode,
         float originalFrameRate
     ) throws IOException {
@@ -189,8 +387,8 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         gsi.setLc(LanguageCode.Lc.getEnum(0x3046));
 
         // OriginalProgrammeTitle
-        if (subtitleObject.hasProperty(SubtitleObject.Property.TITLE)) {
-            gsi.setOpt((String) subtitleObject.getProperty(SubtitleObject.Property.TITLE));
+        if (properties.get(SubtitleObject.Property.TITLE) != null) {
+            gsi.setOpt((String) properties.get(SubtitleObject.Property.TITLE));
         } else {
             gsi.setOpt("");
         }
@@ -223,10 +421,10 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         gsi.setRn(0);
 
         // TotalNumberOfTextAndTimingInformationBlocks
-        gsi.setTnb(subtitleObject.getCues().size());
-
         // TotalNumberOfSubtitles
-        gsi.setTns(subtitleObject.getCues().size());
+        // Set once all cues are written
+        gsi.setTnb(0);
+        gsi.setTns(0);
 
         // TotalNumberOfSubtitleGroups
         gsi.setTng(1);
@@ -248,8 +446,8 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         gsi.setTcp(outputTC);
 
         // TimeCodeFirstInCue
-        SubtitleTimeCode firstTC = subtitleObject.getCues().get(0).getStartTime().convertWithOptions(originalStartTimecode, outputTimecode, originalFrameRate, outputFrameRate, outputOffset);
-        gsi.setTcf(firstTC);
+        // Set from the first written cue
+        gsi.setTcf(new SubtitleTimeCode(0));
 
         // TotalNumberOfDisks
         gsi.setTnd((short) 1);
@@ -275,42 +473,97 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         return gsi;
     }
 
-    private void writeTtiToFile(StlObject stlObject, OutputStream os) throws IOException {
-        StlGsi gsi = stlObject.getGsi();
-        float frameRate = gsi.getDfc().getFrameRate();
-        float frameDuration = (1000 / frameRate);
-        for (StlTti tti : stlObject.getTtis()) {
-            // 0 1 Subtitle Group Number SGN
-            os.write(tti.getSgn());
-            // 1..2 2 Subtitle Number SN
-            os.write(tti.getSn() >> 0);
-            os.write(tti.getSn() >> 8);
-            // 3 1 Extension Block Number EBN
-            os.write(tti.getEbn());
-            // 4 1 Cumulative Status CS
-            os.write(tti.getCs());
-            // 5..8 4 Time Code In TCI
-            os.write(tti.getTci().getHour());
-            os.write(tti.getTci().getMinute());
-            os.write(tti.getTci().getSecond());
-            os.write(Math.round(tti.getTci().getMillisecond() / frameDuration));
-            // 9..12 4 Time Code Out TCO
-            os.write(tti.getTco().getHour());
-            os.write(tti.getTco().getMinute());
-            os.write(tti.getTco().getSecond());
-            os.write(Math.round(tti.getTco().getMillisecond() / frameDuration));
-            // 13 1 Vertical Position VP
-            os.write(tti.getVp());
-            // 14 1 Justification Code JC
-            os.write(tti.getJc().getValue());
-            // 15 1 Comment Flag CF
-            os.write(tti.getCf());
-            // 16..127 112 Text Field TF
-            byte[] tfBytes = new byte[112];
-            Arrays.fill(tfBytes, (byte)0x8F);
-            byte[] text = tti.getTf().getBytes(gsi.getCct().getCharset());
-            System.arraycopy(text, 0, tfBytes, 0, text.length);
-            os.write(tfBytes, 0, 112);
+    /**
+     * Write a tti, its text field is continued in extension blocks when it does not fit in a single block
+     *
+     * @return the number of blocks written
+     */
+    private int writeTtiToFile(StlTti tti, StlGsi gsi, int maxBlocks) throws IOException {
+        ByteBuffer textField = tti.getTfBytes();
+        byte[] text = textField.array();
+        int[] ends = splitTextField(text, textField.limit(), gsi.getCct() == StlGsi.Cct.LATIN);
+
+        if (ends.length > maxBlocks) {
+            throw new IOException(String.format("STL files are limited to %d TTI blocks", MAX_BLOCKS));
+        }
+
+        int start = 0;
+
+        for (int block = 0; block < ends.length; block++) {
+            // ExtensionBlockNumber
+            // Last block of a subtitle is 0xFF, others are numbered from 0
+            tti.setEbn((short) (block == ends.length - 1 ? 0xFF : block));
+            this.writeBlock(tti, gsi, text, start, ends[block] - start, this.nextBlock());
+            start = ends[block];
+        }
+
+        return ends.length;
+    }
+
+    /**
+     * @return the end offset of the text field of each block
+     */
+    static int[] splitTextField(byte[] text, boolean iso6937) {
+        return splitTextField(text, text.length, iso6937);
+    }
+
+    /**
+     * @param length Length of the text field at the start of the array
+     */
+    static int[] splitTextField(byte[] text, int length, boolean iso6937) {
+        // Every block but the last one holds at least TF_SIZE - 1 bytes
+        int[] ends = new int[length / (StlParser.TF_SIZE - 1) + 1];
+        int count = 0;
+        int start = 0;
+
+        while (length - start > StlParser.TF_SIZE) {
+            int end = start + StlParser.TF_SIZE;
+
+            // Do not separate an ISO 6937 diacritical mark from its letter
+            if (iso6937 && (text[end - 1] & 0xff) >= 0xC1 && (text[end - 1] & 0xff) <= 0xCF) {
+                end--;
+            }
+
+            ends[count++] = end;
+            start = end;
+        }
+
+        ends[count++] = length;
+        return Arrays.copyOf(ends, count);
+    }
+
+    private void writeBlock(StlTti tti, StlGsi gsi, byte[] text, int offset, int length, ByteBuffer bb) {
+        SubtitleTimeBase timeBase = gsi.getDfc().getTimeBase();
+        // 0 1 Subtitle Group Number SGN
+        bb.put((byte) tti.getSgn());
+        // 1..2 2 Subtitle Number SN
+        bb.put((byte) (tti.getSn() >> 0));
+        bb.put((byte) (tti.getSn() >> 8));
+        // 3 1 Extension Block Number EBN
+        bb.put((byte) tti.getEbn());
+        // 4 1 Cumulative Status CS
+        bb.put((byte) tti.getCs());
+        // 5..8 4 Time Code In TCI
+        bb.put((byte) tti.getTci().getHour());
+        bb.put((byte) tti.getTci().getMinute());
+        bb.put((byte) tti.getTci().getSecond());
+        bb.put((byte) timeBase.millisToFrame(tti.getTci().getMillisecond()));
+        // 9..12 4 Time Code Out TCO
+        bb.put((byte) tti.getTco().getHour());
+        bb.put((byte) tti.getTco().getMinute());
+        bb.put((byte) tti.getTco().getSecond());
+        bb.put((byte) timeBase.millisToFrame(tti.getTco().getMillisecond()));
+        // 13 1 Vertical Position VP
+        bb.put((byte) tti.getVp());
+        // 14 1 Justification Code JC
+        bb.put((byte) tti.getJc().getValue());
+        // 15 1 Comment Flag CF
+        bb.put((byte) tti.getCf());
+        // 16..127 112 Text Field TF
+        bb.put(text, offset, length);
+
+        for (int i = length; i < StlParser.TF_SIZE; i++) {
+            bb.put((byte) 0x8F);
         }
     }
 
@@ -340,8 +593,8 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         tti.setCs((short) 0x00);
 
         // TimeCodeIn / TimeCodeOut
-        SubtitleTimeCode startTC = cue.getStartTime().convertWithOptions(originalStartTimecode, outputTimecode, originalFrameRate, outputFrameRate, outputOffset);
-        SubtitleTimeCode endTC = cue.getEndTime().convertWithOptions(originalStartTimecode, outputTimecode, originalFrameRate, outputFrameRate, outputOffset);
+        SubtitleTimeCode startTC = this.conversion.apply(cue.getStartTime());
+        SubtitleTimeCode endTC = this.conversion.apply(cue.getEndTime());
         tti.setTci(startTC);
         tti.setTco(endTC);
 
@@ -381,106 +634,108 @@ public class StlWriter implements SubtitleWriterWithTimecode, SubtitleWriterWith
         tti.setCf((short) 0x00);
 
         // TextField
-        String textField = "";
-        int countLine = 1;
-        for (SubtitleLine line : cue.getLines()) {
-            String text = "";
-            for (SubtitleText inText : line.getTexts()) {
-                if (inText instanceof SubtitleStyled) {
-                    boolean parsedText = false;
-                    SubtitleStyle style = ((SubtitleStyled)inText).getStyle();
-                    if (style.getColor() != null) {
-                        String color = style.getColor();
-                        if (color.equals("black")) {
-                            byte[] black = new byte[] {(byte) StlTti.TextColor.ALPHA_BLACK.getValue()};
-                            color = new String(black, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("red")) {
-                            byte[] red = new byte[] {(byte) StlTti.TextColor.ALPHA_RED.getValue()};
-                            color = new String(red, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("lime")) {
-                            byte[] green = new byte[] {(byte) StlTti.TextColor.ALPHA_GREEN.getValue()};
-                            color = new String(green, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("yellow")) {
-                            byte[] yellow = new byte[] {(byte) StlTti.TextColor.ALPHA_YELLOW.getValue()};
-                            color = new String(yellow, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("blue")) {
-                            byte[] blue = new byte[] {(byte) StlTti.TextColor.ALPHA_BLUE.getValue()};
-                            color = new String(blue, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("magenta")) {
-                            byte[] magenta = new byte[] {(byte) StlTti.TextColor.ALPHA_MAGENTA.getValue()};
-                            color = new String(magenta, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("cyan")) {
-                            byte[] cyan = new byte[] {(byte) StlTti.TextColor.ALPHA_CYAN.getValue()};
-                            color = new String(cyan, gsi.getCct().getCharset());
-                        }
-                        if (color.equals("white")) {
-                            byte[] white = new byte[] {(byte) StlTti.TextColor.ALPHA_WHITE.getValue()};
-                            color = new String(white, gsi.getCct().getCharset());
-                        }
-                        String colored = new StringBuilder().append(color).append(text).toString();
-                        text = colored;
-                    }
-                    if (style.getFontStyle() == FontStyle.ITALIC || style.getFontStyle() == FontStyle.OBLIQUE) {
-                        byte[] italic_on = new byte[] {(byte) StlTti.TextStyle.ITALIC_ON.getValue()};
-                        byte[] italic_off = new byte[] {(byte) StlTti.TextStyle.ITALIC_OFF.getValue()};
-                        String italic_on_code = new String(italic_on, gsi.getCct().getCharset());
-                        String italic_off_code = new String(italic_off, gsi.getCct().getCharset());
-                        String styled = new StringBuilder().append(italic_on_code).append(inText).append(italic_off_code).toString();
-                        parsedText = true;
-                        text += styled;
-                    }
-                    if (style.getTextDecoration() == TextDecoration.UNDERLINE) {
-                        byte[] underline_on = new byte[] {(byte) StlTti.TextStyle.UNDERLINE_ON.getValue()};
-                        byte[] underline_off = new byte[] {(byte) StlTti.TextStyle.UNDERLINE_OFF.getValue()};
-                        String underline_on_code = new String(underline_on, gsi.getCct().getCharset());
-                        String underline_off_code = new String(underline_off, gsi.getCct().getCharset());
-                        String styled = new StringBuilder().append(underline_on_code).append(inText).append(underline_off_code).toString();
-                        parsedText = true;
-                        text += styled;
-                    }
-                    if (style.getEffect() == Effect.BOX) {
-                        byte[] box_on = new byte[] {(byte) StlTti.TextStyle.BOXING_ON.getValue()};
-                        byte[] box_off = new byte[] {(byte) StlTti.TextStyle.BOXING_OFF.getValue()};
-                        String box_on_code = new String(box_on, gsi.getCct().getCharset());
-                        String box_off_code = new String(box_off, gsi.getCct().getCharset());
-                        String styled = new StringBuilder().append(box_on_code).append(inText).append(box_off_code).toString();
-                        parsedText = true;
-                        text += styled;
-                    }
-                    if (!parsedText) {
-                        text += inText.toString();
-                    }
+        ByteBuffer textField = this.encodeTextField(cue, gsi);
+        tti.setTf(textField.duplicate(), gsi.getCct().getCharset());
+
+        return tti;
+    }
+
+    /**
+     * Encode the lines of a cue in the text field buffer.
+     * Control codes are put as bytes, texts are encoded with the character code table.
+     *
+     * @return the text field, valid until the next cue is encoded
+     */
+    private ByteBuffer encodeTextField(SubtitleCue cue, StlGsi gsi) {
+        boolean teletext = gsi.getDsc() == Dsc.TELETEXT_LEVEL_1 || gsi.getDsc() == Dsc.TELETEXT_LEVEL_2;
+        List<SubtitleLine> lines = cue.getLines();
+        this.textField.clear();
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (teletext) {
+                this.putCode(START_BOX);
+                this.putCode(START_BOX);
+            }
+
+            for (SubtitleText text : lines.get(i).getTexts()) {
+                if (text instanceof SubtitleStyled) {
+                    this.encodeStyledText(text, ((SubtitleStyled) text).getStyle());
                 } else {
-                    text += inText.toString();
+                    this.encodeText(text.toString());
                 }
             }
-            if (gsi.getDsc() == Dsc.TELETEXT_LEVEL_1 || gsi.getDsc() == Dsc.TELETEXT_LEVEL_2) {
-                byte[] startBox = new byte[] {(byte) 0x0b, (byte) 0x0b};
-                byte[] endBox = new byte[] {(byte) 0x0a, (byte) 0x0a};
-                String startBoxString = new String(startBox, gsi.getCct().getCharset());
-                String endBoxString = new String(endBox, gsi.getCct().getCharset());
-
-                String concat = new StringBuilder().append(startBoxString).append(text).append(endBoxString).toString();
-                text = concat;
+
+            if (teletext) {
+                this.putCode(END_BOX);
+                this.putCode(END_BOX);
             }
-            if (cue.getLines().size() > 1 && countLine < cue.getLines().size()) {
-                countLine++;
-                byte[] crlf = new byte[] {(byte) 0x8a};
-                String crlfString = new String(crlf, gsi.getCct().getCharset());
-                text += crlfString;
+            if (i < lines.size() - 1) {
+                this.putCode(NEW_LINE);
             }
-            textField += text;
         }
 
-        tti.setTf(textField);
+        this.textField.flip();
+        return this.textField;
+    }
 
-        return tti;
+    private void encodeStyledText(SubtitleText text, SubtitleStyle style) {
+        // Colors without an alpha color code are ignored
+        if (style.getColor() != null && COLOR_CODES.containsKey(style.getColor())) {
+            this.putCode(COLOR_CODES.get(style.getColor()));
+        }
+
+        StlTti.TextStyle fontStyle = style.getFontStyle() != null ? FONT_STYLE_CODES.get(style.getFontStyle()) : null;
+        StlTti.TextStyle textDecoration = style.getTextDecoration() != null ? TEXT_DECORATION_CODES.get(style.getTextDecoration()) : null;
+        StlTti.TextStyle effect = style.getEffect() != null ? EFFECT_CODES.get(style.getEffect()) : null;
+
+        // Each off code follows its on code
+        if (fontStyle != null) {
+            this.putCode(fontStyle.getValue());
+        }
+        if (textDecoration != null) {
+            this.putCode(textDecoration.getValue());
+        }
+        if (effect != null) {
+            this.putCode(effect.getValue());
+        }
+
+        this.encodeText(text.toString());
+
+        if (effect != null) {
+            this.putCode(effect.getValue() + 1);
+        }
+        if (textDecoration != null) {
+            this.putCode(textDecoration.getValue() + 1);
+        }
+        if (fontStyle != null) {
+            this.putCode(fontStyle.getValue() + 1);
+        }
+    }
+
+    private void putCode(int code) {
+        if (!this.textField.hasRemaining()) {
+            this.growTextField();
+        }
+
+        this.textField.put((byte) code);
+    }
+
+    private void encodeText(String text) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        this.encoder.reset();
+
+        while (this.encoder.encode(chars, this.textField, true).isOverflow()) {
+            this.growTextField();
+        }
+        while (this.encoder.flush(this.textField).isOverflow()) {
+            this.growTextField();
+        }
+    }
+
+    private void growTextField() {
+        ByteBuffer larger = ByteBuffer.allocate(this.textField.capacity() * 2);
+        this.textField.flip();
+        this.textField = larger.put(this.textField);
     }
 
     @Override
@@ -21,6 +21,10 @@ import fr.noop.subtitle.util.SubtitleRegion;
 public class TtmlCue extends BaseSubtitleCue implements SubtitleRegionCue {
     private SubtitleRegion region;
 
+    public TtmlCue() {
+        super();
+    }
+
     public TtmlCue(SubtitleCue cue) {
         super(cue);
 
@@ -0,0 +1,727 @@
+package fr.noop.subtitle.ttml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+
+/**
+ * Read TTML cues one at a time from an XML stream, no document tree is built.
+ * The head is read first: styles and regions are resolved once into maps by id.
+ * Body elements are then read as they come, each p element is a cue, span elements style its text
+ * and br elements break its lines. Styles, regions, begin and end times are inherited through a stack
+ * of the open elements.
+ */
+public class TtmlCueReader implements SubtitleCueReader {
+    private static final String NS_STYLING_SUFFIX = "#styling"; // TTML and DFXP styling namespaces
+    private static final String NS_PARAMETER_SUFFIX = "#parameter"; // TTML and DFXP parameter namespaces
+    private static final long NO_END = Long.MAX_VALUE; // Element active until the end of the document
+
+    private XMLStreamReader xsr;
+    private InputStream is;
+    private boolean strict;
+    private Map<SubtitleObject.Property, Object> properties = new HashMap<>();
+
+    // Time parameters
+    private float frameRate = 30;
+    private float tickRate = 1;
+
+    // Head declarations
+    private Map<String, SubtitleStyle> declaredStyles = new HashMap<>(); // Style id => own properties
+    private Map<String, String> styleReferences = new HashMap<>(); // Style id => referenced style ids
+    private Map<String, SubtitleStyle> styles = new HashMap<>(); // Style id => resolved style
+    private Map<String, SubtitleRegion> regions = new HashMap<>(); // Region id => region
+
+    // Open body elements
+    private SubtitleStyle[] styleStack = new SubtitleStyle[8];
+    private SubtitleRegion[] regionStack = new SubtitleRegion[8];
+    private long[] beginStack = new long[8];
+    private long[] endStack = new long[8];
+    private int depth;
+    private int skipDepth; // Depth in an element whose content is ignored
+
+    // Attributes of the current element
+    private String id;
+    private String begin;
+    private String end;
+    private String dur;
+    private String styleAttribute;
+    private String regionAttribute;
+    private SubtitleStyle inlineStyle;
+
+    // Cue being read
+    private TtmlCue cue;
+    private SubtitleTextLine line;
+    private final StringBuilder text = new StringBuilder();
+    private boolean afterText; // Last character written in the line is not white space
+    private boolean pendingSpace; // Collapsed white space, written once text follows it in the line
+
+    TtmlCueReader(XMLStreamReader xsr, InputStream is, boolean strict) {
+        this.xsr = xsr;
+        this.is = is;
+        this.strict = strict;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Read parameters, metadata, styles and regions up to the body
+     */
+    void readHead() throws SubtitleParsingException {
+        try {
+            while (this.xsr.hasNext()) {
+                if (this.xsr.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                switch (this.xsr.getLocalName()) {
+                    case "tt":
+                        this.readParameters();
+                        break;
+                    case "title":
+                        this.properties.put(SubtitleObject.Property.TITLE, this.readText().trim());
+                        break;
+                    case "style":
+                        this.readAttributes();
+                        if (this.id != null) {
+                            this.declaredStyles.put(this.id, this.inlineStyle != null ? this.inlineStyle : new SubtitleStyle());
+                            if (this.styleAttribute != null) {
+                                this.styleReferences.put(this.id, this.styleAttribute);
+                            }
+                        }
+                        break;
+                    case "region":
+                        this.readRegion();
+                        break;
+                    case "body":
+                        this.resolveStyles();
+                        this.readAttributes();
+                        long begin = this.begin != null ? this.parseTime(this.begin) : 0;
+                        this.push(begin, this.activeEnd(0, begin, NO_END));
+                        return;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SubtitleParsingException(String.format("Unable to read TTML document: %s", e.getMessage()));
+        }
+    }
+
+    @Override
+    public TtmlCue next() throws IOException, SubtitleParsingException {
+        try {
+            while (this.depth > 0 && this.xsr.hasNext()) {
+                int event = this.xsr.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (this.skipDepth > 0) {
+                        this.skipDepth++;
+                        continue;
+                    }
+
+                    this.startElement();
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (this.skipDepth > 0) {
+                        this.skipDepth--;
+                        continue;
+                    }
+
+                    TtmlCue cue = this.endElement();
+
+                    if (cue != null) {
+                        return cue;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    if (this.cue != null && this.skipDepth == 0) {
+                        this.appendText(this.xsr.getTextCharacters(), this.xsr.getTextStart(), this.xsr.getTextLength());
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SubtitleParsingException(String.format("Unable to read TTML document: %s", e.getMessage()));
+        }
+
+        return null;
+    }
+
+    private void startElement() throws SubtitleParsingException {
+        // Elements of the default parallel time container begin relative to their parent
+        long parentBegin = this.beginStack[this.depth - 1];
+        long parentEnd = this.endStack[this.depth - 1];
+
+        switch (this.xsr.getLocalName()) {
+            case "div":
+            case "p":
+                this.readAttributes();
+                long begin = this.begin != null ? parentBegin + this.parseTime(this.begin) : parentBegin;
+                this.push(begin, this.activeEnd(parentBegin, begin, parentEnd));
+                break;
+            case "span":
+                this.flushText();
+                this.readAttributes();
+                this.push(parentBegin, parentEnd);
+                break;
+            case "br":
+                if (this.cue != null) {
+                    this.endLine();
+                }
+                this.readAttributes();
+                this.push(parentBegin, parentEnd);
+                break;
+            default:
+                // Metadata, animations and images have no text
+                this.skipDepth = 1;
+                return;
+        }
+
+        if (this.xsr.getLocalName().equals("p")) {
+            this.startCue();
+        }
+    }
+
+    /**
+     * @return the cue ended by this element, null if no cue is complete
+     */
+    private TtmlCue endElement() {
+        String name = this.xsr.getLocalName();
+
+        if (name.equals("span")) {
+            this.flushText();
+        }
+
+        if (!name.equals("p") || this.cue == null) {
+            this.depth--;
+            return null;
+        }
+
+        // End of cue
+        this.endLine();
+        this.depth--;
+        TtmlCue cue = this.cue;
+        this.cue = null;
+
+        // Empty paragraphs only clear the screen
+        return cue.getLines().isEmpty() ? null : cue;
+    }
+
+    private void startCue() throws SubtitleParsingException {
+        long startTime = this.beginStack[this.depth - 1];
+        long endTime = this.endStack[this.depth - 1];
+
+        if (endTime == NO_END) {
+            if (this.strict) {
+                throw new SubtitleParsingException(String.format(
+                        "Missing time code for cue: %s", this.id));
+            }
+
+            // Cue is ignored
+            return;
+        }
+
+        this.cue = new TtmlCue();
+        this.cue.setId(this.id);
+        this.cue.setStartTime(SubtitleTimeCode.valueOf(startTime));
+        this.cue.setEndTime(SubtitleTimeCode.valueOf(endTime));
+        this.cue.setRegion(this.regionStack[this.depth - 1]);
+        this.line = new SubtitleTextLine();
+        this.afterText = false;
+        this.pendingSpace = false;
+    }
+
+    /**
+     * End time of the current element, its own end or duration cannot go past the end of its parent
+     *
+     * @param parentBegin Begin time of the parent in milliseconds, the end attribute is relative to it
+     * @param begin Begin time of the element in milliseconds
+     * @param parentEnd End time of the parent in milliseconds
+     * @return End time in milliseconds, NO_END if neither the element nor its ancestors have one
+     */
+    private long activeEnd(long parentBegin, long begin, long parentEnd) throws SubtitleParsingException {
+        long end = parentEnd;
+
+        if (this.end != null) {
+            end = Math.min(end, parentBegin + this.parseTime(this.end));
+        }
+        if (this.dur != null) {
+            end = Math.min(end, begin + this.parseTime(this.dur));
+        }
+
+        return end;
+    }
+
+    /**
+     * Open a body element with the style and region of its parent overridden by its own attributes
+     *
+     * @param begin Begin time of the element in milliseconds
+     * @param end End time of the element in milliseconds
+     */
+    private void push(long begin, long end) {
+        if (this.depth == this.styleStack.length) {
+            this.styleStack = Arrays.copyOf(this.styleStack, this.depth * 2);
+            this.regionStack = Arrays.copyOf(this.regionStack, this.depth * 2);
+            this.beginStack = Arrays.copyOf(this.beginStack, this.depth * 2);
+            this.endStack = Arrays.copyOf(this.endStack, this.depth * 2);
+        }
+
+        SubtitleStyle style = this.depth > 0 ? this.styleStack[this.depth - 1] : new SubtitleStyle();
+        SubtitleRegion region = this.depth > 0 ? this.regionStack[this.depth - 1] : null;
+
+        if (this.styleAttribute != null || this.inlineStyle != null) {
+            style = new SubtitleStyle(style);
+
+            if (this.styleAttribute != null) {
+                for (String styleId : this.styleAttribute.trim().split("\\s+")) {
+                    SubtitleStyle referencedStyle = this.styles.get(styleId);
+
+                    if (referencedStyle != null) {
+                        style.getProperties().putAll(referencedStyle.getProperties());
+                    }
+                }
+            }
+
+            if (this.inlineStyle != null) {
+                style.getProperties().putAll(this.inlineStyle.getProperties());
+            }
+        }
+
+        if (this.regionAttribute != null && this.regions.containsKey(this.regionAttribute)) {
+            region = this.regions.get(this.regionAttribute);
+        }
+
+        this.styleStack[this.depth] = style.intern();
+        this.regionStack[this.depth] = region;
+        this.beginStack[this.depth] = begin;
+        this.endStack[this.depth] = end;
+        this.depth++;
+    }
+
+    /**
+     * Read the text of the current element, text of nested elements included
+     */
+    private String readText() throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int level = 1;
+
+        while (level > 0) {
+            int event = this.xsr.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(this.xsr.getTextCharacters(), this.xsr.getTextStart(), this.xsr.getTextLength());
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Read the attributes of the current element, styling attributes are gathered in the inline style
+     */
+    private void readAttributes() {
+        this.id = null;
+        this.begin = null;
+        this.end = null;
+        this.dur = null;
+        this.styleAttribute = null;
+        this.regionAttribute = null;
+        this.inlineStyle = null;
+
+        for (int i = 0; i < this.xsr.getAttributeCount(); i++) {
+            String namespace = this.xsr.getAttributeNamespace(i);
+            String name = this.xsr.getAttributeLocalName(i);
+            String value = this.xsr.getAttributeValue(i);
+
+            if (namespace == null || namespace.isEmpty()) {
+                switch (name) {
+                    case "begin": this.begin = value; break;
+                    case "end": this.end = value; break;
+                    case "dur": this.dur = value; break;
+                    case "style": this.styleAttribute = value; break;
+                    case "region": this.regionAttribute = value; break;
+                    default: break;
+                }
+            } else if (namespace.equals(XMLConstants.XML_NS_URI)) {
+                if (name.equals("id")) {
+                    this.id = value;
+                }
+            } else if (namespace.endsWith(NS_STYLING_SUFFIX)) {
+                if (this.inlineStyle == null) {
+                    this.inlineStyle = new SubtitleStyle();
+                }
+                setStyleProperty(this.inlineStyle, name, value.trim());
+            }
+        }
+
+        if (this.inlineStyle != null && !this.inlineStyle.hasProperties()) {
+            this.inlineStyle = null;
+        }
+    }
+
+    /**
+     * Set a style property from a TTML styling attribute, unsupported attributes and values are ignored
+     */
+    private static void setStyleProperty(SubtitleStyle style, String name, String value) {
+        switch (name) {
+            case "color":
+                style.setColor(value);
+                break;
+            case "fontStyle":
+                if (value.equals("italic")) {
+                    style.setFontStyle(SubtitleStyle.FontStyle.ITALIC);
+                } else if (value.equals("oblique")) {
+                    style.setFontStyle(SubtitleStyle.FontStyle.OBLIQUE);
+                } else if (value.equals("normal")) {
+                    style.setFontStyle(SubtitleStyle.FontStyle.NORMAL);
+                }
+                break;
+            case "fontWeight":
+                if (value.equals("bold")) {
+                    style.setFontWeight(SubtitleStyle.FontWeight.BOLD);
+                } else if (value.equals("normal")) {
+                    style.setFontWeight(SubtitleStyle.FontWeight.NORMAL);
+                }
+                break;
+            case "textDecoration":
+                if (value.contains("none")) {
+                    style.setTextDecoration(SubtitleStyle.TextDecoration.NONE);
+                } else if (value.contains("underline")) {
+                    style.setTextDecoration(SubtitleStyle.TextDecoration.UNDERLINE);
+                } else if (value.contains("lineThrough")) {
+                    style.setTextDecoration(SubtitleStyle.TextDecoration.LINE_THROUGH);
+                } else if (value.contains("overline")) {
+                    style.setTextDecoration(SubtitleStyle.TextDecoration.OVERLINE);
+                }
+                break;
+            case "textAlign":
+                if (value.equals("left") || value.equals("start")) {
+                    style.setTextAlign(SubtitleStyle.TextAlign.LEFT);
+                } else if (value.equals("right") || value.equals("end")) {
+                    style.setTextAlign(SubtitleStyle.TextAlign.RIGHT);
+                } else if (value.equals("center")) {
+                    style.setTextAlign(SubtitleStyle.TextAlign.CENTER);
+                }
+                break;
+            case "direction":
+                if (value.equals("ltr")) {
+                    style.setDirection(SubtitleStyle.Direction.LTR);
+                } else if (value.equals("rtl")) {
+                    style.setDirection(SubtitleStyle.Direction.RTL);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Resolve the styles referenced by each declared style, once for all cues
+     */
+    private void resolveStyles() {
+        for (String styleId : this.declaredStyles.keySet()) {
+            this.resolveStyle(styleId, new HashSet<>());
+        }
+
+        this.declaredStyles = null;
+        this.styleReferences = null;
+    }
+
+    private SubtitleStyle resolveStyle(String styleId, Set<String> resolving) {
+        SubtitleStyle style = this.styles.get(styleId);
+
+        if (style != null || !this.declaredStyles.containsKey(styleId) || !resolving.add(styleId)) {
+            // Resolved, unknown or circular reference
+            return style;
+        }
+
+        style = new SubtitleStyle();
+        String references = this.styleReferences.get(styleId);
+
+        if (references != null) {
+            for (String reference : references.trim().split("\\s+")) {
+                SubtitleStyle referencedStyle = this.resolveStyle(reference, resolving);
+
+                if (referencedStyle != null) {
+                    style.getProperties().putAll(referencedStyle.getProperties());
+                }
+            }
+        }
+
+        // Own properties override the referenced ones
+        style.getProperties().putAll(this.declaredStyles.get(styleId).getProperties());
+        this.styles.put(styleId, style);
+        return style;
+    }
+
+    private void readParameters() {
+        float multiplier = 1;
+        String tickRate = null;
+
+        for (int i = 0; i < this.xsr.getAttributeCount(); i++) {
+            String namespace = this.xsr.getAttributeNamespace(i);
+
+            if (namespace == null || !namespace.endsWith(NS_PARAMETER_SUFFIX)) {
+                continue;
+            }
+
+            String value = this.xsr.getAttributeValue(i).trim();
+
+            try {
+                switch (this.xsr.getAttributeLocalName(i)) {
+                    case "frameRate":
+                        this.frameRate = Float.parseFloat(value);
+                        this.properties.put(SubtitleObject.Property.FRAME_RATE, this.frameRate);
+                        break;
+                    case "frameRateMultiplier":
+                        String[] parts = value.split("\\s+");
+                        multiplier = Float.parseFloat(parts[0]) / Float.parseFloat(parts[1]);
+                        break;
+                    case "tickRate":
+                        tickRate = value;
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // Invalid parameters keep their default value
+            }
+        }
+
+        this.frameRate *= multiplier;
+
+        if (this.properties.containsKey(SubtitleObject.Property.FRAME_RATE)) {
+            this.properties.put(SubtitleObject.Property.FRAME_RATE, this.frameRate);
+            this.tickRate = this.frameRate;
+        }
+
+        if (tickRate != null) {
+            try {
+                this.tickRate = Float.parseFloat(tickRate);
+            } catch (NumberFormatException e) {
+                // Keep the default tick rate
+            }
+        }
+    }
+
+    private void readRegion() {
+        float[] origin = {0, 0};
+        float[] extent = {100, 100};
+        SubtitleRegion.VerticalAlign verticalAlign = SubtitleRegion.VerticalAlign.TOP;
+        String regionId = null;
+
+        for (int i = 0; i < this.xsr.getAttributeCount(); i++) {
+            String namespace = this.xsr.getAttributeNamespace(i);
+            String name = this.xsr.getAttributeLocalName(i);
+            String value = this.xsr.getAttributeValue(i).trim();
+
+            if (XMLConstants.XML_NS_URI.equals(namespace) && name.equals("id")) {
+                regionId = value;
+            } else if (namespace != null && namespace.endsWith(NS_STYLING_SUFFIX)) {
+                switch (name) {
+                    case "origin":
+                        parsePercentages(value, origin);
+                        break;
+                    case "extent":
+                        parsePercentages(value, extent);
+                        break;
+                    case "displayAlign":
+                        if (value.equals("center")) {
+                            verticalAlign = SubtitleRegion.VerticalAlign.MIDDLE;
+                        } else if (value.equals("after")) {
+                            verticalAlign = SubtitleRegion.VerticalAlign.BOTTOM;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        if (regionId != null) {
+            this.regions.put(regionId, new SubtitleRegion(origin[0], origin[1], extent[0], extent[1], verticalAlign, 0));
+        }
+    }
+
+    /**
+     * Read two percentages, other units are ignored
+     */
+    private static void parsePercentages(String value, float[] into) {
+        String[] parts = value.split("\\s+");
+
+        if (parts.length != 2 || !parts[0].endsWith("%") || !parts[1].endsWith("%")) {
+            return;
+        }
+
+        try {
+            float first = Float.parseFloat(parts[0].substring(0, parts[0].length() - 1));
+            float second = Float.parseFloat(parts[1].substring(0, parts[1].length() - 1));
+            into[0] = first;
+            into[1] = second;
+        } catch (NumberFormatException e) {
+            // Keep the default values
+        }
+    }
+
+    /**
+     * Parse a clock time (hh:mm:ss.fraction or hh:mm:ss:frames) or an offset time (number and h, m, s, ms, f or t metric)
+     *
+     * @return Time in milliseconds
+     */
+    long parseTime(String value) throws SubtitleParsingException {
+        value = value.trim();
+
+        try {
+            if (value.indexOf(':') != -1) {
+                String[] parts = value.split(":");
+
+                if (parts.length != 3 && parts.length != 4) {
+                    throw new NumberFormatException();
+                }
+
+                double time = Long.parseLong(parts[0]) * 3600000d + Long.parseLong(parts[1]) * 60000d
+                        + Double.parseDouble(parts[2]) * 1000;
+
+                if (parts.length == 4) {
+                    time += Double.parseDouble(parts[3]) * 1000 / this.frameRate;
+                }
+
+                return Math.round(time);
+            }
+
+            if (value.endsWith("ms")) {
+                return Math.round(Double.parseDouble(value.substring(0, value.length() - 2)));
+            }
+
+            double number = Double.parseDouble(value.substring(0, value.length() - 1));
+
+            switch (value.charAt(value.length() - 1)) {
+                case 'h': return Math.round(number * 3600000);
+                case 'm': return Math.round(number * 60000);
+                case 's': return Math.round(number * 1000);
+                case 'f': return Math.round(number * 1000 / this.frameRate);
+                case 't': return Math.round(number * 1000 / this.tickRate);
+                default: throw new NumberFormatException();
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new SubtitleParsingException(String.format("Unable to parse time expression: %s", value));
+        }
+    }
+
+    /**
+     * Append text with its white space collapsed, white space at the start and end of lines is removed
+     */
+    private void appendText(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                this.pendingSpace = this.afterText;
+                continue;
+            }
+
+            if (this.pendingSpace) {
+                this.text.append(' ');
+                this.pendingSpace = false;
+            }
+
+            this.text.append(c);
+            this.afterText = true;
+        }
+    }
+
+    private void flushText() {
+        if (this.text.length() == 0) {
+            return;
+        }
+
+        // White space ending a text stays in it
+        if (this.pendingSpace) {
+            this.text.append(' ');
+            this.pendingSpace = false;
+            this.afterText = false;
+        }
+
+        this.addText(this.text.toString());
+        this.text.setLength(0);
+    }
+
+    private void addText(String text) {
+        SubtitleStyle style = this.styleStack[this.depth - 1];
+
+        if (style.hasProperties()) {
+            this.line.addText(new SubtitleStyledText(text, style));
+        } else {
+            this.line.addText(new SubtitlePlainText(text));
+        }
+    }
+
+    private void endLine() {
+        this.pendingSpace = false;
+        this.flushText();
+        List<SubtitleText> texts = this.line.getTexts();
+
+        // Remove the white space ending a span at the end of the line
+        if (!texts.isEmpty()) {
+            SubtitleText last = texts.get(texts.size() - 1);
+            String lastText = last.toString();
+
+            if (lastText.endsWith(" ")) {
+                lastText = lastText.substring(0, lastText.length() - 1);
+                texts.remove(texts.size() - 1);
+
+                if (!lastText.isEmpty()) {
+                    texts.add(last instanceof SubtitleStyledText ?
+                            new SubtitleStyledText(lastText, ((SubtitleStyledText) last).getStyle()) :
+                            new SubtitlePlainText(lastText));
+                }
+            }
+        }
+
+        if (!this.line.isEmpty()) {
+            this.cue.addLine(this.line);
+        }
+
+        this.line = new SubtitleTextLine();
+        this.afterText = false;
+        this.pendingSpace = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.xsr.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        this.is.close();
+    }
+}
@@ -22,6 +22,7 @@ import fr.noop.subtitle.util.SubtitleStyledText;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,8 +30,8 @@ import java.util.Map;
  * Created by clebeaupin on 11/10/15.
  */
 public class TtmlObject  extends BaseSubtitleObject {
-    // Style signature => style id
-    private Map<String, String> styleMapping = new HashMap<>();
+    // Interned style => style id
+    private Map<SubtitleStyle, String> styleMapping = new IdentityHashMap<>();
 
     // Style id => style object
     private Map<String, SubtitleStyle> styles = new HashMap<>();
@@ -41,6 +42,9 @@ public class TtmlObject  extends BaseSubtitleObject {
     // Regions id => region object
     private Map<String, SubtitleRegion> regions = new HashMap<>();
 
+    // Number of registered cues
+    private int cueCount = 0;
+
     public TtmlObject() {
         super();
     }
@@ -52,55 +56,65 @@ public class TtmlObject  extends BaseSubtitleObject {
             this.setProperty(entry.getKey(), entry.getValue());
         }
 
-        for (int cueIndex=0; cueIndex<subtitleObject.getCues().size(); cueIndex++) {
-            SubtitleCue cue = subtitleObject.getCues().get(cueIndex);
-            TtmlCue ttmlCue = new TtmlCue(cue);
-
-            // Register cue region
-            SubtitleRegion region = ttmlCue.getRegion();
+        for (SubtitleCue cue : subtitleObject.getCues()) {
+            this.addCue(this.registerCue(cue));
+        }
+    }
 
-            if (region != null) {
-                // Region could be null
-                String regionSignature = this.buildRegionSignature(region);
+    /**
+     * Convert a cue and register its region and styles.
+     * The returned cue is not added to this object.
+     *
+     * @param cue Cue to register
+     * @return the TTML cue with a unique id
+     */
+    public TtmlCue registerCue(SubtitleCue cue) {
+        TtmlCue ttmlCue = new TtmlCue(cue);
+
+        // Register cue region
+        SubtitleRegion region = ttmlCue.getRegion();
+
+        if (region != null) {
+            // Region could be null
+            String regionSignature = this.buildRegionSignature(region);
+
+            if (!this.regionMapping.containsKey(regionSignature)) {
+                // Region is not registered
+                // Build a new region id
+                String regionId = String.format("region-%d", this.regions.size() + 1);
+                this.regionMapping.put(regionSignature, regionId);
+                this.regions.put(regionId, new SubtitleRegion(region));
+            }
+        }
 
-                if (!this.regionMapping.containsKey(regionSignature)) {
-                    // Region is not registered
-                    // Build a new region id
-                    String regionId = String.format("region-%d", this.regions.size() + 1);
-                    this.regionMapping.put(regionSignature, regionId);
-                    this.regions.put(regionId, new SubtitleRegion(region));
+        // Register cue styles
+        for (SubtitleLine line : ttmlCue.getLines()) {
+            for (SubtitleText text : line.getTexts()) {
+                if (!(text instanceof SubtitleStyledText)) {
+                    // No style applied on this text
+                    continue;
                 }
-            }
 
-            // Register cue styles
-            for (SubtitleLine line : ttmlCue.getLines()) {
-                for (SubtitleText text : line.getTexts()) {
-                    if (!(text instanceof SubtitleStyledText)) {
-                        // No style applied on this text
-                        continue;
-                    }
-
-                    // Register text style
-                    SubtitleStyle style = ((SubtitleStyledText) text).getStyle();
-                    String styleSignature = this.buildStyleSignature(style);
-
-                    if (this.styleMapping.containsKey(styleSignature)) {
-                        // Style already registered
-                        continue;
-                    }
-
-                    // Style is not registered
-                    // Build a new style id
-                    String styleId = String.format("style-%d", this.styles.size()+1);
-                    this.styleMapping.put(styleSignature, styleId);
-                    this.styles.put(styleId, new SubtitleStyle(style));
+                // Register text style
+                SubtitleStyle style = ((SubtitleStyledText) text).getStyle().intern();
+
+                if (this.styleMapping.containsKey(style)) {
+                    // Style already registered
+                    continue;
                 }
-            }
 
-            // Set cue id
-            ttmlCue.setId(String.format("cue-%d", cueIndex+1));
-            this.addCue(ttmlCue);
+                // Style is not registered
+                // Build a new style id
+                String styleId = String.format("style-%d", this.styles.size()+1);
+                this.styleMapping.put(style, styleId);
+                this.styles.put(styleId, style);
+            }
         }
+
+        // Set cue id
+        this.cueCount++;
+        ttmlCue.setId(String.format("cue-%d", this.cueCount));
+        return ttmlCue;
     }
 
     private String buildRegionSignature(SubtitleRegion region) {
@@ -112,19 +126,8 @@ public class TtmlObject  extends BaseSubtitleObject {
                 region.getVerticalAlign());
     }
 
-    private String buildStyleSignature(SubtitleStyle style) {
-        return String.format("%s-%s-%s-%s-%s",
-                style.getProperty(SubtitleStyle.Property.DIRECTION),
-                style.getProperty(SubtitleStyle.Property.TEXT_ALIGN),
-                style.getProperty(SubtitleStyle.Property.COLOR),
-                style.getProperty(SubtitleStyle.Property.FONT_STYLE),
-                style.getProperty(SubtitleStyle.Property.FONT_WEIGHT),
-                style.getProperty(SubtitleStyle.Property.TEXT_DECORATION));
-    }
-
     public String getStyleId(SubtitleStyle style) {
-        String styleSignature = this.buildStyleSignature(style);
-        return this.styleMapping.getOrDefault(styleSignature, null);
+        return this.styleMapping.getOrDefault(style.intern(), null);
     }
 
     public String getRegionId(SubtitleRegion region) {
@@ -144,7 +147,8 @@ public class TtmlObject  extends BaseSubtitleObject {
      * @param style New added style
      */
     public void setStyle(String styleId, SubtitleStyle style) {
-        this.styleMapping.put(this.buildStyleSignature(style), styleId);
+        style = style.intern();
+        this.styleMapping.put(style, styleId);
         this.styles.put(styleId, style);
     }
 
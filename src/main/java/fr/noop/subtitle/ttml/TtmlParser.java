@@ -10,8 +10,63 @@
 
 package fr.noop.subtitle.ttml;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleParsingException;
+
 /**
  * Created by clebeaupin on 11/10/15.
+ *
+ * TTML and IMSC documents are read as a stream, the charset is declared by the document
  */
-public class TtmlParser {
+public class TtmlParser implements SubtitleParser {
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+
+        // Subtitle documents do not need DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Override
+    public TtmlObject parse(InputStream is) throws IOException, SubtitleParsingException {
+        return parse(is, true);
+    }
+
+    @Override
+    public TtmlObject parse(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
+        // Create TTML object
+        TtmlObject ttmlObject = new TtmlObject();
+        ttmlObject.addCues(this.read(is, strict));
+        return ttmlObject;
+    }
+
+    @Override
+    public TtmlCueReader read(InputStream is) throws IOException, SubtitleParsingException {
+        return read(is, true);
+    }
+
+    @Override
+    public TtmlCueReader read(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
+        XMLStreamReader xsr;
+
+        try {
+            xsr = INPUT_FACTORY.createXMLStreamReader(is);
+        } catch (XMLStreamException e) {
+            throw new SubtitleParsingException(String.format("Unable to read TTML document: %s", e.getMessage()));
+        }
+
+        TtmlCueReader reader = new TtmlCueReader(xsr, is, strict);
+        reader.readHead();
+        return reader;
+    }
 }
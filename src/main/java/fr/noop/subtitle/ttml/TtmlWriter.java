@@ -16,13 +16,12 @@ import fr.noop.subtitle.util.*;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import javax.xml.transform.*;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Created by clebeaupin on 02/10/15.
@@ -33,18 +32,66 @@ public class TtmlWriter implements SubtitleWriter {
     private final static String NS_TTM = "http://www.w3.org/ns/ttml#metadata";
     private final static String NS_TTS = "http://www.w3.org/ns/ttml#styling";
     private final static String NS_XML = "http://www.w3.org/XML/1998/namespace";
+    private final static String INDENT = "  ";
+
+    private boolean compact = false; // Write the document without indentation
+
+    // Current output
+    private OutputStream os;
+    private TtmlObject ttmlObject;
+    private Path bodyFile;
+    private Writer bodyWriter;
+    private XMLStreamWriter bodyXsw;
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) {
-        TtmlObject ttmlObject = new TtmlObject(subtitleObject);
-        
-        // Prepare XML
-        XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.os = os;
+        this.ttmlObject = new TtmlObject();
+        this.ttmlObject.getProperties().putAll(properties);
+
+        // Styles and regions are only known once all cues are read:
+        // spool the body in a temporary file while they are registered
+        this.bodyFile = Files.createTempFile("ttml-body", ".xml");
 
         try {
-            StringWriter sw = new StringWriter();
-            XMLStreamWriter xsw = outputFactory.createXMLStreamWriter(sw);
-            xsw.writeStartDocument("utf-8", "1.0");
+            this.bodyWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(this.bodyFile), StandardCharsets.UTF_8));
+            this.bodyXsw = XMLOutputFactory.newFactory().createXMLStreamWriter(this.bodyWriter);
+            this.bodyXsw.setPrefix("xml", NS_XML);
+
+            // Start of cues
+            this.indent(this.bodyXsw, 1);
+            this.bodyXsw.writeStartElement("body");
+            this.indent(this.bodyXsw, 2);
+            this.bodyXsw.writeStartElement("div");
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        try {
+            this.writeCue(this.ttmlObject.registerCue(cue), this.bodyXsw);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        try {
+            // End of cues
+            this.indent(this.bodyXsw, 2);
+            this.bodyXsw.writeEndElement();
+            this.indent(this.bodyXsw, 1);
+            this.bodyXsw.writeEndElement();
+            this.bodyXsw.close();
+            this.bodyWriter.close();
+
+            // Write XML directly to the output
+            XMLStreamWriter xsw = XMLOutputFactory.newFactory().createXMLStreamWriter(this.os, "UTF-8");
+            xsw.writeStartDocument("UTF-8", "1.0");
+            this.indent(xsw, 0);
             xsw.setPrefix("tt", NS_TT);
             xsw.setPrefix("ttp", NS_TTP);
             xsw.setPrefix("tts", NS_TTS);
@@ -56,7 +103,6 @@ public class TtmlWriter implements SubtitleWriter {
             xsw.writeNamespace("ttp", NS_TTP);
             xsw.writeNamespace("tts", NS_TTS);
             xsw.writeNamespace("ttm", NS_TTM);
-            xsw.writeNamespace("xml", NS_XML);
 
             if (ttmlObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
                 xsw.writeAttribute(
@@ -66,6 +112,7 @@ public class TtmlWriter implements SubtitleWriter {
             }
 
             // Write header
+            this.indent(xsw, 1);
             xsw.writeStartElement("head");
 
             // Write metadata
@@ -78,50 +125,70 @@ public class TtmlWriter implements SubtitleWriter {
             this.writeRegions(ttmlObject, xsw);
 
             // End of head
+            this.indent(xsw, 1);
             xsw.writeEndElement();
+            xsw.flush();
 
-            // Write cues
-            this.writeCues(ttmlObject, xsw);
+            // Spooled body is already serialized in UTF-8
+            Files.copy(this.bodyFile, this.os);
 
             // End of tt
+            this.indent(xsw, 0);
             xsw.writeEndElement();
-
-            byte[] bytes = sw.toString().getBytes();
-            InputStream is = new ByteArrayInputStream(bytes);
-            StreamSource ss = new StreamSource(is);
-            StreamResult sr = new StreamResult(os);
-
-            // Create pretty xml
-            try {
-                Transformer transformer = TransformerFactory.newInstance().newTransformer();
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                transformer.transform(ss, sr);
-            } catch (TransformerConfigurationException e) {
-
-            } catch (TransformerException e) {
-                e.printStackTrace();
-            }
+            xsw.writeEndDocument();
+            this.indent(xsw, -1);
+            xsw.close();
+            this.os.flush();
         } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            this.abort();
+        }
+    }
 
+    @Override
+    public void abort() throws IOException {
+        if (this.bodyFile == null) {
+            return;
+        }
+
+        try {
+            if (this.bodyWriter != null) {
+                this.bodyWriter.close();
+            }
+        } finally {
+            Files.deleteIfExists(this.bodyFile);
+            this.bodyFile = null;
+            this.bodyWriter = null;
+            this.bodyXsw = null;
         }
     }
 
     private void writeMetadata(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
         // Start metadata
+        this.indent(xsw, 2);
         xsw.writeStartElement("metadata");
 
         // Write title
-        xsw.writeStartElement(NS_TTM, "title");
-        xsw.writeCharacters((String) ttmlObject.getProperty(SubtitleObject.Property.TITLE));
-        xsw.writeEndElement();
+        String title = (String) ttmlObject.getProperty(SubtitleObject.Property.TITLE);
+        this.indent(xsw, 3);
+
+        if (title == null || title.isEmpty()) {
+            xsw.writeEmptyElement(NS_TTM, "title");
+        } else {
+            xsw.writeStartElement(NS_TTM, "title");
+            xsw.writeCharacters(title);
+            xsw.writeEndElement();
+        }
 
         // End of metadata
+        this.indent(xsw, 2);
         xsw.writeEndElement();
     }
 
     private void writeStyles(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
         // Start layout that contains all regions
+        this.indent(xsw, 2);
         xsw.writeStartElement("styling");
 
         for (Map.Entry<String, SubtitleStyle> entry: ttmlObject.getStyles().entrySet()) {
@@ -129,7 +196,8 @@ public class TtmlWriter implements SubtitleWriter {
             String styleId = entry.getKey();
 
             // Writer style
-            xsw.writeStartElement("style");
+            this.indent(xsw, 3);
+            xsw.writeEmptyElement("style");
             xsw.writeAttribute(NS_XML, "id", styleId);
 
 
@@ -160,16 +228,16 @@ public class TtmlWriter implements SubtitleWriter {
 
                 xsw.writeAttribute(NS_TTS, "direction", direction);
             }
-
-            xsw.writeEndElement();
         }
 
         // End of layout
+        this.indent(xsw, 2);
         xsw.writeEndElement();
     }
 
     private void writeRegions(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
         // Start layout that contains all regions
+        this.indent(xsw, 2);
         xsw.writeStartElement("layout");
 
         for (Map.Entry<String, SubtitleRegion> entry: ttmlObject.getRegions().entrySet()) {
@@ -177,7 +245,8 @@ public class TtmlWriter implements SubtitleWriter {
             String regionId = entry.getKey();
 
             // Write region
-            xsw.writeStartElement("region");
+            this.indent(xsw, 3);
+            xsw.writeEmptyElement("region");
             xsw.writeAttribute(NS_XML, "id", regionId);
 
             // With US locale to format number with dot instead of comma
@@ -186,71 +255,82 @@ public class TtmlWriter implements SubtitleWriter {
 
             // Vertical align to bottom
             xsw.writeAttribute(NS_TTS, "displayAlign", "after");
-
-            // End of region
-            xsw.writeEndElement();
         }
 
         // End of layout
+        this.indent(xsw, 2);
         xsw.writeEndElement();
     }
 
-    private void writeCues(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
-        // Start of cues
-        xsw.writeStartElement("body");
-        xsw.writeStartElement("div");
+    private void writeCue(TtmlCue ttmlCue, XMLStreamWriter xsw) throws XMLStreamException {
+        // Start ttmlCue
+        // Spans are not indented: white space between them would be displayed
+        this.indent(xsw, 3);
+        xsw.writeStartElement("p");
 
-        for (SubtitleCue cue : ttmlObject.getCues()) {
-            TtmlCue ttmlCue = (TtmlCue) cue;
+        xsw.writeAttribute(NS_XML, "id", ttmlCue.getId());
 
-            // Start ttmlCue
-            xsw.writeStartElement("p");
-
-            xsw.writeAttribute(NS_XML, "id", ttmlCue.getId());
-
-            // Write region
-            if (ttmlCue.getRegion() != null) {
-                xsw.writeAttribute("region", ttmlObject.getRegionId(ttmlCue.getRegion()));
-            }
-
-            // Write start and end time codes
-            xsw.writeAttribute("begin", this.formatTimeCode(ttmlCue.getStartTime()));
-            xsw.writeAttribute("end", this.formatTimeCode(ttmlCue.getEndTime()));
+        // Write region
+        if (ttmlCue.getRegion() != null) {
+            xsw.writeAttribute("region", ttmlObject.getRegionId(ttmlCue.getRegion()));
+        }
 
-            // Write ttmlCue text
-            int lineIndex = 0;
+        // Write start and end time codes
+        xsw.writeAttribute("begin", this.formatTimeCode(ttmlCue.getStartTime()));
+        xsw.writeAttribute("end", this.formatTimeCode(ttmlCue.getEndTime()));
 
-            for (SubtitleLine line: ttmlCue.getLines()) {
-                lineIndex++;
+        // Write ttmlCue text
+        int lineIndex = 0;
 
-                for (SubtitleText text: line.getTexts()) {
-                    xsw.writeStartElement("span");
+        for (SubtitleLine line: ttmlCue.getLines()) {
+            lineIndex++;
 
-                    if (text instanceof SubtitleStyledText) {
-                        // Apply a style on this text
-                        xsw.writeAttribute("style", ttmlObject.getStyleId(((SubtitleStyledText) text).getStyle()));
-                    }
+            for (SubtitleText text: line.getTexts()) {
+                xsw.writeStartElement("span");
 
-                    xsw.writeCharacters(text.toString());
-                    xsw.writeEndElement();
+                if (text instanceof SubtitleStyledText) {
+                    // Apply a style on this text
+                    xsw.writeAttribute("style", ttmlObject.getStyleId(((SubtitleStyledText) text).getStyle()));
                 }
 
-                // Add line break between rows
-                if (lineIndex < ttmlCue.getLines().size()) {
-                    xsw.writeStartElement("br");
-                    xsw.writeEndElement();
-                }
+                xsw.writeCharacters(text.toString());
+                xsw.writeEndElement();
             }
 
-            // End of ttmlCue
-            xsw.writeEndElement();
+            // Add line break between rows
+            if (lineIndex < ttmlCue.getLines().size()) {
+                xsw.writeEmptyElement("br");
+            }
         }
 
-        // End of cues
-        xsw.writeEndElement();
+        // End of ttmlCue
         xsw.writeEndElement();
     }
 
+    /**
+     * Start a new line indented to this level, nothing is written in compact mode
+     *
+     * @param level Depth of the next element, -1 to only end the line
+     */
+    private void indent(XMLStreamWriter xsw, int level) throws XMLStreamException {
+        if (this.compact) {
+            return;
+        }
+
+        xsw.writeCharacters("\n");
+
+        for (int i = 0; i < level; i++) {
+            xsw.writeCharacters(INDENT);
+        }
+    }
+
+    /**
+     * @param compact True to write the document without indentation
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
     private String formatTimeCode(SubtitleTimeCode timeCode) {
         return String.format("%02d:%02d:%02d.%03d",
                 timeCode.getHour(),
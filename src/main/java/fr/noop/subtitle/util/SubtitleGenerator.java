@@ -0,0 +1,187 @@
+package fr.noop.subtitle.util;
+
+import fr.noop.subtitle.base.BaseSubtitleCue;
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
+import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generate synthetic cues, one at a time, so any number of cues can be written without keeping them in memory.
+ * Cues are frame aligned and sorted by start time. The same seed always gives the same cues.
+ * All cues fit in less than 10 hours, the limit of ASS time codes: when there are too many cues
+ * to keep the usual spacing, cues get shorter and several cues may start on the same frame.
+ */
+public class SubtitleGenerator implements SubtitleCueReader {
+    private static final String[] WORDS = {
+        "le", "la", "les", "un", "une", "des", "et", "mais", "où", "donc",
+        "bonjour", "été", "île", "forêt", "château", "fenêtre", "garçon", "Noël", "déjà", "très",
+        "pourquoi", "maintenant", "demain", "hier", "toujours", "jamais", "ensemble", "peut-être", "voilà", "ça",
+        "the", "night", "city", "river", "house", "friend", "never", "always", "tomorrow", "again",
+    };
+    private static final String[] COLORS = {"red", "lime", "yellow", "blue", "magenta", "cyan", "white"};
+
+    // Timeline length in seconds
+    private static final int MAX_DURATION = 9 * 3600 + 59 * 60;
+    // Usual distance between two cue starts in frames, average gap plus average duration
+    private static final double CUE_STEP = 13.5 + 62;
+
+    // Characters per line, a multi block cue is 3 full lines which does not fit in a single STL text field
+    private static final int LINE_LENGTH = 32;
+    private static final int LONG_LINE_LENGTH = 40;
+
+    private Random random;
+    private float frameRate = 25;
+    private int cueCount = 10000;
+    private float styleDensity = 0;
+    private float overlapRate = 0;
+    private float multiBlockRate = 0;
+
+    // Current cue, positions are in frames
+    private int index = 0;
+    private double scale = 1;
+    private double start = 0;
+    private double end = 0;
+
+    public SubtitleGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setFrameRate(float frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public void setCueCount(int cueCount) {
+        this.cueCount = cueCount;
+    }
+
+    /**
+     * @param styleDensity Part of the cues having styled text, from 0 to 1
+     */
+    public void setStyleDensity(float styleDensity) {
+        this.styleDensity = styleDensity;
+    }
+
+    /**
+     * @param overlapRate Part of the cues starting before the end of the previous cue, from 0 to 1
+     */
+    public void setOverlapRate(float overlapRate) {
+        this.overlapRate = overlapRate;
+    }
+
+    /**
+     * @param multiBlockRate Part of the cues too long for a single STL TTI block, from 0 to 1
+     */
+    public void setMultiBlockRate(float multiBlockRate) {
+        this.multiBlockRate = multiBlockRate;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        Map<SubtitleObject.Property, Object> properties = new HashMap<>();
+        properties.put(SubtitleObject.Property.TITLE, "Generated");
+        properties.put(SubtitleObject.Property.FRAME_RATE, this.frameRate);
+        properties.put(SubtitleObject.Property.START_TIMECODE_PRE_ROLL, new SubtitleTimeCode(0));
+        return properties;
+    }
+
+    @Override
+    public SubtitleCue next() {
+        if (this.index >= this.cueCount) {
+            return null;
+        }
+
+        if (this.index == 0) {
+            // Shrink cues when they would not fit in the timeline
+            this.scale = Math.min(1, MAX_DURATION * this.frameRate / (CUE_STEP * this.cueCount));
+        }
+
+        this.index++;
+
+        // Timing
+        if (this.index > 1 && this.random.nextFloat() < this.overlapRate) {
+            this.start += this.random.nextDouble() * (this.end - this.start);
+        } else {
+            this.start = this.end + (2 + this.random.nextInt(24)) * this.scale;
+        }
+
+        this.end = this.start + (25 + this.random.nextInt(75)) * this.scale;
+        long startFrame = Math.round(this.start);
+        long endFrame = Math.max(startFrame + 1, Math.round(this.end));
+
+        GeneratedCue cue = new GeneratedCue(this.toTimeCode(startFrame), this.toTimeCode(endFrame));
+        cue.setId(String.valueOf(this.index));
+
+        // Text
+        boolean multiBlock = this.random.nextFloat() < this.multiBlockRate;
+        boolean styled = this.random.nextFloat() < this.styleDensity;
+        int lineCount = multiBlock ? 3 : 1 + this.random.nextInt(2);
+        int styledLine = this.random.nextInt(lineCount);
+
+        for (int i = 0; i < lineCount; i++) {
+            cue.addLine(this.buildLine(multiBlock ? LONG_LINE_LENGTH : LINE_LENGTH, styled && i == styledLine));
+        }
+
+        return cue;
+    }
+
+    private SubtitleTimeCode toTimeCode(long frame) {
+        return new SubtitleTimeCode(Math.round(frame * 1000 / (double) this.frameRate));
+    }
+
+    private SubtitleTextLine buildLine(int length, boolean styled) {
+        SubtitleTextLine line = new SubtitleTextLine();
+        StringBuilder text = new StringBuilder();
+
+        while (text.length() < length) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+
+            text.append(WORDS[this.random.nextInt(WORDS.length)]);
+        }
+
+        if (!styled) {
+            line.addText(new SubtitlePlainText(text.toString()));
+            return line;
+        }
+
+        // Style the end of the line
+        int split = text.lastIndexOf(" ") + 1;
+        line.addText(new SubtitlePlainText(text.substring(0, split)));
+        line.addText(new SubtitleStyledText(text.substring(split), this.buildStyle().intern()));
+        return line;
+    }
+
+    private SubtitleStyle buildStyle() {
+        SubtitleStyle style = new SubtitleStyle();
+
+        switch (this.random.nextInt(3)) {
+            case 0:
+                style.setFontStyle(FontStyle.ITALIC);
+                break;
+            case 1:
+                style.setTextDecoration(TextDecoration.UNDERLINE);
+                break;
+            default:
+                style.setColor(COLORS[this.random.nextInt(COLORS.length)]);
+        }
+
+        return style;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static class GeneratedCue extends BaseSubtitleCue {
+        GeneratedCue(SubtitleTimeCode startTime, SubtitleTimeCode endTime) {
+            super(startTime, endTime);
+        }
+    }
+}
@@ -12,11 +12,21 @@ package fr.noop.subtitle.util;
 
 import fr.noop.subtitle.model.SubtitleObject;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by clebeaupin on 05/10/15.
+ *
+ * Styles are compared by identity. Interned styles are canonical: equal properties give the same object.
+ * Interned styles are read only, their setters throw an IllegalStateException.
  */
 public class SubtitleStyle {
     // Properties
@@ -68,9 +78,16 @@ public class SubtitleStyle {
         BOX;
     }
 
+    // Canonical styles by properties, an entry is dropped once its style is no longer used
+    private static final ConcurrentMap<PoolKey, PoolReference> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<SubtitleStyle> COLLECTED = new ReferenceQueue<>();
+
     // Store all style properties
     private Map<Property, Object> properties = new HashMap<>();
 
+    // Interned styles are read only
+    private transient boolean interned = false;
+
     public SubtitleStyle() {}
 
     public SubtitleStyle(SubtitleStyle subtitleStyle) {
@@ -136,18 +153,31 @@ public class SubtitleStyle {
         this.setProperty(Property.EFFECT, effect);
     }
 
+    /**
+     * @return the properties, an unmodifiable map for interned styles
+     */
     public Map<Property, Object> getProperties() {
         return this.properties;
     }
 
     public void setProperties(HashMap<Property, Object> properties) {
+        this.checkMutable();
+
         this.properties = properties;
     }
 
     public void setProperty(Property property, Object value) {
+        this.checkMutable();
+
         this.properties.put(property, value);
     }
 
+    private void checkMutable() {
+        if (this.interned) {
+            throw new IllegalStateException("Interned styles are read only, change a copy made with new SubtitleStyle(style)");
+        }
+    }
+
     public Object getProperty(Property property) {
         return this.properties.get(property);
     }
@@ -162,4 +192,103 @@ public class SubtitleStyle {
     public String buildSignature() {
         return "none";
     }
+
+    /**
+     * Get the canonical style having the same properties.
+     * Canonical styles are read only and shared by all the texts, so equal interned styles are the same object.
+     *
+     * @return this style if it is interned, otherwise a read only copy from the pool
+     */
+    public SubtitleStyle intern() {
+        if (this.interned) {
+            return this;
+        }
+
+        // Drop the entries of collected styles
+        Reference<? extends SubtitleStyle> collected;
+
+        while ((collected = COLLECTED.poll()) != null) {
+            POOL.remove(((PoolReference) collected).key, collected);
+        }
+
+        // The properties are hashed once, pool keys keep their hash
+        PoolKey lookup = new PoolKey(this.properties, this.properties.hashCode());
+        PoolReference reference = POOL.get(lookup);
+        SubtitleStyle style = reference != null ? reference.get() : null;
+
+        if (style != null) {
+            return style;
+        }
+
+        // Only the entry of these properties is locked
+        Map<Property, Object> properties = new EnumMap<>(Property.class);
+        properties.putAll(this.properties);
+        SubtitleStyle[] canonical = new SubtitleStyle[1];
+
+        POOL.compute(new PoolKey(Collections.unmodifiableMap(properties), lookup.hash), (key, current) -> {
+            canonical[0] = current != null ? current.get() : null;
+
+            if (canonical[0] != null) {
+                return current;
+            }
+
+            canonical[0] = new SubtitleStyle();
+            canonical[0].properties = key.properties;
+            canonical[0].interned = true;
+            return new PoolReference(canonical[0], key);
+        });
+
+        return canonical[0];
+    }
+
+    /**
+     * @return true if this style is a read only canonical style
+     */
+    public boolean isInterned() {
+        return this.interned;
+    }
+
+    /**
+     * Properties of a pooled style with their hash
+     */
+    private static final class PoolKey {
+        private final Map<Property, Object> properties;
+        private final int hash;
+
+        private PoolKey(Map<Property, Object> properties, int hash) {
+            this.properties = properties;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof PoolKey)) {
+                return false;
+            }
+
+            PoolKey key = (PoolKey) object;
+            return this.hash == key.hash && this.properties.equals(key.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Pool entry, keeps its key to remove the entry once the style is collected
+     */
+    private static final class PoolReference extends WeakReference<SubtitleStyle> {
+        private final PoolKey key;
+
+        private PoolReference(SubtitleStyle style, PoolKey key) {
+            super(style, COLLECTED);
+            this.key = key;
+        }
+    }
 }
@@ -20,6 +20,9 @@ import fr.noop.subtitle.model.SubtitleText;
 public class SubtitleStyledText extends SubtitlePlainText implements SubtitleStyled {
     private SubtitleStyle style;
 
+    /**
+     * @param style Style of the text, parsers give interned styles shared by all the texts having the same properties
+     */
     public SubtitleStyledText(String text, SubtitleStyle style) {
         super(text);
         this.style = style;
@@ -0,0 +1,137 @@
+package fr.noop.subtitle.util;
+
+import fr.noop.subtitle.util.SubtitleFrameRate.FrameRate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact frame rate, numerator frames every denominator seconds.
+ * Time codes count frames inside a second: frames and milliseconds are converted with integer math
+ * and lookup tables, so 23.976 and 29.97 time codes do not drift with float rounding.
+ */
+public class SubtitleTimeBase {
+    // Frame numbers read from a time code, STL stores them in a byte
+    private static final int MAX_FRAME = 255;
+
+    private static final SubtitleTimeBase[] FRAME_RATES = new SubtitleTimeBase[FrameRate.values().length];
+
+    static {
+        for (FrameRate frameRate : FrameRate.values()) {
+            FRAME_RATES[frameRate.ordinal()] = new SubtitleTimeBase(
+                    frameRate.getFrameRateNumerator(), frameRate.getFrameRateDenominator());
+        }
+    }
+
+    // Other frame rates by numerator in thousandths, bounded as rates may come from requests
+    private static final int MAX_OTHER_RATES = 64;
+    private static final Map<Integer, SubtitleTimeBase> OTHER_RATES = new ConcurrentHashMap<>();
+
+    private final int numerator;
+    private final int denominator;
+    private final short[] frameMillis; // Millisecond of each frame in a second
+    private final byte[] millisFrames; // Nearest frame of each millisecond in a second
+
+    public SubtitleTimeBase(int numerator, int denominator) {
+        if (numerator <= 0 || denominator <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.frameMillis = new short[MAX_FRAME + 1];
+        this.millisFrames = new byte[1000];
+
+        for (int frame = 0; frame <= MAX_FRAME; frame++) {
+            this.frameMillis[frame] = (short) this.computeFrameToMillis(frame);
+        }
+        for (int millisecond = 0; millisecond < 1000; millisecond++) {
+            this.millisFrames[millisecond] = (byte) this.computeMillisToFrame(millisecond);
+        }
+    }
+
+    public static SubtitleTimeBase valueOf(FrameRate frameRate) {
+        return FRAME_RATES[frameRate.ordinal()];
+    }
+
+    /**
+     * @param frameRate Frame rate, known NTSC rates such as 23.976 get their exact fraction
+     */
+    public static SubtitleTimeBase valueOf(float frameRate) {
+        for (FrameRate v : FrameRate.values()) {
+            if (Math.abs(frameRate - v.getFrameRate()) < 0.01) {
+                return FRAME_RATES[v.ordinal()];
+            }
+        }
+
+        int numerator = Math.round(frameRate * 1000);
+        SubtitleTimeBase timeBase = OTHER_RATES.get(numerator);
+
+        if (timeBase == null) {
+            timeBase = new SubtitleTimeBase(numerator, 1000);
+
+            if (OTHER_RATES.size() < MAX_OTHER_RATES) {
+                SubtitleTimeBase previous = OTHER_RATES.putIfAbsent(numerator, timeBase);
+                timeBase = previous != null ? previous : timeBase;
+            }
+        }
+
+        return timeBase;
+    }
+
+    public int getNumerator() {
+        return this.numerator;
+    }
+
+    public int getDenominator() {
+        return this.denominator;
+    }
+
+    public float getFrameRate() {
+        return (float) this.numerator / this.denominator;
+    }
+
+    /**
+     * @param frame Frame number inside a second
+     * @return Rounded position of the frame in milliseconds
+     */
+    public int frameToMillis(int frame) {
+        if (frame >= 0 && frame <= MAX_FRAME) {
+            return this.frameMillis[frame];
+        }
+
+        return this.computeFrameToMillis(frame);
+    }
+
+    /**
+     * @param millisecond Milliseconds inside a second
+     * @return Nearest frame number, may be the frame of the next second
+     */
+    public int millisToFrame(int millisecond) {
+        if (millisecond >= 0 && millisecond < 1000) {
+            return this.millisFrames[millisecond] & 0xff;
+        }
+
+        return this.computeMillisToFrame(millisecond);
+    }
+
+    /**
+     * Conform a duration to another frame rate, each frame keeping its number
+     *
+     * @param time Duration in milliseconds
+     * @return Duration in milliseconds, truncated
+     */
+    public long conform(long time, SubtitleTimeBase to) {
+        return time * this.numerator * to.denominator / ((long) this.denominator * to.numerator);
+    }
+
+    private int computeFrameToMillis(int frame) {
+        // Rounded frame * 1000 * denominator / numerator
+        return (int) Math.floorDiv(2000L * frame * this.denominator + this.numerator, 2L * this.numerator);
+    }
+
+    private int computeMillisToFrame(int millisecond) {
+        // Rounded millisecond * numerator / (1000 * denominator)
+        return (int) Math.floorDiv(2L * millisecond * this.numerator + 1000L * this.denominator, 2000L * this.denominator);
+    }
+}
@@ -20,22 +20,35 @@ import fr.noop.subtitle.util.SubtitleFrameRate.FrameRate;
 
 /**
  * Created by clebeaupin on 22/09/15.
+ *
+ * Immutable time code stored as a number of milliseconds.
+ * Instances returned by valueOf and by the arithmetic methods may be shared.
  */
-public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
-    private final int MS_MAX = 86400000;
-    private final int MS_HOUR = 3600000;
-    private final int MS_MINUTE = 60000;
-    private final int MS_SECOND = 1000;
-    private int hour;
-    private int minute;
-    private int second;
-    private int millisecond;
+public final class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
+    private static final int MS_MAX = 86400000;
+    private static final int MS_HOUR = 3600000;
+    private static final int MS_MINUTE = 60000;
+    private static final int MS_SECOND = 1000;
+
+    // Whole minutes are shared, start of programme time codes are usually whole hours
+    private static final SubtitleTimeCode[] MINUTES = new SubtitleTimeCode[MS_MAX / MS_MINUTE];
+
+    static {
+        for (int i = 0; i < MINUTES.length; i++) {
+            MINUTES[i] = new SubtitleTimeCode((long) i * MS_MINUTE);
+        }
+    }
+
+    public static final SubtitleTimeCode ZERO = MINUTES[0];
+
+    private final long time; // Time in milliseconds
 
     public SubtitleTimeCode(int hour, int minute, int second, int millisecond) {
-        this.setHour(hour);
-        this.setMinute(minute);
-        this.setSecond(second);
-        this.setMillisecond(millisecond);
+        checkHour(hour);
+        checkMinute(minute);
+        checkSecond(second);
+        checkMillisecond(millisecond);
+        this.time = (long) hour * MS_HOUR + minute * MS_MINUTE + second * MS_SECOND + millisecond;
     }
 
     public SubtitleTimeCode(LocalTime time) {
@@ -47,44 +60,100 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
      * @param time Time in milliseconds
      */
     public SubtitleTimeCode(long time) {
+        this.time = normalize(time);
+    }
+
+    /**
+     * @param time Time in milliseconds
+     * @return a time code, shared when it is a whole minute
+     */
+    public static SubtitleTimeCode valueOf(long time) {
+        time = normalize(time);
+
+        if (time % MS_MINUTE == 0) {
+            return MINUTES[(int) (time / MS_MINUTE)];
+        }
+
+        return new SubtitleTimeCode(time);
+    }
+
+    /**
+     * Wrap times of the next day and check that the time is in a day
+     *
+     * @return Time in milliseconds
+     */
+    public static long normalize(long time) {
         if (time > MS_MAX) {
             time = time - MS_MAX;
         }
-        this.setHour((int) (time / MS_HOUR));
-        this.setMinute((int) ((time - (this.hour * MS_HOUR)) / MS_MINUTE));
-        this.setSecond((int) ((time - (this.hour * MS_HOUR + this.minute * MS_MINUTE)) / MS_SECOND));
-        this.setMillisecond((int) (time - (this.hour * MS_HOUR + this.minute * MS_MINUTE + this.second * MS_SECOND)));
+
+        // Same checks as the hour, minute, second and millisecond fields
+        if (time >= MS_MAX || time <= -MS_HOUR) {
+            checkHour(-1);
+        }
+        if (time <= -MS_MINUTE) {
+            checkMinute(-1);
+        }
+        if (time <= -MS_SECOND) {
+            checkSecond(-1);
+        }
+        if (time < 0) {
+            checkMillisecond(-1);
+        }
+
+        return time;
+    }
+
+    private static void checkHour(int hour) {
+        if (hour < 0 || hour > 23) {
+            throw new InvalidParameterException("Hour value must be between 0 and 23");
+        }
+    }
+
+    private static void checkMinute(int minute) {
+        if (minute < 0 || minute > 59) {
+            throw new InvalidParameterException("Minute value must be between 0 and 59");
+        }
+    }
+
+    private static void checkSecond(int second) {
+        if (second < 0 || second > 59) {
+            throw new InvalidParameterException("A second value must be between 0 and 59");
+        }
+    }
+
+    private static void checkMillisecond(int millisecond) {
+        if (millisecond < 0 || millisecond > 999) {
+            throw new InvalidParameterException("A Millisecond value must be between 0 and 999");
+        }
     }
 
     @Override
     public String toString() {
-        return String.format("%02d:%02d:%02d.%03d", this.hour, this.minute, this.second, this.millisecond);
+        return String.format("%02d:%02d:%02d.%03d", this.getHour(), this.getMinute(), this.getSecond(), this.getMillisecond());
     }
 
     public String singleHourTimeToString() throws InvalidParameterException {
-        if (this.hour > 9) {
+        if (this.getHour() > 9) {
             throw new InvalidParameterException("Hour value must be a single digit number");
         }
-        return String.format("%01d:%02d:%02d.%02d", this.hour, this.minute, this.second, this.millisecond / 10);
+        return String.format("%01d:%02d:%02d.%02d", this.getHour(), this.getMinute(), this.getSecond(), this.getMillisecond() / 10);
     }
 
     public String formatWithFramerate(float frameRate) {
-        float frameDuration = (1000 / frameRate);
-        int frames = Math.round(this.millisecond / frameDuration);
-        return String.format("%02d:%02d:%02d:%02d", this.hour, this.minute, this.second, frames);
+        return this.formatWithTimeBase(SubtitleTimeBase.valueOf(frameRate));
     }
 
+    public String formatWithTimeBase(SubtitleTimeBase timeBase) {
+        int frames = timeBase.millisToFrame(this.getMillisecond());
+        return String.format("%02d:%02d:%02d:%02d", this.getHour(), this.getMinute(), this.getSecond(), frames);
+    }
+
+    /**
+     * @param timeCodeString hh:mm:ss,mmm or hh:mm:ss.mmm, following chars are ignored
+     */
     public static SubtitleTimeCode parseTimeCode(String timeCodeString) throws SubtitleParsingException {
-        try {
-            int hour = Integer.parseInt(timeCodeString.substring(0, 2));
-            int minute = Integer.parseInt(timeCodeString.substring(3, 5));
-            int second = Integer.parseInt(timeCodeString.substring(6, 8));
-            int millisecond = Integer.parseInt(timeCodeString.substring(9, 12));
-            return new SubtitleTimeCode(hour, minute, second, millisecond);
-        } catch (NumberFormatException e) {
-            throw new SubtitleParsingException(String.format(
-                "Unable to parse time code: %s", timeCodeString));
-        }
+        return valueOf(SubtitleTimeCodeScanner.parseTime(timeCodeString));
     }
 
     public static SubtitleTimeCode parseSingleHourTimeCode(String timeCodeString) throws SubtitleParsingException {
@@ -101,61 +170,64 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
     }
 
     public static SubtitleTimeCode fromStringWithFrames(String timeCodeString, float frameRate) throws IOException {
+        return fromStringWithFrames(timeCodeString, SubtitleTimeBase.valueOf(frameRate));
+    }
+
+    public static SubtitleTimeCode fromStringWithFrames(String timeCodeString, SubtitleTimeBase timeBase) throws IOException {
         int hour = Integer.parseInt(timeCodeString.substring(0, 2));
         int minute = Integer.parseInt(timeCodeString.substring(3, 5));
         int second = Integer.parseInt(timeCodeString.substring(6, 8));
         int frame = Integer.parseInt(timeCodeString.substring(9, 11));
-        float frameDuration = (1000 / frameRate);
-        int millisecond = Math.round(frame * frameDuration);
+        int millisecond = timeBase.frameToMillis(frame);
         return new SubtitleTimeCode(hour, minute, second, millisecond);
     }
 
     public int getHour() {
-        return this.hour;
+        return (int) (this.time / MS_HOUR);
     }
 
-    public void setHour(int hour) {
-        if (hour < 0 || hour > 23) {
-            throw new InvalidParameterException("Hour value must be between 0 and 23");
-        }
-
-        this.hour = hour;
+    /**
+     * @return a time code with this hour and the other fields of this one
+     */
+    public SubtitleTimeCode withHour(int hour) {
+        checkHour(hour);
+        return valueOf(this.time + (long) (hour - this.getHour()) * MS_HOUR);
     }
 
     public int getMinute() {
-        return this.minute;
+        return (int) (this.time % MS_HOUR / MS_MINUTE);
     }
 
-    public void setMinute(int minute) {
-        if (minute < 0 || minute > 59) {
-            throw new InvalidParameterException("Minute value must be between 0 and 59");
-        }
-
-        this.minute = minute;
+    /**
+     * @return a time code with this minute and the other fields of this one
+     */
+    public SubtitleTimeCode withMinute(int minute) {
+        checkMinute(minute);
+        return valueOf(this.time + (long) (minute - this.getMinute()) * MS_MINUTE);
     }
 
     public int getSecond() {
-        return this.second;
+        return (int) (this.time % MS_MINUTE / MS_SECOND);
     }
 
-    public void setSecond(int second) {
-        if (second < 0 || second > 59) {
-            throw new InvalidParameterException("A second value must be between 0 and 59");
-        }
-
-        this.second = second;
+    /**
+     * @return a time code with this second and the other fields of this one
+     */
+    public SubtitleTimeCode withSecond(int second) {
+        checkSecond(second);
+        return valueOf(this.time + (long) (second - this.getSecond()) * MS_SECOND);
     }
 
     public int getMillisecond() {
-        return this.millisecond;
+        return (int) (this.time % MS_SECOND);
     }
 
-    public void setMillisecond(int millisecond) {
-        if (millisecond < 0 || millisecond > 999) {
-            throw new InvalidParameterException("A Millisecond value must be between 0 and 999");
-        }
-
-        this.millisecond = millisecond;
+    /**
+     * @return a time code with this millisecond and the other fields of this one
+     */
+    public SubtitleTimeCode withMillisecond(int millisecond) {
+        checkMillisecond(millisecond);
+        return valueOf(this.time + millisecond - this.getMillisecond());
     }
 
     /**
@@ -163,21 +235,29 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
      * @return Time in milliseconds
      */
     public long getTime() {
-        return this.hour * MS_HOUR + this.minute * MS_MINUTE + this.second * MS_SECOND + this.getMillisecond();
+        return this.time;
     }
 
     public int compareTo(SubtitleTimeCode toCompare) {
-        final int BEFORE = -1;
-        final int EQUAL = 0;
-        final int AFTER = 1;
-
-        if (this.getTime() == toCompare.getTime()) {
-            return EQUAL;
-        } else if (this.getTime() > toCompare.getTime()) {
-            return AFTER;
-        } else {
-            return BEFORE;
+        return Long.compare(this.time, toCompare.time);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof SubtitleTimeCode)) {
+            return false;
         }
+
+        return this.time == ((SubtitleTimeCode) o).time;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.time);
     }
 
     /**
@@ -187,32 +267,47 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
      */
     public SubtitleTimeCode subtract(SubtitleTimeCode toSubtract) {
         // FIXME: Throws exception if frame rate are not equals
-        return new SubtitleTimeCode(this.getTime() - toSubtract.getTime());
+        return valueOf(this.time - toSubtract.time);
     }
 
     public SubtitleTimeCode addOffset(SubtitleTimeCode toAdd) {
-        return new SubtitleTimeCode(this.getTime() + toAdd.getTime());
+        return valueOf(this.time + toAdd.time);
     }
 
     public SubtitleTimeCode convertFromStart(SubtitleTimeCode newStartTimecode, SubtitleTimeCode originalStartTimecode) {
-        long newStartTC = newStartTimecode.getTime();
-        long origStartTC = originalStartTimecode.getTime();
-        long difference = origStartTC - newStartTC;
-        long newTC = this.getTime() - difference;
-        return new SubtitleTimeCode(newTC);
+        return valueOf(convertFromStart(this.time, newStartTimecode.time, originalStartTimecode.time));
+    }
+
+    /**
+     * @return Time in milliseconds, moved from the original start time code to the new one
+     */
+    public static long convertFromStart(long time, long newStartTime, long originalStartTime) {
+        long difference = originalStartTime - newStartTime;
+        return normalize(time - difference);
     }
 
     public SubtitleTimeCode convertWithFrameRate(float originalFrameRate, float newFrameRate, SubtitleTimeCode startTimecode) throws IOException {
         if (needConforming(originalFrameRate, newFrameRate)) {
-            SubtitleTimeCode init = this.subtract(startTimecode);
-            long newTime = (long) ((float) init.getTime() * originalFrameRate / newFrameRate);
-            return new SubtitleTimeCode(newTime).addOffset(startTimecode);
+            SubtitleTimeBase originalTimeBase = SubtitleTimeBase.valueOf(originalFrameRate);
+            SubtitleTimeBase newTimeBase = SubtitleTimeBase.valueOf(newFrameRate);
+            return valueOf(convertWithFrameRate(this.time, originalTimeBase, newTimeBase, startTimecode.time));
         } else {
             return this;
         }
     }
 
-    private boolean needConforming(float originalFrameRate, float newFrameRate) {
+    /**
+     * Conform a time from a frame rate to a close one, relatively to the start time
+     *
+     * @return Time in milliseconds
+     */
+    private static long convertWithFrameRate(long time, SubtitleTimeBase originalTimeBase, SubtitleTimeBase newTimeBase, long startTime) {
+        long init = normalize(time - startTime);
+        long newTime = normalize(originalTimeBase.conform(init, newTimeBase));
+        return normalize(newTime + startTime);
+    }
+
+    private static boolean needConforming(float originalFrameRate, float newFrameRate) {
         if (originalFrameRate != newFrameRate) {
             return Math.round(Math.abs(originalFrameRate - newFrameRate)) <= 1;
         } else {
@@ -227,20 +322,78 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
         String outputFrameRate,
         String outputOffset
     ) throws IOException {
-        SubtitleTimeCode converted = this;
-        float outFrameRateFloat = inputFrameRate;
-        if (outputFrameRate != null) {
-            outFrameRateFloat = FrameRate.getEnum(outputFrameRate).getFrameRate();
-            converted = converted.convertWithFrameRate(inputFrameRate, outFrameRateFloat, inputStartTC);
+        return new Conversion(inputStartTC, outputStartTC, inputFrameRate, outputFrameRate, outputOffset).apply(this);
+    }
+
+    /**
+     * Conversion options of a writer, parsed once and applied to every time code
+     */
+    public static class Conversion {
+        private long inputStartTime;
+        private boolean conforming;
+        private SubtitleTimeBase inputTimeBase;
+        private SubtitleTimeBase outputTimeBase;
+        private boolean withOffset;
+        private long offset;
+        private boolean withOutputStart;
+        private long outputStartTime;
+
+        public Conversion(
+            SubtitleTimeCode inputStartTC,
+            String outputStartTC,
+            float inputFrameRate,
+            String outputFrameRate,
+            String outputOffset
+        ) throws IOException {
+            this.inputStartTime = inputStartTC.time;
+            this.inputTimeBase = SubtitleTimeBase.valueOf(inputFrameRate);
+            this.outputTimeBase = this.inputTimeBase;
+
+            if (outputFrameRate != null) {
+                FrameRate frameRate = FrameRate.getEnum(outputFrameRate);
+                this.outputTimeBase = SubtitleTimeBase.valueOf(frameRate);
+                this.conforming = needConforming(inputFrameRate, frameRate.getFrameRate());
+            }
+            if (outputOffset != null) {
+                this.withOffset = true;
+                this.offset = SubtitleTimeCode.fromStringWithFrames(outputOffset, this.outputTimeBase).time;
+            }
+            if (outputStartTC != null) {
+                this.withOutputStart = true;
+                this.outputStartTime = SubtitleTimeCode.fromStringWithFrames(outputStartTC, this.outputTimeBase).time;
+            }
+        }
+
+        /**
+         * @return true if time codes are left unchanged
+         */
+        public boolean isIdentity() {
+            return !this.conforming && !this.withOffset && !this.withOutputStart;
         }
-        if (outputOffset != null) {
-            SubtitleTimeCode offsetTimecode = SubtitleTimeCode.fromStringWithFrames(outputOffset, outFrameRateFloat);
-            converted = converted.addOffset(offsetTimecode);
+
+        /**
+         * @param time Time in milliseconds
+         * @return Converted time in milliseconds
+         */
+        public long apply(long time) {
+            if (this.conforming) {
+                time = convertWithFrameRate(time, this.inputTimeBase, this.outputTimeBase, this.inputStartTime);
+            }
+            if (this.withOffset) {
+                time = normalize(time + this.offset);
+            }
+            if (this.withOutputStart) {
+                time = convertFromStart(time, this.outputStartTime, this.inputStartTime);
+            }
+            return time;
         }
-        if (outputStartTC != null) {
-            SubtitleTimeCode outputTC = SubtitleTimeCode.fromStringWithFrames(outputStartTC, outFrameRateFloat);
-            converted = converted.convertFromStart(outputTC, inputStartTC);
+
+        public SubtitleTimeCode apply(SubtitleTimeCode timeCode) {
+            if (this.isIdentity()) {
+                return timeCode;
+            }
+
+            return valueOf(this.apply(timeCode.time));
         }
-        return converted;
     }
 }
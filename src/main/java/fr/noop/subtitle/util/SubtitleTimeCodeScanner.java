@@ -0,0 +1,206 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+/**
+ * Read the timing lines of text formats, 00:01:21,456 --> 00:01:23,417 followed by optional settings.
+ * Digits are read in place without intermediate strings.
+ * Time codes are [hours:]minutes:seconds followed by a comma or a dot and the milliseconds, hours may have any width.
+ * A scanner keeps the times of the last scanned line, it is not thread safe.
+ */
+public class SubtitleTimeCodeScanner {
+    private static final String ARROW = "-->";
+
+    private CharSequence line;
+    private int start;
+    private int position;
+    private int end;
+    private long startTime; // Time in milliseconds
+    private long endTime; // Time in milliseconds
+    private int settingsStart;
+
+    /**
+     * @return the index of the arrow in the line or -1 if this is not a timing line
+     */
+    public static int indexOfArrow(CharSequence line) {
+        for (int i = 0, last = line.length() - ARROW.length(); i <= last; i++) {
+            if (line.charAt(i) == '-' && line.charAt(i + 1) == '-' && line.charAt(i + 2) == '>') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Read the start time, the end time and the position of the settings of a timing line
+     */
+    public void scan(CharSequence line) throws SubtitleParsingException {
+        this.scan(line, 0, line.length());
+    }
+
+    private void scan(CharSequence line, int start, int end) throws SubtitleParsingException {
+        this.line = line;
+        this.start = start;
+        this.position = start;
+        this.end = end;
+
+        try {
+            this.skipSpaces();
+            this.startTime = this.readTime();
+            this.skipSpaces();
+
+            if (this.end - this.position < ARROW.length() || this.line.charAt(this.position) != '-'
+                    || this.line.charAt(this.position + 1) != '-' || this.line.charAt(this.position + 2) != '>') {
+                throw this.badFormat();
+            }
+
+            this.position += ARROW.length();
+            this.skipSpaces();
+            this.endTime = this.readTime();
+
+            // Settings are separated from the end time code
+            if (this.position < this.end && !Character.isWhitespace(this.line.charAt(this.position))) {
+                throw this.badFormat();
+            }
+
+            this.skipSpaces();
+            this.settingsStart = this.position;
+        } finally {
+            this.line = null;
+        }
+    }
+
+    /**
+     * @return Start time in milliseconds
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * @return End time in milliseconds
+     */
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * @return the index of the settings following the end time code, the end of the line if there are none
+     */
+    public int getSettingsStart() {
+        return this.settingsStart;
+    }
+
+    /**
+     * Read the time code at the start of the chars, following chars are ignored
+     *
+     * @return Time in milliseconds
+     */
+    public static long parseTime(CharSequence chars) throws SubtitleParsingException {
+        SubtitleTimeCodeScanner scanner = new SubtitleTimeCodeScanner();
+        scanner.line = chars;
+        scanner.end = chars.length();
+        return scanner.readTime();
+    }
+
+    private void skipSpaces() {
+        while (this.position < this.end && Character.isWhitespace(this.line.charAt(this.position))) {
+            this.position++;
+        }
+    }
+
+    /**
+     * @return Time in milliseconds of the time code at the current position
+     */
+    private long readTime() throws SubtitleParsingException {
+        // Up to 3 fields separated by colons, the last one is the seconds
+        long first = this.readNumber(Integer.MAX_VALUE);
+        this.expect(':');
+        long second = this.readNumber(2);
+        long hours = 0;
+        long minutes = first;
+        long seconds = second;
+
+        if (this.position < this.end && this.line.charAt(this.position) == ':') {
+            this.position++;
+            hours = first;
+            minutes = second;
+            seconds = this.readNumber(2);
+        }
+
+        char separator = this.position < this.end ? this.line.charAt(this.position) : 0;
+
+        if (separator != ',' && separator != '.') {
+            throw this.badFormat();
+        }
+
+        this.position++;
+        int fractionStart = this.position;
+        long milliseconds = this.readNumber(3);
+
+        // 1 or 2 digits are tenths or hundredths of second
+        for (int digits = this.position - fractionStart; digits < 3; digits++) {
+            milliseconds *= 10;
+        }
+
+        if (minutes > 59 || seconds > 59) {
+            throw this.badFormat();
+        }
+
+        return hours * 3600000 + minutes * 60000 + seconds * 1000 + milliseconds;
+    }
+
+    /**
+     * @return the value of at least one and at most maxDigits digits
+     */
+    private long readNumber(int maxDigits) throws SubtitleParsingException {
+        int start = this.position;
+        long value = 0;
+
+        while (this.position < this.end && this.position - start < maxDigits) {
+            int digit = this.line.charAt(this.position) - '0';
+
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+
+            value = value * 10 + digit;
+
+            if (value > Integer.MAX_VALUE) {
+                throw this.badFormat();
+            }
+
+            this.position++;
+        }
+
+        if (this.position == start) {
+            throw this.badFormat();
+        }
+
+        return value;
+    }
+
+    private void expect(char c) throws SubtitleParsingException {
+        if (this.position >= this.end || this.line.charAt(this.position) != c) {
+            throw this.badFormat();
+        }
+
+        this.position++;
+    }
+
+    private SubtitleParsingException badFormat() {
+        return new SubtitleParsingException(String.format(
+                "Unable to parse time code: %s", this.line.subSequence(this.start, this.end)));
+    }
+}
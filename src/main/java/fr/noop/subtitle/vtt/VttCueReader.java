@@ -0,0 +1,270 @@
+package fr.noop.subtitle.vtt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+import fr.noop.subtitle.util.SubtitleTimeCodeScanner;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Read WebVTT cues one at a time
+ */
+public class VttCueReader implements SubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        SIGNATURE,
+        HEADER,
+        STYLE,
+        NOTE,
+        EMPTY_LINE,
+        CUE_ID,
+        CUE_TIMECODE,
+        CUE_TEXT,
+        CUE_POSITION;
+    }
+
+    private BufferedReader br;
+    private boolean strict;
+    private CursorStatus cursorStatus = CursorStatus.NONE;
+    private VttCue cue = null;
+    private VttStyle style = new VttStyle();
+    private final StringBuilder cueText = new StringBuilder(); // Text of the cue
+    private final VttCueTextTokenizer tokenizer = new VttCueTextTokenizer(this.style);
+    private boolean cueFound = false; // STYLE blocks are only allowed before the first cue
+    private final SubtitleTimeCodeScanner timeCodeScanner = new SubtitleTimeCodeScanner();
+    private SubtitleTimeCode previousIn = new SubtitleTimeCode(0);
+    private SubtitleTimeCode previousOut = new SubtitleTimeCode(0);
+
+    VttCueReader(BufferedReader br, boolean strict) {
+        this.br = br;
+        this.strict = strict;
+    }
+
+    @Override
+    public Map<SubtitleObject.Property, Object> getProperties() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public VttCue next() throws IOException, SubtitleParsingException {
+        String textLine;
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+
+            // Remove BOM
+            if (cursorStatus == CursorStatus.NONE) {
+                textLine = fr.noop.subtitle.util.StringUtils.removeBOM(textLine);
+            }
+
+            // All Vtt files start with WEBVTT
+            if (cursorStatus == CursorStatus.NONE && textLine.equals("WEBVTT")) {
+                cursorStatus = CursorStatus.SIGNATURE;
+                continue;
+            }
+
+            // Optional X-TIMESTAMP-MAP header (HLS)
+            if (cursorStatus == CursorStatus.SIGNATURE && textLine.startsWith("X-TIMESTAMP-MAP")) {
+                cursorStatus = CursorStatus.HEADER;
+                continue;
+            }
+
+            // Optional NOTE blocks
+            if ((cursorStatus == CursorStatus.SIGNATURE ||
+                    cursorStatus == CursorStatus.HEADER ||
+                    cursorStatus == CursorStatus.EMPTY_LINE) &&
+                    textLine.startsWith("NOTE")) {
+                cursorStatus = CursorStatus.NOTE;
+            }
+
+            // Skip NOTE blocks
+            if (cursorStatus == CursorStatus.NOTE) {
+                if (textLine.contains("-->")) {
+                    throw new SubtitleParsingException(
+                            String.format("NOTE block sequence contains unhautorized \"-->\" substring: %s", textLine));
+                }
+                if (textLine.isBlank()) {
+                    cursorStatus = CursorStatus.EMPTY_LINE;
+                }
+                continue;
+            }
+
+            // Optional STYLE blocks
+            if ((cursorStatus == CursorStatus.HEADER ||
+                    cursorStatus == CursorStatus.SIGNATURE ||
+                    cursorStatus == CursorStatus.EMPTY_LINE) &&
+                    !this.cueFound &&
+                    textLine.startsWith("STYLE")) {
+                cursorStatus = CursorStatus.STYLE;
+                continue;
+            }
+
+            // Parse STYLE block
+            if (cursorStatus == CursorStatus.STYLE) {
+                List<String> styleBLock = new ArrayList<>();
+                String nextLine = "";
+                styleBLock.add(textLine);
+
+                // read until the end of the style block
+                while ((nextLine = this.br.readLine()) != null && !nextLine.isBlank()) {
+                    nextLine = nextLine.trim();
+                    styleBLock.add(nextLine);
+                }
+
+                style.addStyleBlock(String.join("", styleBLock));
+                cursorStatus = CursorStatus.EMPTY_LINE;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.SIGNATURE ||
+                    cursorStatus == CursorStatus.HEADER ||
+                    cursorStatus == CursorStatus.EMPTY_LINE) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // New cue
+                cue = new VttCue();
+                cursorStatus = CursorStatus.CUE_ID;
+
+                if (SubtitleTimeCodeScanner.indexOfArrow(textLine) == -1) {
+                    // First textLine is the cue number
+                    cue.setId(textLine);
+                    continue;
+                }
+
+                // There is no cue number
+            }
+
+
+            // Second textLine defines the start and end time codes
+            // 00:01:21.456 --> 00:01:23.417
+            if (cursorStatus == CursorStatus.CUE_ID) {
+                if (SubtitleTimeCodeScanner.indexOfArrow(textLine) == -1) {
+                    throw new SubtitleParsingException(String.format(
+                            "Timecode textLine is badly formated: %s", textLine));
+                }
+
+                timeCodeScanner.scan(textLine);
+                SubtitleTimeCode startTime = SubtitleTimeCode.valueOf(timeCodeScanner.getStartTime());
+                SubtitleTimeCode endTime = SubtitleTimeCode.valueOf(timeCodeScanner.getEndTime());
+                if (previousOut.compareTo(startTime) == 1) {
+                    System.out.printf("Subtitle from %s to %s overlaps previous subtitle (%s - %s)\n",
+                    startTime, endTime, previousIn, previousOut);
+                }
+                previousIn = startTime;
+                previousOut = endTime;
+
+                cue.setStartTime(startTime);
+                cue.setEndTime(endTime);
+                cursorStatus = CursorStatus.CUE_TIMECODE;
+
+                SubtitleRegion region = new SubtitleRegion(0, 0);
+                String settings = textLine.substring(timeCodeScanner.getSettingsStart());
+                if (settings.contains("line:")) {
+                    String line = StringUtils.substringAfter(settings, "line:").split(" ")[0];
+                    float positionPercent = 0;
+                    if (line.contains("%")) {
+                        line = line.replaceAll("%", "");
+                        positionPercent = Float.parseFloat(line);
+                    } else {
+                        if (Float.parseFloat(line) < 0) {
+                            positionPercent = (1080 + Float.parseFloat(line)) / 1080 * 100;
+                        } else {
+                            positionPercent = Float.parseFloat(line) / 1080 * 100;
+                        }
+                    }
+                    if (positionPercent <= 50) {
+                        region.setVerticalAlign(SubtitleRegion.VerticalAlign.TOP);
+                    }
+                    cursorStatus = CursorStatus.CUE_POSITION;
+                }
+                cue.setRegion(region);
+                continue;
+            }
+
+            if (
+                (
+                    cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    cursorStatus == CursorStatus.CUE_POSITION
+                ) &&
+                textLine.isEmpty() &&
+                strict
+            ) {
+                // Do not accept empty subtitle if strict
+                throw new SubtitleParsingException(String.format(
+                        "Empty subtitle is not allowed in WebVTT for cue at timecode: %s", cue.getStartTime()));
+            }
+
+            // Enf of cue
+            if (
+                (
+                    cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    cursorStatus == CursorStatus.CUE_POSITION ||
+                    cursorStatus == CursorStatus.CUE_TEXT
+                ) &&
+                textLine.isEmpty()
+            ) {
+                // End of cue
+                // Process multilines text in one time
+                // A class or a style can be applied for more than one line
+                cursorStatus = CursorStatus.EMPTY_LINE;
+                return this.endCue();
+            }
+
+            // Add new text to cue
+            if (cursorStatus == CursorStatus.CUE_TIMECODE ||
+                cursorStatus == CursorStatus.CUE_POSITION ||
+                cursorStatus ==  CursorStatus.CUE_TEXT
+            ) {
+                // New line
+                if (cueText.length() > 0) {
+                    cueText.append('\n');
+                }
+
+                cueText.append(textLine);
+                cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+
+
+        	throw new SubtitleParsingException(String.format(
+        			"Unexpected line: %s", textLine));
+        }
+
+        // Add last line
+        if (cursorStatus == CursorStatus.CUE_TEXT && cueText.length() > 0) {
+            cursorStatus = CursorStatus.EMPTY_LINE;
+            return this.endCue();
+        }
+
+        return null;
+    }
+
+    private VttCue endCue() {
+        // Process multilines text in one time
+        // A class or a style can be applied for more than one line
+        VttCue endedCue = this.cue;
+        endedCue.setLines(this.tokenizer.tokenize(this.cueText));
+        this.cue = null;
+        this.cueText.setLength(0);
+        this.cueFound = true;
+        return endedCue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
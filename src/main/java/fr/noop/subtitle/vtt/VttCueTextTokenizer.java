@@ -0,0 +1,321 @@
+package fr.noop.subtitle.vtt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+
+/**
+ * Split WebVTT cue text into styled lines in a single pass.
+ * Open tags are kept on a stack, a close tag closes its open tag and the tags opened after it.
+ * Bold, italic, underline, class and voice tags are styled, language, ruby and timestamp tags only delimit text,
+ * unknown tags are ignored. Character references are decoded.
+ * A tokenizer is reused for all the cues of a file, it is not thread safe.
+ */
+class VttCueTextTokenizer {
+    private enum Tag {
+        BOLD,
+        ITALIC,
+        UNDERLINE,
+        CLASS,
+        VOICE,
+        LANG,
+        RUBY,
+        RUBY_TEXT
+    }
+
+    private static final String[] ENTITY_NAMES = {"amp", "lt", "gt", "lrm", "rlm", "nbsp"};
+    private static final char[] ENTITY_CHARS = {'&', '<', '>', '\u200e', '\u200f', '\u00a0'};
+
+    private final VttStyle styleBlocks;
+    private final StringBuilder text = new StringBuilder();
+    private Tag[] tags = new Tag[8]; // Open tags
+    private String[] annotations = new String[8]; // Color of the open classes, name of the open voices
+    private int depth;
+    private List<SubtitleLine> lines;
+    private VttLine line;
+
+    VttCueTextTokenizer(VttStyle styleBlocks) {
+        this.styleBlocks = styleBlocks;
+    }
+
+    /**
+     * @param cueText Lines of the cue separated by \n
+     */
+    List<SubtitleLine> tokenize(CharSequence cueText) {
+        this.lines = new ArrayList<>();
+        this.line = new VttLine();
+        this.depth = 0;
+        this.text.setLength(0);
+        int length = cueText.length();
+        int index = 0;
+
+        while (index < length) {
+            char c = cueText.charAt(index);
+
+            if (c == '\n') {
+                this.addText();
+                this.endLine();
+                index++;
+                continue;
+            }
+
+            if (c == '<') {
+                int close = indexOfTagEnd(cueText, index + 1);
+
+                // A lone < is kept as text
+                if (close != -1) {
+                    this.addText();
+                    this.readTag(cueText, index + 1, close);
+                    index = close + 1;
+                    continue;
+                }
+            }
+
+            if (c == '&') {
+                int end = this.readEntity(cueText, index);
+
+                if (end != -1) {
+                    index = end;
+                    continue;
+                }
+            }
+
+            this.text.append(c);
+            index++;
+        }
+
+        this.addText();
+        this.endLine();
+        return this.lines;
+    }
+
+    private static int indexOfTagEnd(CharSequence cueText, int from) {
+        for (int i = from; i < cueText.length(); i++) {
+            char c = cueText.charAt(i);
+
+            if (c == '>') {
+                return i;
+            }
+            if (c == '\n' || c == '<') {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Read the tag between start and end, the < and > excluded
+     */
+    private void readTag(CharSequence cueText, int start, int end) {
+        boolean closing = start < end && cueText.charAt(start) == '/';
+        int nameStart = closing ? start + 1 : start;
+
+        // Timestamps only delimit text
+        if (nameStart < end && Character.isDigit(cueText.charAt(nameStart))) {
+            return;
+        }
+
+        int nameEnd = nameStart;
+        while (nameEnd < end && cueText.charAt(nameEnd) != '.' && !Character.isWhitespace(cueText.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        Tag tag = tagOf(cueText, nameStart, nameEnd);
+
+        if (tag == null) {
+            return;
+        }
+
+        if (closing) {
+            this.close(tag);
+            return;
+        }
+
+        String annotation = null;
+
+        if (tag == Tag.CLASS) {
+            annotation = color(cueText, nameEnd, end);
+        } else if (tag == Tag.VOICE) {
+            // Voice name follows the classes
+            int nameIndex = nameEnd;
+            while (nameIndex < end && !Character.isWhitespace(cueText.charAt(nameIndex))) {
+                nameIndex++;
+            }
+            annotation = cueText.subSequence(nameIndex, end).toString().trim();
+            this.line.setVoice(annotation);
+        }
+
+        this.push(tag, annotation);
+    }
+
+    private static Tag tagOf(CharSequence cueText, int start, int end) {
+        switch (end - start) {
+            case 1:
+                switch (cueText.charAt(start)) {
+                    case 'b': return Tag.BOLD;
+                    case 'i': return Tag.ITALIC;
+                    case 'u': return Tag.UNDERLINE;
+                    case 'c': return Tag.CLASS;
+                    case 'v': return Tag.VOICE;
+                    default: return null;
+                }
+            case 2:
+                return regionEquals(cueText, start, "rt") ? Tag.RUBY_TEXT : null;
+            case 4:
+                if (regionEquals(cueText, start, "lang")) {
+                    return Tag.LANG;
+                }
+                return regionEquals(cueText, start, "ruby") ? Tag.RUBY : null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean regionEquals(CharSequence cueText, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (cueText.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the first class of the tag which is not a background class, or null if there are none
+     */
+    private static String color(CharSequence cueText, int classesStart, int end) {
+        int index = classesStart;
+
+        while (index < end && cueText.charAt(index) == '.') {
+            int classStart = index + 1;
+            index = classStart;
+
+            while (index < end && cueText.charAt(index) != '.' && !Character.isWhitespace(cueText.charAt(index))) {
+                index++;
+            }
+
+            boolean background = index - classStart > 3 && regionEquals(cueText, classStart, "bg_");
+
+            if (index > classStart && !background) {
+                return cueText.subSequence(classStart, index).toString();
+            }
+        }
+
+        return null;
+    }
+
+    private void push(Tag tag, String annotation) {
+        if (this.depth == this.tags.length) {
+            this.tags = Arrays.copyOf(this.tags, this.depth * 2);
+            this.annotations = Arrays.copyOf(this.annotations, this.depth * 2);
+        }
+
+        this.tags[this.depth] = tag;
+        this.annotations[this.depth] = annotation;
+        this.depth++;
+    }
+
+    /**
+     * Close the last open tag of this kind and the tags opened after it, close tags that are not open are ignored
+     */
+    private void close(Tag tag) {
+        for (int i = this.depth - 1; i >= 0; i--) {
+            if (this.tags[i] == tag) {
+                this.depth = i;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the end of the character reference or -1 if this is not a known reference
+     */
+    private int readEntity(CharSequence cueText, int start) {
+        for (int i = 0; i < ENTITY_NAMES.length; i++) {
+            String name = ENTITY_NAMES[i];
+            int end = start + name.length() + 2;
+
+            if (end <= cueText.length() && cueText.charAt(end - 1) == ';' && regionEquals(cueText, start + 1, name)) {
+                this.text.append(ENTITY_CHARS[i]);
+                return end;
+            }
+        }
+
+        return -1;
+    }
+
+    private void addText() {
+        if (this.text.length() == 0) {
+            return;
+        }
+
+        SubtitleStyle style = new SubtitleStyle();
+        apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.ALL));
+
+        for (int i = 0; i < this.depth; i++) {
+            switch (this.tags[i]) {
+                case BOLD:
+                    apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.BOLD));
+                    style.setFontWeight(SubtitleStyle.FontWeight.BOLD);
+                    break;
+                case ITALIC:
+                    apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.ITALIC));
+                    style.setFontStyle(SubtitleStyle.FontStyle.ITALIC);
+                    break;
+                case UNDERLINE:
+                    apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.UNDERLINE));
+                    style.setTextDecoration(SubtitleStyle.TextDecoration.UNDERLINE);
+                    break;
+                case CLASS:
+                    if (this.annotations[i] != null) {
+                        apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.CLASS));
+                        style.setColor(this.annotations[i]);
+                    }
+                    break;
+                case VOICE:
+                    apply(style, this.styleBlocks.getStyleForTag(VttStyle.VttTextTag.VOICE));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (style.hasProperties()) {
+            this.line.addText(new SubtitleStyledText(this.text.toString(), style.intern()));
+        } else {
+            this.line.addText(new SubtitlePlainText(this.text.toString()));
+        }
+
+        this.text.setLength(0);
+    }
+
+    private static void apply(SubtitleStyle style, Map<SubtitleStyle.Property, Object> properties) {
+        for (Map.Entry<SubtitleStyle.Property, Object> property : properties.entrySet()) {
+            style.setProperty(property.getKey(), property.getValue());
+        }
+    }
+
+    private void endLine() {
+        if (!this.line.isEmpty()) {
+            this.lines.add(this.line);
+        }
+
+        this.line = new VttLine();
+
+        // An open voice goes on in the next line
+        for (int i = this.depth - 1; i >= 0; i--) {
+            if (this.tags[i] == Tag.VOICE) {
+                this.line.setVoice(this.annotations[i]);
+                break;
+            }
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package fr.noop.subtitle.vtt;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 
 import fr.noop.subtitle.util.SubtitleStyle;
@@ -19,9 +18,13 @@ public class VttStyle extends SubtitleStyle {
         VOICE,
     }
 
-    private Map<VttTextTag, List<Map<Property, Object>>> styleBlocks = new HashMap<>();
+    // Declarations of the rules of each tag, merged in the order of the style blocks
+    private Map<VttTextTag, Map<Property, Object>> styleBlocks = new EnumMap<>(VttTextTag.class);
+    private Map<VttTextTag, Map<Property, Object>> resolvedStyles; // Read only styles, built once for all cues
 
     public void addStyleBlock(String styleBlock) {
+        this.resolvedStyles = null;
+
         // remove /* */ comments
         styleBlock = styleBlock.replaceAll("/\\*[\\s\\S]*?\\*/", "");
         // split block into rules list
@@ -52,13 +55,13 @@ public class VttStyle extends SubtitleStyle {
                     String cssProperty = cssParts[0].trim();
                     String cssValue = cssParts[1].trim();
 
-                    // check property and value then save
-                    Map<Property, Object> style = new HashMap<>();
+                    // check property and value then save, last declaration wins
                     try {
                         SubtitleStyle.Property subtitleStylePropery = fromStrToProperty(cssProperty);
-                        style.put(subtitleStylePropery, checkAndGetCSSValue(subtitleStylePropery, cssValue));
+                        Object value = checkAndGetCSSValue(subtitleStylePropery, cssValue);
                         if (textTag != null) {
-                            styleBlocks.computeIfAbsent(textTag, k -> new ArrayList<>()).add(style);
+                            styleBlocks.computeIfAbsent(textTag, k -> new EnumMap<>(Property.class))
+                                    .put(subtitleStylePropery, value);
                         }
                     } catch (Exception e) {
                         System.out.println(e.getMessage());
@@ -68,16 +71,19 @@ public class VttStyle extends SubtitleStyle {
         }
     }
 
+    /**
+     * @return the read only style of a tag, empty if no rule applies to it
+     */
     public Map<Property, Object> getStyleForTag(VttTextTag tag) {
-        Map<Property, Object> props = new HashMap<>();
-        if (styleBlocks.containsKey(tag)) {
-            for (Map<Property, Object> prop : styleBlocks.get(tag)) {
-                for (Map.Entry<Property, Object> entry : prop.entrySet()) {
-                    props.put(entry.getKey(), entry.getValue());
-                }
+        if (resolvedStyles == null) {
+            resolvedStyles = new EnumMap<>(VttTextTag.class);
+            for (VttTextTag textTag : VttTextTag.values()) {
+                Map<Property, Object> style = styleBlocks.get(textTag);
+                resolvedStyles.put(textTag, style == null ?
+                        Collections.emptyMap() : Collections.unmodifiableMap(new EnumMap<>(style)));
             }
         }
-        return props;
+        return resolvedStyles.get(tag);
     }
 
     private VttTextTag fromStrToVttTextTag(String tag) {
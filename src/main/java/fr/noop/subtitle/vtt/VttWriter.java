@@ -32,6 +32,7 @@ import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 
 /**
  * Created by clebeaupin on 11/10/15.
@@ -44,23 +45,32 @@ public class VttWriter implements SubtitleWriterWithHeader, SubtitleWriterWithTi
     private String outputOffset;
     private String headerText; // header to append.
 
+    // Current output
+    private OutputStream os;
+    private SubtitleTimeCode startTimeCode;
+    private float frameRate;
+    private SubtitleTimeCode.Conversion conversion;
+
     public VttWriter(String charset) {
         this.charset = charset;
     }
 
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+    public void begin(Map<SubtitleObject.Property, Object> properties, OutputStream os) throws IOException {
+        this.os = os;
+        this.startTimeCode = new SubtitleTimeCode(0);
+        this.frameRate = 25;
+
         try {
-            SubtitleTimeCode startTimeCode = new SubtitleTimeCode(0);
-            float frameRate = 25;
-            if (subtitleObject.hasProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL)){
-                startTimeCode = (SubtitleTimeCode) subtitleObject.getProperty(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
+            if (properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL) != null) {
+                this.startTimeCode = (SubtitleTimeCode) properties.get(SubtitleObject.Property.START_TIMECODE_PRE_ROLL);
             }
             if (this.inputFrameRate != null) {
-                frameRate = Float.parseFloat(this.inputFrameRate);
-            } else if (subtitleObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
-                frameRate = (float) subtitleObject.getProperty(SubtitleObject.Property.FRAME_RATE);
+                this.frameRate = Float.parseFloat(this.inputFrameRate);
+            } else if (properties.get(SubtitleObject.Property.FRAME_RATE) != null) {
+                this.frameRate = (float) properties.get(SubtitleObject.Property.FRAME_RATE);
             }
+            this.conversion = new SubtitleTimeCode.Conversion(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
 
             // Write header
             os.write(("WEBVTT\n").getBytes(this.charset));
@@ -68,67 +78,74 @@ public class VttWriter implements SubtitleWriterWithHeader, SubtitleWriterWithTi
                 os.write(headerText.getBytes(this.charset));
             }
             os.write("\n".getBytes(this.charset));
-            // Write cues
-            for (SubtitleCue cue : subtitleObject.getCues()) {
-                if (cue.getId() != null) {
-                    // Write number of subtitle
-                    String number = String.format("%s\n", cue.getId());
-                    os.write(number.getBytes(this.charset));
-                }
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Encoding error in input subtitle");
+        }
+    }
+
+    @Override
+    public void accept(SubtitleCue cue) throws IOException {
+        try {
+            if (cue.getId() != null) {
+                // Write number of subtitle
+                String number = String.format("%s\n", cue.getId());
+                os.write(number.getBytes(this.charset));
+            }
 
-                // Write Start time and end time
-                SubtitleTimeCode startTC = cue.getStartTime().convertWithOptions(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
-                SubtitleTimeCode endTC = cue.getEndTime().convertWithOptions(startTimeCode, outputTimecode, frameRate, outputFrameRate, outputOffset);
-
-                String vp = this.verticalPosition(cue);
-                String startToEnd = this.formatTimeCode(startTC) + " --> " + this.formatTimeCode(endTC) + (vp != "" ? " " : "") + vp + "\n";
-                os.write(startToEnd.getBytes(this.charset));
-
-                // Write text
-                //String text = String.format("%s\n", cue.getText());
-
-                String text = "";
-                for (SubtitleLine line : cue.getLines()) {
-                    for (SubtitleText inText : line.getTexts()) {
-                        String textString = inText.toString();
-                        textString = textString.replace("amp;", "&lrm;amp;").replace("&", "&amp;"); // put lrm escape sequence between & and amp; to fully display "&amp;"
-                        textString = textString.replace("<", "&lt;");
-                        textString = textString.replace(">", "&gt;");
-                        if (inText instanceof SubtitleStyled) {
-                            SubtitleStyle style = ((SubtitleStyled)inText).getStyle();
-                            if (style.getFontStyle() == FontStyle.ITALIC || style.getFontStyle() == FontStyle.OBLIQUE) {
-                                textString = String.format("<i>%s</i>", textString);
-                            }
-                            if (style.getTextDecoration() == TextDecoration.UNDERLINE) {
-                                textString = String.format("<u>%s</u>", textString);
-                            }
-                            if (style.getFontWeight() == FontWeight.BOLD) {
-                                textString = String.format("<b>%s</b>", textString);
-                            }
-                            if (style.getColor() != null){
-                                textString = String.format("<c.%s>%s</c>", style.getColor(), textString);
-                            }
+            // Write Start time and end time
+            SubtitleTimeCode startTC = this.conversion.apply(cue.getStartTime());
+            SubtitleTimeCode endTC = this.conversion.apply(cue.getEndTime());
+
+            String vp = this.verticalPosition(cue);
+            String startToEnd = this.formatTimeCode(startTC) + " --> " + this.formatTimeCode(endTC) + (vp != "" ? " " : "") + vp + "\n";
+            os.write(startToEnd.getBytes(this.charset));
+
+            // Write text
+            //String text = String.format("%s\n", cue.getText());
+
+            String text = "";
+            for (SubtitleLine line : cue.getLines()) {
+                for (SubtitleText inText : line.getTexts()) {
+                    String textString = inText.toString();
+                    textString = textString.replace("amp;", "&lrm;amp;").replace("&", "&amp;"); // put lrm escape sequence between & and amp; to fully display "&amp;"
+                    textString = textString.replace("<", "&lt;");
+                    textString = textString.replace(">", "&gt;");
+                    if (inText instanceof SubtitleStyled) {
+                        SubtitleStyle style = ((SubtitleStyled)inText).getStyle();
+                        if (style.getFontStyle() == FontStyle.ITALIC || style.getFontStyle() == FontStyle.OBLIQUE) {
+                            textString = String.format("<i>%s</i>", textString);
                         }
-                        if (line instanceof VttLine vttLine && vttLine.getVoice() != null) {
-                            textString = String.format("<v %s>%s</v>", vttLine.getVoice(), textString);
+                        if (style.getTextDecoration() == TextDecoration.UNDERLINE) {
+                            textString = String.format("<u>%s</u>", textString);
                         }
-                        text += textString;
+                        if (style.getFontWeight() == FontWeight.BOLD) {
+                            textString = String.format("<b>%s</b>", textString);
+                        }
+                        if (style.getColor() != null){
+                            textString = String.format("<c.%s>%s</c>", style.getColor(), textString);
+                        }
+                    }
+                    if (line instanceof VttLine vttLine && vttLine.getVoice() != null) {
+                        textString = String.format("<v %s>%s</v>", vttLine.getVoice(), textString);
                     }
-                    text += "\n";
+                    text += textString;
                 }
-                os.write(text.getBytes(this.charset));
-
-                // Write empty line
-                os.write("\n".getBytes(this.charset));
-
-                // Get region
-
+                text += "\n";
             }
+            os.write(text.getBytes(this.charset));
+
+            // Write empty line
+            os.write("\n".getBytes(this.charset));
         } catch (UnsupportedEncodingException e) {
             throw new IOException("Encoding error in input subtitle");
         }
     }
 
+    @Override
+    public void end() throws IOException {
+        this.os.flush();
+    }
+
     private String verticalPosition(SubtitleCue cue) {
         if (cue instanceof SubtitleRegionCue) {
             VerticalAlign va = ((SubtitleRegionCue) cue).getRegion().getVerticalAlign();
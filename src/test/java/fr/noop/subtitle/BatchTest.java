@@ -0,0 +1,127 @@
+package fr.noop.subtitle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class BatchTest {
+    @TempDir
+    Path outputDir;
+
+    private CommandLine emptyLine() throws Exception {
+        return new DefaultParser().parse(new Options(), new String[0]);
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        Batch batch = new Batch();
+        List<Batch.Job> jobs = batch.listJobs(Paths.get("src/test/resources/srt"), outputDir, "vtt");
+
+        assertEquals(1, jobs.size());
+        assertEquals(outputDir.resolve("no-eof-nl.vtt").toString(), jobs.get(0).getOutputFilePath());
+
+        List<Batch.Result> results = batch.convert(jobs, emptyLine(), 2);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(Files.readString(outputDir.resolve("no-eof-nl.vtt")).startsWith("WEBVTT"));
+    }
+
+    @Test
+    public void testManifest() throws Exception {
+        Path manifest = outputDir.resolve("manifest.txt");
+        Files.writeString(manifest, String.join("\n",
+                "# input\toutput",
+                "src/test/resources/stl/test.stl\t" + outputDir.resolve("test.srt"),
+                "",
+                "src/test/resources/missing.srt\t" + outputDir.resolve("missing.vtt"),
+                "src/test/resources/srt/no-eof-nl.srt\t" + outputDir.resolve("sub/test.vtt")));
+
+        Batch batch = new Batch();
+        List<Batch.Job> jobs = batch.readManifest(manifest);
+        assertEquals(3, jobs.size());
+
+        // A failing file does not stop the other ones
+        List<Batch.Result> results = batch.convert(jobs, emptyLine(), 2);
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError().startsWith("Input file src/test/resources/missing.srt does not exist"));
+        assertTrue(results.get(2).isSuccess());
+        assertTrue(Files.exists(outputDir.resolve("sub/test.vtt")));
+
+        JSONObject summary = batch.getSummary(results);
+        assertEquals(3, summary.getInt("total"));
+        assertEquals(2, summary.getInt("converted"));
+        assertEquals(1, summary.getInt("failed"));
+    }
+
+    @Test
+    public void testJobError() throws Exception {
+        Batch batch = new Batch() {
+            @Override
+            Result convert(Job job, CommandLine line) {
+                if (job.getInputFilePath().equals("error.srt")) {
+                    throw new StackOverflowError();
+                }
+
+                return super.convert(job, line);
+            }
+        };
+
+        List<Batch.Job> jobs = List.of(
+                new Batch.Job("error.srt", outputDir.resolve("error.vtt").toString()),
+                new Batch.Job("src/test/resources/srt/no-eof-nl.srt", outputDir.resolve("test.vtt").toString()));
+
+        // An error thrown by a job does not abort the batch
+        List<Batch.Result> results = batch.convert(jobs, emptyLine(), 2);
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("Unable to convert file error.srt: java.lang.StackOverflowError", results.get(0).getError());
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    public void testDuplicateOutput() throws Exception {
+        Path inputDir = outputDir.resolve("input");
+        Files.createDirectories(inputDir);
+        Files.copy(Paths.get("src/test/resources/srt/no-eof-nl.srt"), inputDir.resolve("ep1.srt"));
+        Files.copy(Paths.get("src/test/resources/vtt/test.vtt"), inputDir.resolve("ep1.vtt"));
+        Files.copy(Paths.get("src/test/resources/srt/no-eof-nl.srt"), inputDir.resolve("ep2.srt"));
+
+        Batch batch = new Batch();
+        List<Batch.Job> jobs = batch.listJobs(inputDir, outputDir.resolve("output"), "stl");
+        assertEquals(3, jobs.size());
+
+        // Both ep1 files would be written to ep1.stl
+        List<Batch.Result> results = batch.convert(jobs, emptyLine(), 2);
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(String.format("Output file %s is written by several jobs", outputDir.resolve("output/ep1.stl")), results.get(0).getError());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertFalse(Files.exists(outputDir.resolve("output/ep1.stl")));
+    }
+
+    @Test
+    public void testOutputIsInput() throws Exception {
+        Path input = outputDir.resolve("ep1.srt");
+        Files.copy(Paths.get("src/test/resources/srt/no-eof-nl.srt"), input);
+        byte[] content = Files.readAllBytes(input);
+
+        Batch batch = new Batch();
+        List<Batch.Job> jobs = batch.listJobs(outputDir, outputDir, "srt");
+        assertEquals(1, jobs.size());
+
+        // The input file is not truncated
+        List<Batch.Result> results = batch.convert(jobs, emptyLine(), 2);
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(String.format("Output file %s is also an input file", input), results.get(0).getError());
+        assertArrayEquals(content, Files.readAllBytes(input));
+    }
+}
@@ -0,0 +1,90 @@
+package fr.noop.subtitle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class ServerTest {
+    private Server server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new Server();
+        server.start(new InetSocketAddress("127.0.0.1", 0), 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    private HttpURLConnection post(String path, String file) throws IOException {
+        URL url = new URL(String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(Files.readAllBytes(Paths.get(file)));
+        }
+
+        return connection;
+    }
+
+    private String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        is.transferTo(bytes);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        // Second request goes through the cached constructors
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = post("/convert?input=test.stl&output=test.vtt&ofr=25", "src/test/resources/stl/test.stl");
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(read(connection.getInputStream()).startsWith("WEBVTT"));
+        }
+    }
+
+    @Test
+    public void testAnalyse() throws Exception {
+        HttpURLConnection connection = post("/analyse?input=test.stl", "src/test/resources/stl/test.stl");
+        assertEquals(200, connection.getResponseCode());
+
+        JSONObject report = new JSONObject(read(connection.getInputStream()));
+        assertEquals("10:00:06:08", report.get("first_cue"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals(400, post("/convert?input=test.stl", "src/test/resources/stl/test.stl").getResponseCode());
+        assertEquals(400, post("/convert?input=test.stl&output=test.srt&unknown=1", "src/test/resources/stl/test.stl").getResponseCode());
+
+        HttpURLConnection connection = post("/convert?input=test.srt&output=test.vtt", "src/test/resources/stl/test.stl");
+        assertEquals(422, connection.getResponseCode());
+        assertTrue(read(connection.getErrorStream()).startsWith("Unable to parse input file test.srt"));
+    }
+
+    @Test
+    public void testHeaderFile() throws Exception {
+        // Options naming a file of the server are rejected
+        HttpURLConnection connection = post("/convert?input=test.stl&output=test.srt&hf=/etc/passwd", "src/test/resources/stl/test.stl");
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(read(connection.getErrorStream()).startsWith("Invalid conversion options"));
+    }
+}
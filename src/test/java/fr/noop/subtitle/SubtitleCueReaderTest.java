@@ -0,0 +1,96 @@
+package fr.noop.subtitle;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.sami.SamiParser;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.vtt.VttParser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class SubtitleCueReaderTest {
+    private void assertSameCues(SubtitleParser parser, String path) throws Exception {
+        SubtitleObject parsed = parser.parse(new FileInputStream(path), false);
+        List<SubtitleCue> expected = parsed.getCues();
+
+        try (SubtitleCueReader reader = parser.read(new FileInputStream(path), false)) {
+            Assertions.assertEquals(parsed.getProperties().keySet(), reader.getProperties().keySet());
+
+            for (SubtitleCue expectedCue : expected) {
+                SubtitleCue cue = reader.next();
+                Assertions.assertNotNull(cue);
+                Assertions.assertEquals(expectedCue.getStartTime().getTime(), cue.getStartTime().getTime());
+                Assertions.assertEquals(expectedCue.getEndTime().getTime(), cue.getEndTime().getTime());
+                Assertions.assertEquals(expectedCue.getText(), cue.getText());
+            }
+
+            Assertions.assertNull(reader.next());
+            Assertions.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testSrt() throws Exception {
+        assertSameCues(new SrtParser("utf-8"), "src/test/resources/srt/no-eof-nl.srt");
+    }
+
+    @Test
+    public void testVtt() throws Exception {
+        assertSameCues(new VttParser("utf-8"), "src/test/resources/vtt/test.vtt");
+    }
+
+    @Test
+    public void testStl() throws Exception {
+        assertSameCues(new StlParser(), "src/test/resources/stl/test.stl");
+    }
+
+    @Test
+    public void testSami() throws Exception {
+        String sami = "<SAMI>\n<BODY>\n<SYNC Start=1000>\n<P>First</P>\n<SYNC Start=3000>\n<P>Second</P>\n</BODY>\n</SAMI>\n";
+        SubtitleCueReader reader = new SamiParser("utf-8").read(
+            new ByteArrayInputStream(sami.getBytes(StandardCharsets.UTF_8)));
+
+        // A cue ends when the next one starts
+        SubtitleCue first = reader.next();
+        Assertions.assertEquals("First", first.getText());
+        Assertions.assertEquals(3000, first.getEndTime().getTime());
+
+        // Last cue lasts 2 seconds
+        SubtitleCue second = reader.next();
+        Assertions.assertEquals("Second", second.getText());
+        Assertions.assertEquals(5000, second.getEndTime().getTime());
+
+        Assertions.assertNull(reader.next());
+    }
+
+    @Test
+    public void testParsedCues() throws Exception {
+        // Parsers that only implement parse get a reader over the parsed cues
+        SubtitleParser srtParser = new SrtParser("utf-8");
+        SubtitleParser parser = new SubtitleParser() {
+            @Override
+            public SubtitleObject parse(InputStream is) throws IOException, SubtitleParsingException {
+                return srtParser.parse(is);
+            }
+
+            @Override
+            public SubtitleObject parse(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
+                return srtParser.parse(is, strict);
+            }
+        };
+
+        assertSameCues(parser, "src/test/resources/srt/no-eof-nl.srt");
+    }
+}
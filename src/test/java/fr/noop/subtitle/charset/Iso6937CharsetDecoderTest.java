@@ -272,4 +272,26 @@ public class Iso6937CharsetDecoderTest {
         assertEquals("ª", decodeBytes(DatatypeConverter.parseHexBinary("e3")));
         assertEquals("\u00ad", decodeBytes(DatatypeConverter.parseHexBinary("ff")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMixedText() throws UnsupportedEncodingException {
+        // Ascii runs around accents, 0x24 is the currency sign
+        assertEquals("Un \u00e9t\u00e9 \u00e0 \u00a4 10", decodeBytes(DatatypeConverter.parseHexBinary("556e20c26574c26520c1612024203130")));
+        // No precomposed char, the combining accent follows the base char
+        assertEquals("q\u0301", decodeBytes(DatatypeConverter.parseHexBinary("c271")));
+    }
+
+    @Test
+    public void testSplitInput() throws Exception {
+        // Accent at the end of a chunk waits for its base char
+        ByteBuffer bb = ByteBuffer.allocate(3);
+        CharBuffer cb = CharBuffer.allocate(3);
+        bb.put(DatatypeConverter.parseHexBinary("61c2")).flip();
+        tested.decode(bb, cb, false);
+        assertEquals(1, bb.position());
+        bb.compact().put((byte) 0x65).flip();
+        tested.decode(bb, cb, true);
+        tested.flush(cb);
+        assertEquals("a\u00e9", String.valueOf(cb.flip()));
+    }
+}
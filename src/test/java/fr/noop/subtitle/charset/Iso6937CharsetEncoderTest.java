@@ -275,4 +275,26 @@ public class Iso6937CharsetEncoderTest {
         assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("e3"), encodeToBytes("ª")));
         assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("ff"), encodeToBytes("\u00ad")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCharsOutsideLatin() throws UnsupportedEncodingException {
+        assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("b9"), encodeToBytes("\u2019")));
+        assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("d5"), encodeToBytes("\u266a")));
+        // Latin extended additional
+        assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("c757"), encodeToBytes("\u1e86")));
+    }
+
+    @Test
+    public void testSmallOutputBuffer() throws Exception {
+        // A composed char is never split between two outputs
+        CharBuffer cb = CharBuffer.wrap("a\u00e9");
+        ByteBuffer bb = ByteBuffer.allocate(2);
+        tested.encode(cb, bb, false);
+        assertEquals(1, cb.position());
+        assertEquals(1, bb.position());
+
+        ByteBuffer next = ByteBuffer.allocate(2);
+        tested.encode(cb, next, true);
+        assertTrue(Arrays.equals(DatatypeConverter.parseHexBinary("c265"), next.array()));
+    }
+}
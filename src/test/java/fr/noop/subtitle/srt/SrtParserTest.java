@@ -1,11 +1,17 @@
 package fr.noop.subtitle.srt;
 
 import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 public class SrtParserTest {
 
@@ -18,4 +24,36 @@ public class SrtParserTest {
 
         Assertions.assertEquals(2, srtObject.getCues().size());
     }
+
+    @Test
+    public void testStyledText() throws IOException, SubtitleParsingException {
+        String srt = "1\n00:00:01,000 --> 00:00:02,000\n" +
+                "{\\an8}Plain <font color=\"#ffff00\">yellow</font> <i>italic\\N\n" +
+                "still italic</i> <x>\n";
+        SrtObject srtObject = srtParser.parse(new ByteArrayInputStream(srt.getBytes(StandardCharsets.UTF_8)));
+        SrtCue cue = (SrtCue) srtObject.getCues().get(0);
+
+        Assertions.assertEquals(SubtitleRegion.VerticalAlign.TOP, cue.getRegion().getVerticalAlign());
+        Assertions.assertEquals(2, cue.getLines().size());
+
+        SubtitleTextLine first = (SubtitleTextLine) cue.getLines().get(0);
+        Assertions.assertEquals(4, first.getTexts().size());
+        SubtitleStyledText yellow = (SubtitleStyledText) first.getTexts().get(1);
+        Assertions.assertEquals("yellow", yellow.getStyle().getColor());
+        SubtitleStyledText space = (SubtitleStyledText) first.getTexts().get(2);
+        Assertions.assertNull(space.getStyle().getColor());
+        Assertions.assertEquals(SubtitleStyle.TextAlign.CENTER, space.getStyle().getTextAlign());
+        SubtitleStyledText italic = (SubtitleStyledText) first.getTexts().get(3);
+        Assertions.assertEquals("italic", italic.toString());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, italic.getStyle().getFontStyle());
+
+        // Styles go on in the next line
+        SubtitleTextLine second = (SubtitleTextLine) cue.getLines().get(1);
+        SubtitleStyledText stillItalic = (SubtitleStyledText) second.getTexts().get(0);
+        Assertions.assertEquals("still italic", stillItalic.toString());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, stillItalic.getStyle().getFontStyle());
+        SubtitleStyledText unknownTag = (SubtitleStyledText) second.getTexts().get(1);
+        Assertions.assertEquals(" <x>", unknownTag.toString());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.NORMAL, unknownTag.getStyle().getFontStyle());
+    }
 }
@@ -123,7 +123,8 @@ public class ArabicStlParserTest {
         SubtitleLine line1 = testedCue.getLines().get(0);
         SubtitleStyledText text1 = (SubtitleStyledText) line1.getTexts().get(0);
         // Test content
-        assertEquals("هل أنت واثق أنه هنا", line1.toString());
+        // Arabic question mark is 0xbf, it is not a control code
+        assertEquals("هل أنت واثق أنه هنا؟", line1.toString());
     }
 
     @Test
@@ -0,0 +1,134 @@
+package fr.noop.subtitle.stl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StlCueAssemblerTest {
+    private StlGsi gsi;
+    private StlCueAssembler tested;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        gsi = new StlParser().parse(new FileInputStream("src/test/resources/stl/test.stl")).getGsi();
+        gsi.setDsc(StlGsi.Dsc.OPEN_SUBTITLING);
+        tested = new StlCueAssembler(gsi, new StlTextScanner(gsi.getCct().getCharset()));
+    }
+
+    private static StlTti tti(int sn, int ebn, int cs, int tci, int tco, String tf) {
+        StlTti tti = new StlTti();
+        tti.setSn(sn);
+        tti.setEbn((short) ebn);
+        tti.setCs((short) cs);
+        tti.setTci(new SubtitleTimeCode(tci));
+        tti.setTco(new SubtitleTimeCode(tco));
+        tti.setVp((short) 20);
+        tti.setJc(StlTti.Jc.CENTER);
+        tti.setTf(tf);
+        return tti;
+    }
+
+    private List<StlCue> finish() {
+        tested.finish();
+        List<StlCue> cues = new ArrayList<>();
+        StlCue cue;
+
+        while ((cue = tested.poll()) != null) {
+            cues.add(cue);
+        }
+
+        return cues;
+    }
+
+    @Test
+    public void testExtensionBlocks() throws Exception {
+        // A row continues in the extension block
+        tested.add(tti(1, 0x00, 0, 1000, 2000, "First li"));
+        assertNull(tested.poll());
+        tested.add(tti(1, 0xFF, 0, 1000, 2000, "ne\u008aSecond line"));
+        StlCue cue = tested.poll();
+
+        assertEquals("First line\nSecond line", cue.getText());
+        assertEquals(2, cue.getTtis().size());
+        assertNotNull(cue.getRegion());
+        assertEquals(0, finish().size());
+    }
+
+    @Test
+    public void testUserData() throws Exception {
+        tested.add(tti(1, 0xFE, 0, 1000, 2000, "User data"));
+        tested.add(tti(1, 0xFF, 0, 1000, 2000, "Text"));
+        List<StlCue> cues = finish();
+
+        assertEquals(1, cues.size());
+        assertEquals("Text", cues.get(0).getText());
+    }
+
+    @Test
+    public void testMissingLastBlock() throws Exception {
+        tested.add(tti(1, 0x00, 0, 1000, 2000, "First"));
+        tested.add(tti(2, 0xFF, 0, 3000, 4000, "Second"));
+        List<StlCue> cues = finish();
+
+        assertEquals(2, cues.size());
+        assertEquals("First", cues.get(0).getText());
+        assertEquals("Second", cues.get(1).getText());
+    }
+
+    @Test
+    public void testCumulativeSet() throws Exception {
+        tested.add(tti(1, 0xFF, 1, 1000, 5000, "One"));
+        // Waiting for the next subtitle of the set
+        assertNull(tested.poll());
+        tested.add(tti(2, 0xFF, 2, 2000, 5000, "Two"));
+        tested.add(tti(3, 0xFF, 3, 3000, 5000, "Three"));
+        tested.add(tti(4, 0xFF, 0, 6000, 7000, "Four"));
+        List<StlCue> cues = finish();
+
+        assertEquals(4, cues.size());
+        assertEquals("One", cues.get(0).getText());
+        assertEquals(1000, cues.get(0).getStartTime().getTime());
+        assertEquals(2000, cues.get(0).getEndTime().getTime());
+        assertEquals("One\nTwo", cues.get(1).getText());
+        assertEquals(2000, cues.get(1).getStartTime().getTime());
+        assertEquals(3000, cues.get(1).getEndTime().getTime());
+        assertEquals("One\nTwo\nThree", cues.get(2).getText());
+        assertEquals(3000, cues.get(2).getStartTime().getTime());
+        assertEquals(5000, cues.get(2).getEndTime().getTime());
+        assertEquals("Four", cues.get(3).getText());
+    }
+
+    @Test
+    public void testWrittenExtensionBlocks() throws Exception {
+        // Long cues are written on several blocks and read back as a single cue
+        StlObject stl = new StlObject(gsi);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 30; i++) {
+            text.append("Word ").append(i).append(' ');
+        }
+
+        stl.addTti(tti(1, 0xFF, 0, 1000, 2000, text.toString().trim()));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new StlWriter().write(stl, os);
+
+        StlObject parsed = new StlParser().parse(new ByteArrayInputStream(os.toByteArray()));
+        assertTrue(parsed.getTtis().size() > 1);
+        List<SubtitleCue> cues = parsed.getCues();
+        assertEquals(1, cues.size());
+        assertEquals(text.toString().trim(), cues.get(0).getText());
+
+        // The last cue is found from the last block
+        StlObject lazy = new StlParser().parse(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(cues.get(0).getText(), lazy.getLastCue().getText());
+    }
+}
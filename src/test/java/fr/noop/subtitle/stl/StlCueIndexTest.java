@@ -0,0 +1,56 @@
+package fr.noop.subtitle.stl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileInputStream;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class StlCueIndexTest {
+    private StlObject parsed;
+    private StlCueIndex tested;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        StlParser stlParser = new StlParser();
+        parsed = stlParser.parse(new FileInputStream("src/test/resources/stl/test.stl"));
+        tested = stlParser.index(Paths.get("src/test/resources/stl/test.stl"));
+    }
+
+    @Test
+    public void testTimeCodes() throws Exception {
+        assertEquals(parsed.getTtis().size(), tested.size());
+
+        for (int block = 0; block < tested.size(); block++) {
+            StlTti tti = parsed.getTtis().get(block);
+            assertEquals(tti.getTci().getTime(), tested.getTci(block));
+            assertEquals(tti.getTco().getTime(), tested.getTco(block));
+        }
+    }
+
+    @Test
+    public void testCueBySn() throws Exception {
+        StlCue cue = tested.getCue(2);
+        assertEquals("-Ellis Island,\nîlot de larmes et d'exil,", cue.getText());
+        assertEquals(36006320, cue.getStartTime().getTime());
+        assertEquals(((StlCue) parsed.getCues().get(0)).getRegion(), cue.getRegion());
+        assertNull(tested.getCue(100000));
+    }
+
+    @Test
+    public void testActiveCues() throws Exception {
+        for (SubtitleCue cue : parsed.getCues()) {
+            StlCue expected = (StlCue) cue;
+            List<StlCue> active = tested.getActiveCues(expected.getStartTime());
+            assertEquals(1, active.size());
+            assertEquals(expected.getText(), active.get(0).getText());
+        }
+
+        assertEquals(0, tested.getActiveCues(new SubtitleTimeCode(0)).size());
+    }
+}
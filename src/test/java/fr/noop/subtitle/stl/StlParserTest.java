@@ -20,6 +20,7 @@ import org.junit.jupiter.api.BeforeEach;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -210,4 +211,39 @@ public class StlParserTest {
         StlCue testedCue2 = (StlCue) tested.getCues().get(1);
         assertEquals(testedCue.getRegion(), testedCue2.getRegion());
     }
+
+    @Test
+    public void testMappedParse() throws Exception {
+        // Parsing through a memory mapped file must give the same result as the stream parser
+        StlObject mapped = new StlParser().parse(Paths.get("src/test/resources/stl/test.stl"));
+        assertEquals(tested.getTtis().size(), mapped.getTtis().size());
+        assertEquals(tested.getCues().size(), mapped.getCues().size());
+
+        for (int i = 0; i < tested.getTtis().size(); i++) {
+            assertEquals(tested.getTtis().get(i).getTf(), mapped.getTtis().get(i).getTf());
+        }
+
+        for (int i = 0; i < tested.getCues().size(); i++) {
+            assertEquals(tested.getCues().get(i).getText(), mapped.getCues().get(i).getText());
+            assertEquals(tested.getCues().get(i).getStartTime().getTime(), mapped.getCues().get(i).getStartTime().getTime());
+        }
+    }
+
+    @Test
+    public void testFirstAndLastCue() throws Exception {
+        // First and last cues are found without building the other cues
+        StlObject lazy = new StlParser().parse(new FileInputStream("src/test/resources/stl/test.stl"));
+        SubtitleCue first = lazy.getFirstCue();
+        SubtitleCue last = lazy.getLastCue();
+
+        assertEquals(testedCue.getText(), first.getText());
+        assertEquals(testedCue.getStartTime(), first.getStartTime());
+        SubtitleCue testedLast = tested.getCues().get(tested.getCues().size() - 1);
+        assertEquals(testedLast.getText(), last.getText());
+        assertEquals(testedLast.getEndTime(), last.getEndTime());
+
+        // Cues are still built on request
+        assertEquals(tested.getCues().size(), lazy.getCues().size());
+        assertEquals(last.getText(), lazy.getLastCue().getText());
+    }
 }
@@ -1,9 +1,13 @@
 package fr.noop.subtitle.stl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
@@ -11,9 +15,17 @@ import org.junit.jupiter.api.BeforeEach;
 
 import fr.noop.subtitle.model.SubtitleWriterWithTimecode;
 import fr.noop.subtitle.model.SubtitleWriterWithDsc;
+import fr.noop.subtitle.srt.SrtCue;
 import fr.noop.subtitle.srt.SrtObject;
 import fr.noop.subtitle.srt.SrtParser;
 import fr.noop.subtitle.stl.StlGsi.Dsc;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyle.FontStyle;
+import fr.noop.subtitle.util.SubtitleStyle.TextDecoration;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
 import fr.noop.subtitle.util.SubtitleTimeCode;
 
 public class StlWriterTest {
@@ -93,4 +105,85 @@ public class StlWriterTest {
         assertEquals(Dsc.TELETEXT_LEVEL_1, testedGsi.getDsc());
         assertEquals(Dsc.OPEN_SUBTITLING, tested2Gsi.getDsc());
     }
+
+    @Test
+    public void testWriteToStream() throws Exception {
+        // Blocks are spooled when the output is not a file
+        StlWriter stlWriter = new StlWriter();
+        ((SubtitleWriterWithTimecode) stlWriter).setTimecode("01:00:00:00");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stlWriter.write(source, os);
+
+        assertArrayEquals(Files.readAllBytes(Paths.get("src/test/resources/stl/tested.stl")), os.toByteArray());
+    }
+
+    @Test
+    public void testSplitTextField() throws Exception {
+        assertArrayEquals(new int[] {0}, StlWriter.splitTextField(new byte[0], true));
+        assertArrayEquals(new int[] {112}, StlWriter.splitTextField(new byte[112], true));
+        assertArrayEquals(new int[] {112, 224, 230}, StlWriter.splitTextField(new byte[230], true));
+
+        // Diacritical mark is kept with its letter in the next block
+        byte[] text = new byte[120];
+        text[111] = (byte) 0xC2;
+        assertArrayEquals(new int[] {111, 120}, StlWriter.splitTextField(text, true));
+        assertArrayEquals(new int[] {112, 120}, StlWriter.splitTextField(text, false));
+    }
+
+    @Test
+    public void testExtensionBlocks() throws Exception {
+        SrtObject srt = new SrtObject();
+        SrtCue cue = new SrtCue();
+        cue.setStartTime(new SubtitleTimeCode(1000));
+        cue.setEndTime(new SubtitleTimeCode(2000));
+        cue.setRegion(new SubtitleRegion(0, 0));
+
+        for (int i = 0; i < 3; i++) {
+            cue.addLine(new SubtitleTextLine(List.of(new SubtitlePlainText("0123456789012345678901234567890123456789"))));
+        }
+
+        srt.addCue(cue);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new StlWriter().write(srt, os);
+        byte[] bytes = os.toByteArray();
+
+        // 122 bytes of text need 2 blocks of the same subtitle
+        assertEquals(1024 + 2 * 128, bytes.length);
+        assertEquals("00002", new String(bytes, 238, 5, "ascii"));
+        assertEquals("00001", new String(bytes, 243, 5, "ascii"));
+        assertEquals(0x00, bytes[1024 + 3] & 0xff);
+        assertEquals(0xFF, bytes[1024 + 128 + 3] & 0xff);
+        assertEquals(0, bytes[1024 + 128 + 1]);
+    }
+
+    @Test
+    public void testStyledText() throws Exception {
+        SubtitleStyle style = new SubtitleStyle();
+        style.setColor("red");
+        style.setFontStyle(FontStyle.ITALIC);
+        style.setTextDecoration(TextDecoration.UNDERLINE);
+        SubtitleStyle unknownColor = new SubtitleStyle();
+        unknownColor.setColor("papayawhip");
+
+        SrtObject srt = new SrtObject();
+        SrtCue cue = new SrtCue();
+        cue.setStartTime(new SubtitleTimeCode(1000));
+        cue.setEndTime(new SubtitleTimeCode(2000));
+        cue.setRegion(new SubtitleRegion(0, 0));
+        cue.addLine(new SubtitleTextLine(List.of(new SubtitlePlainText("a "), new SubtitleStyledText("b", style))));
+        cue.addLine(new SubtitleTextLine(List.of(new SubtitleStyledText("c", unknownColor))));
+        srt.addCue(cue);
+
+        StlWriter stlWriter = new StlWriter();
+        ((SubtitleWriterWithDsc) stlWriter).setDsc(Dsc.OPEN_SUBTITLING.name());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stlWriter.write(srt, os);
+        byte[] bytes = os.toByteArray();
+
+        // Styled text is written once, after the codes of its style, colors without code are ignored
+        byte[] expected = {'a', ' ', 0x01, (byte) 0x80, (byte) 0x82, 'b', (byte) 0x83, (byte) 0x81, (byte) 0x8a, 'c', (byte) 0x8f};
+        byte[] textField = new byte[expected.length];
+        System.arraycopy(bytes, 1024 + 16, textField, 0, expected.length);
+        assertArrayEquals(expected, textField);
+    }
 }
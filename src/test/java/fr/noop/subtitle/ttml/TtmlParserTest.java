@@ -0,0 +1,126 @@
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class TtmlParserTest {
+
+    private TtmlParser ttmlParser = new TtmlParser();
+
+    @Test
+    public void test() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/ttml/test.xml");
+        TtmlObject ttmlObject = ttmlParser.parse(is);
+
+        // Empty paragraphs are ignored
+        Assertions.assertEquals(3, ttmlObject.getCues().size());
+        Assertions.assertEquals("Test", ttmlObject.getProperty(SubtitleObject.Property.TITLE));
+        Assertions.assertEquals(25f, ttmlObject.getProperty(SubtitleObject.Property.FRAME_RATE));
+
+        TtmlCue first = (TtmlCue) ttmlObject.getCues().get(0);
+        Assertions.assertEquals("c1", first.getId());
+        Assertions.assertEquals(1000, first.getStartTime().getTime());
+        Assertions.assertEquals(2500, first.getEndTime().getTime());
+        Assertions.assertEquals(new SubtitleRegion(10, 80, 80, 10), first.getRegion());
+        Assertions.assertEquals(2, first.getLines().size());
+        Assertions.assertEquals("First line", first.getLines().get(0).toString());
+
+        // White space is collapsed, styles are inherited from the body and resolved through references
+        SubtitleTextLine second = (SubtitleTextLine) first.getLines().get(1);
+        Assertions.assertEquals(2, second.getTexts().size());
+        SubtitleStyle italic = ((SubtitleStyledText) second.getTexts().get(0)).getStyle();
+        Assertions.assertEquals("second", second.getTexts().get(0).toString());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, italic.getFontStyle());
+        Assertions.assertEquals("white", italic.getColor());
+        Assertions.assertEquals(" line", second.getTexts().get(1).toString());
+        Assertions.assertNull(((SubtitleStyledText) second.getTexts().get(1)).getStyle().getFontStyle());
+
+        // Frames and durations
+        TtmlCue yellow = (TtmlCue) ttmlObject.getCues().get(1);
+        Assertions.assertEquals(3200, yellow.getStartTime().getTime());
+        Assertions.assertEquals(5200, yellow.getEndTime().getTime());
+        Assertions.assertEquals(SubtitleRegion.VerticalAlign.TOP, yellow.getRegion().getVerticalAlign());
+        SubtitleTextLine line = (SubtitleTextLine) yellow.getLines().get(0);
+        SubtitleStyle yellowStyle = ((SubtitleStyledText) line.getTexts().get(0)).getStyle();
+        Assertions.assertEquals("yellow", yellowStyle.getColor());
+        Assertions.assertEquals(SubtitleStyle.TextAlign.CENTER, yellowStyle.getTextAlign());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, yellowStyle.getFontStyle());
+        Assertions.assertEquals(" bold", line.getTexts().get(1).toString());
+        Assertions.assertEquals(SubtitleStyle.FontWeight.BOLD,
+                ((SubtitleStyledText) line.getTexts().get(1)).getStyle().getFontWeight());
+
+        // Paragraph times are relative to their division
+        TtmlCue offset = (TtmlCue) ttmlObject.getCues().get(2);
+        Assertions.assertEquals(11000, offset.getStartTime().getTime());
+        Assertions.assertEquals(12000, offset.getEndTime().getTime());
+        Assertions.assertEquals("Offset & underline", offset.getLines().get(0).toString().replace("\n", ""));
+    }
+
+    @Test
+    public void testMissingTimeCode() throws IOException, SubtitleParsingException {
+        String ttml = "<tt xmlns=\"http://www.w3.org/ns/ttml\"><body><div>" +
+                "<p begin=\"1s\">No end</p><p begin=\"2s\" end=\"3s\">Text</p></div></body></tt>";
+
+        Assertions.assertThrows(SubtitleParsingException.class,
+                () -> ttmlParser.parse(new ByteArrayInputStream(ttml.getBytes(StandardCharsets.UTF_8))));
+
+        TtmlObject ttmlObject = ttmlParser.parse(new ByteArrayInputStream(ttml.getBytes(StandardCharsets.UTF_8)), false);
+        Assertions.assertEquals(1, ttmlObject.getCues().size());
+        Assertions.assertTrue(ttmlObject.getCues().get(0).getLines().get(0) instanceof SubtitleTextLine);
+        Assertions.assertTrue(((SubtitleTextLine) ttmlObject.getCues().get(0).getLines().get(0)).getTexts().get(0) instanceof SubtitlePlainText);
+    }
+
+    @Test
+    public void testInheritedTimes() throws IOException, SubtitleParsingException {
+        String ttml = "<tt xmlns=\"http://www.w3.org/ns/ttml\" xmlns:ttm=\"http://www.w3.org/ns/ttml#metadata\">" +
+                "<head><metadata><ttm:title>Mixed <span>content</span></ttm:title></metadata></head><body>" +
+                "<div begin=\"10s\" end=\"20s\"><p>Whole division</p><p begin=\"2s\">From begin</p>" +
+                "<p begin=\"4s\" dur=\"1s\">Own duration</p><p dur=\"30s\">Cut by division</p></div>" +
+                "<div begin=\"30s\" dur=\"5s\"><p>Division duration</p></div></body></tt>";
+
+        TtmlObject ttmlObject = ttmlParser.parse(new ByteArrayInputStream(ttml.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("Mixed content", ttmlObject.getProperty(SubtitleObject.Property.TITLE));
+        Assertions.assertEquals(5, ttmlObject.getCues().size());
+
+        // Untimed paragraphs take the begin and the end of their division
+        long[][] times = {{10000, 20000}, {12000, 20000}, {14000, 15000}, {10000, 20000}, {30000, 35000}};
+
+        for (int i = 0; i < times.length; i++) {
+            Assertions.assertEquals(times[i][0], ttmlObject.getCues().get(i).getStartTime().getTime());
+            Assertions.assertEquals(times[i][1], ttmlObject.getCues().get(i).getEndTime().getTime());
+        }
+    }
+
+    @Test
+    public void testWrittenDocument() throws IOException, SubtitleParsingException {
+        String srt = "1\n00:00:01,000 --> 00:00:02,000\n<i>Italic</i> text\nSecond line\n\n" +
+                "2\n01:00:03,040 --> 01:00:04,000\nLast\n";
+        SubtitleObject srtObject = new SrtParser("utf-8").parse(new ByteArrayInputStream(srt.getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new TtmlWriter().write(srtObject, os);
+
+        TtmlObject ttmlObject = ttmlParser.parse(new ByteArrayInputStream(os.toByteArray()));
+
+        Assertions.assertEquals(srtObject.getCues().size(), ttmlObject.getCues().size());
+
+        for (int i = 0; i < srtObject.getCues().size(); i++) {
+            Assertions.assertEquals(srtObject.getCues().get(i).getStartTime(), ttmlObject.getCues().get(i).getStartTime());
+            Assertions.assertEquals(srtObject.getCues().get(i).getEndTime(), ttmlObject.getCues().get(i).getEndTime());
+            Assertions.assertEquals(srtObject.getCues().get(i).getText(), ttmlObject.getCues().get(i).getText());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.srt.SrtParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class TtmlWriterTest {
+
+    private static final String SRT = "1\n00:00:01,000 --> 00:00:02,000\n<font color=\"#ffff00\">Yellow</font> text\nSecond line\n\n" +
+            "2\n00:00:03,000 --> 00:00:04,000\nLast\n";
+
+    private String write(boolean compact) throws IOException, SubtitleParsingException {
+        SubtitleObject srtObject = new SrtParser("utf-8").parse(new ByteArrayInputStream(SRT.getBytes(StandardCharsets.UTF_8)));
+        TtmlWriter writer = new TtmlWriter();
+        writer.setCompact(compact);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.write(srtObject, os);
+        return os.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testIndent() throws IOException, SubtitleParsingException {
+        String ttml = write(false);
+
+        Assertions.assertTrue(ttml.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tt "));
+        Assertions.assertTrue(ttml.contains("\n  <head>\n    <metadata>\n      <ttm:title/>\n    </metadata>\n"));
+        Assertions.assertTrue(ttml.contains("\n      <style xml:id=\"style-1\" tts:color=\"yellow\"/>\n"));
+
+        // Cue text is kept on the line of its paragraph
+        Assertions.assertTrue(ttml.contains("\n      <p xml:id=\"cue-2\" region=\"region-1\" begin=\"00:00:03.000\" end=\"00:00:04.000\"><span>Last</span></p>\n"));
+        Assertions.assertTrue(ttml.endsWith("\n    </div>\n  </body>\n</tt>\n"));
+    }
+
+    @Test
+    public void testCompact() throws IOException, SubtitleParsingException {
+        String ttml = write(true);
+
+        Assertions.assertFalse(ttml.contains("\n"));
+        Assertions.assertTrue(ttml.endsWith("</p></div></body></tt>"));
+
+        // Same document once indentation is removed
+        Assertions.assertEquals(write(false).replaceAll("\n *", ""), ttml);
+
+        TtmlObject ttmlObject = new TtmlParser().parse(new ByteArrayInputStream(ttml.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(2, ttmlObject.getCues().size());
+        Assertions.assertEquals("Yellow\n text\nSecond line", ttmlObject.getCues().get(0).getText());
+    }
+}
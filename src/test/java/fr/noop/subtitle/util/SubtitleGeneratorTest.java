@@ -0,0 +1,69 @@
+package fr.noop.subtitle.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import org.junit.jupiter.api.Test;
+
+public class SubtitleGeneratorTest {
+    private SubtitleGenerator build(int cueCount, float overlapRate) {
+        SubtitleGenerator generator = new SubtitleGenerator(42);
+        generator.setCueCount(cueCount);
+        generator.setStyleDensity(0.5f);
+        generator.setOverlapRate(overlapRate);
+        generator.setMultiBlockRate(0.1f);
+        return generator;
+    }
+
+    @Test
+    public void testSameSeed() throws Exception {
+        SubtitleGenerator first = build(100, 0.2f);
+        SubtitleGenerator second = build(100, 0.2f);
+        SubtitleCue cue;
+
+        while ((cue = first.next()) != null) {
+            SubtitleCue other = second.next();
+            assertEquals(cue.getStartTime().getTime(), other.getStartTime().getTime());
+            assertEquals(cue.getText(), other.getText());
+        }
+
+        assertNull(second.next());
+    }
+
+    @Test
+    public void testOverlaps() throws Exception {
+        SubtitleGenerator generator = build(1000, 0);
+        SubtitleCue previous = null;
+        SubtitleCue cue;
+        int count = 0;
+
+        while ((cue = generator.next()) != null) {
+            if (previous != null) {
+                assertTrue(cue.getStartTime().getTime() >= previous.getEndTime().getTime());
+            }
+
+            previous = cue;
+            count++;
+        }
+
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void testTimeline() throws Exception {
+        // Cues are squeezed to stay under 10 hours
+        SubtitleGenerator generator = build(1000000, 0.1f);
+        SubtitleCue previous = null;
+        SubtitleCue cue;
+
+        while ((cue = generator.next()) != null) {
+            if (previous != null) {
+                assertTrue(cue.getStartTime().getTime() >= previous.getStartTime().getTime());
+            }
+
+            previous = cue;
+        }
+
+        assertTrue(previous.getEndTime().getTime() < 10 * 3600 * 1000);
+    }
+}
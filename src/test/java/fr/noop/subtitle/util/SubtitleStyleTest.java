@@ -12,6 +12,11 @@ package fr.noop.subtitle.util;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.srt.SrtParser;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
@@ -107,4 +112,54 @@ public class SubtitleStyleTest {
         assertEquals(SubtitleStyle.TextDecoration.UNDERLINE, tested.getProperty(SubtitleStyle.Property.TEXT_DECORATION));
         assertEquals("white", tested.getProperty(SubtitleStyle.Property.COLOR));
     }
+
+    @Test
+    public void testIntern() throws Exception {
+        SubtitleStyle interned = tested.intern();
+        SubtitleStyle copy = new SubtitleStyle(tested);
+
+        assertNotSame(tested, interned);
+        assertTrue(interned.isInterned());
+        assertSame(interned, interned.intern());
+        assertSame(interned, copy.intern());
+
+        // Mutable styles are compared by identity
+        assertNotEquals(tested, copy);
+        assertEquals(tested.getProperties(), interned.getProperties());
+
+        // Interned styles are read only, the source style is still mutable
+        assertThrows(IllegalStateException.class, () -> interned.setColor("black"));
+        tested.setColor("black");
+        assertNotSame(interned, tested.intern());
+        assertEquals("white", interned.getColor());
+    }
+
+    @Test
+    public void testStyledTextStyle() throws Exception {
+        SubtitleStyledText text = new SubtitleStyledText("a", tested);
+
+        // Styles given by callers are neither copied nor interned
+        assertSame(tested, text.getStyle());
+        text.getStyle().setColor("black");
+        assertEquals("black", text.getStyle().getColor());
+    }
+
+    @Test
+    public void testParsedStyle() throws Exception {
+        String srt = "1\n00:00:01,000 --> 00:00:02,000\n<i>a</i>\n\n2\n00:00:03,000 --> 00:00:04,000\n<i>b</i>\n\n";
+        SubtitleObject subtitle = new SrtParser("utf-8").parse(new ByteArrayInputStream(srt.getBytes(StandardCharsets.UTF_8)));
+        SubtitleStyle first = ((SubtitleStyledText) subtitle.getCues().get(0).getLines().get(0).getTexts().get(0)).getStyle();
+        SubtitleStyle second = ((SubtitleStyledText) subtitle.getCues().get(1).getLines().get(0).getTexts().get(0)).getStyle();
+
+        // Parsed styles are shared and read only, copies are mutable
+        assertSame(first, second);
+        assertThrows(IllegalStateException.class, () -> first.setColor("black"));
+        assertThrows(IllegalStateException.class, () -> first.setProperty(SubtitleStyle.Property.COLOR, "black"));
+
+        SubtitleStyle copy = new SubtitleStyle(first);
+        copy.setColor("black");
+        assertEquals(SubtitleStyle.FontStyle.ITALIC, copy.getFontStyle());
+        assertEquals("black", copy.getColor());
+        assertNull(first.getColor());
+    }
 }
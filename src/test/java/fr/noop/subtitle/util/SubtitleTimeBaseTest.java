@@ -0,0 +1,65 @@
+package fr.noop.subtitle.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import fr.noop.subtitle.util.SubtitleFrameRate.FrameRate;
+
+public class SubtitleTimeBaseTest {
+    @Test
+    public void testValueOf() throws Exception {
+        SubtitleTimeBase ntsc = SubtitleTimeBase.valueOf(23.976f);
+        assertSame(SubtitleTimeBase.valueOf(FrameRate.FR23976), ntsc);
+        assertEquals(24000, ntsc.getNumerator());
+        assertEquals(1001, ntsc.getDenominator());
+
+        // Unknown frame rates are kept with a millisecond precision
+        SubtitleTimeBase other = SubtitleTimeBase.valueOf(50);
+        assertEquals(50000, other.getNumerator());
+        assertEquals(1000, other.getDenominator());
+        assertSame(other, SubtitleTimeBase.valueOf(50));
+    }
+
+    @Test
+    public void testFrameToMillis() throws Exception {
+        SubtitleTimeBase pal = SubtitleTimeBase.valueOf(FrameRate.FR25);
+        assertEquals(0, pal.frameToMillis(0));
+        assertEquals(960, pal.frameToMillis(24));
+        // Some STL files count frames from 1 to 25
+        assertEquals(1000, pal.frameToMillis(25));
+
+        // 23 * 1001 / 24 = 959.29
+        assertEquals(959, SubtitleTimeBase.valueOf(FrameRate.FR23976).frameToMillis(23));
+        // 29 * 1001 / 30 = 967.63
+        assertEquals(968, SubtitleTimeBase.valueOf(FrameRate.FR2997).frameToMillis(29));
+    }
+
+    @Test
+    public void testMillisToFrame() throws Exception {
+        SubtitleTimeBase pal = SubtitleTimeBase.valueOf(FrameRate.FR25);
+        assertEquals(2, pal.millisToFrame(80));
+        assertEquals(2, pal.millisToFrame(99));
+        assertEquals(3, pal.millisToFrame(100));
+        // Rounded up to the next second
+        assertEquals(25, pal.millisToFrame(990));
+
+        // Every frame gets back its number
+        for (FrameRate frameRate : FrameRate.values()) {
+            SubtitleTimeBase timeBase = SubtitleTimeBase.valueOf(frameRate);
+            for (int frame = 0; frame < Math.round(frameRate.getFrameRate()); frame++) {
+                assertEquals(frame, timeBase.millisToFrame(timeBase.frameToMillis(frame)));
+            }
+        }
+    }
+
+    @Test
+    public void testConform() throws Exception {
+        SubtitleTimeBase pal = SubtitleTimeBase.valueOf(FrameRate.FR25);
+        assertEquals(295166, pal.conform(283360, SubtitleTimeBase.valueOf(FrameRate.FR24)));
+
+        // No float drift on long programmes
+        SubtitleTimeBase film = SubtitleTimeBase.valueOf(FrameRate.FR24);
+        assertEquals(36036000, film.conform(36000000, SubtitleTimeBase.valueOf(FrameRate.FR23976)));
+    }
+}
@@ -0,0 +1,35 @@
+package fr.noop.subtitle.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.noop.subtitle.model.SubtitleParsingException;
+import org.junit.jupiter.api.Test;
+
+public class SubtitleTimeCodeScannerTest {
+    private SubtitleTimeCodeScanner tested = new SubtitleTimeCodeScanner();
+
+    @Test
+    public void testSrtLine() throws Exception {
+        tested.scan("00:01:21,456 --> 00:01:23,417");
+        assertEquals(81456, tested.getStartTime());
+        assertEquals(83417, tested.getEndTime());
+    }
+
+    @Test
+    public void testVttLineWithSettings() throws Exception {
+        String line = "01:21.456 --> 100:01:23.4 line:90% align:start";
+        tested.scan(line);
+        assertEquals(81456, tested.getStartTime());
+        assertEquals(100L * 3600000 + 83400, tested.getEndTime());
+        assertEquals("line:90% align:start", line.substring(tested.getSettingsStart()));
+    }
+
+    @Test
+    public void testBadFormat() throws Exception {
+        assertEquals(-1, SubtitleTimeCodeScanner.indexOfArrow("1"));
+        assertThrows(SubtitleParsingException.class, () -> tested.scan("00:01:21 --> 00:01:23,417"));
+        assertThrows(SubtitleParsingException.class, () -> tested.scan("00:61:21,456 --> 00:01:23,417"));
+        assertThrows(SubtitleParsingException.class, () -> tested.scan("00:01:21,456 -> 00:01:23,417"));
+        assertThrows(SubtitleParsingException.class, () -> tested.scan("00:01:21,456 --> 00:01:23,417x"));
+    }
+}
@@ -35,14 +35,13 @@ public class SubtitleTimeCodeTest  {
     @Test
     public void testFormatWithFramerate() throws Exception {
         float frameRate = 25;
-        tested.setMillisecond(80);
-        assertEquals("01:23:12:02", tested.formatWithFramerate(frameRate));
+        assertEquals("01:23:12:02", tested.withMillisecond(80).formatWithFramerate(frameRate));
     }
 
     @Test
     public void testSingleHourTimeToStringException() throws Exception {
-        tested.setHour(10);
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.singleHourTimeToString());
+        SubtitleTimeCode timeCode = tested.withHour(10);
+        Exception exception = assertThrows(InvalidParameterException.class, () -> timeCode.singleHourTimeToString());
         assertEquals("Hour value must be a single digit number", exception.getMessage());
     }
 
@@ -77,20 +76,21 @@ public class SubtitleTimeCodeTest  {
     }
 
     @Test
-    public void testSetHour() throws Exception {
-        tested.setHour(2);
-        assertEquals(2, tested.getHour());
+    public void testWithHour() throws Exception {
+        assertEquals(2, tested.withHour(2).getHour());
+        // The original time code is left unchanged
+        assertEquals(1, tested.getHour());
     }
 
     @Test
-    public void testSetHourException() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setHour(-1));
+    public void testWithHourException() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withHour(-1));
         assertEquals("Hour value must be between 0 and 23", exception.getMessage());
     }
 
     @Test
-    public void testSetHourException2() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setHour(24));
+    public void testWithHourException2() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withHour(24));
         assertEquals("Hour value must be between 0 and 23", exception.getMessage());
     }
 
@@ -100,20 +100,21 @@ public class SubtitleTimeCodeTest  {
     }
 
     @Test
-    public void testSetMinute() throws Exception {
-        tested.setMinute(50);
-        assertEquals(50, tested.getMinute());
+    public void testWithMinute() throws Exception {
+        assertEquals(50, tested.withMinute(50).getMinute());
+        // The original time code is left unchanged
+        assertEquals(23, tested.getMinute());
     }
 
     @Test
-    public void testSetMinuteException1() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setMinute(-1));
+    public void testWithMinuteException1() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withMinute(-1));
         assertEquals("Minute value must be between 0 and 59", exception.getMessage());
     }
 
     @Test
-    public void testSetMinuteException2() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setMinute(60));
+    public void testWithMinuteException2() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withMinute(60));
         assertEquals("Minute value must be between 0 and 59", exception.getMessage());
     }
 
@@ -123,20 +124,21 @@ public class SubtitleTimeCodeTest  {
     }
 
     @Test
-    public void testSetSecond() throws Exception {
-        tested.setSecond(50);
-        assertEquals(50, tested.getSecond());
+    public void testWithSecond() throws Exception {
+        assertEquals(50, tested.withSecond(50).getSecond());
+        // The original time code is left unchanged
+        assertEquals(12, tested.getSecond());
     }
 
     @Test
-    public void testSetSecondException1() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setSecond(-1));
+    public void testWithSecondException1() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withSecond(-1));
         assertEquals("A second value must be between 0 and 59", exception.getMessage());
     }
 
     @Test
-    public void testSetSecondException2() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setSecond(60));
+    public void testWithSecondException2() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withSecond(60));
         assertEquals("A second value must be between 0 and 59", exception.getMessage());
     }
 
@@ -146,20 +148,21 @@ public class SubtitleTimeCodeTest  {
     }
 
     @Test
-    public void testSetMillisecond() throws Exception {
-        tested.setMillisecond(50);
-        assertEquals(50, tested.getMillisecond());
+    public void testWithMillisecond() throws Exception {
+        assertEquals(50, tested.withMillisecond(50).getMillisecond());
+        // The original time code is left unchanged
+        assertEquals(10, tested.getMillisecond());
     }
 
     @Test
-    public void testSetMillisecondException1() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setMillisecond(-1));
+    public void testWithMillisecondException1() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withMillisecond(-1));
         assertEquals("A Millisecond value must be between 0 and 999", exception.getMessage());
     }
 
     @Test
-    public void testSetMillisecondException2() throws Exception {
-        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.setMillisecond(1000));
+    public void testWithMillisecondException2() throws Exception {
+        Exception exception = assertThrows(InvalidParameterException.class, () -> tested.withMillisecond(1000));
         assertEquals("A Millisecond value must be between 0 and 999", exception.getMessage());
     }
 
@@ -214,4 +217,45 @@ public class SubtitleTimeCodeTest  {
         SubtitleTimeCode expected = new SubtitleTimeCode(1, 24, 15, 210);
         assertEquals(expected.getTime(), tested.addOffset(offset).getTime());
     }
+
+    @Test
+    public void testEquals() throws Exception {
+        assertEquals(new SubtitleTimeCode(1, 23, 12, 10), tested);
+        assertEquals(new SubtitleTimeCode(1, 23, 12, 10).hashCode(), tested.hashCode());
+        assertNotEquals(new SubtitleTimeCode(1, 23, 12, 11), tested);
+    }
+
+    @Test
+    public void testValueOf() throws Exception {
+        // Whole minutes are shared
+        assertSame(SubtitleTimeCode.valueOf(3600000), SubtitleTimeCode.valueOf(3600000));
+        assertSame(SubtitleTimeCode.ZERO, SubtitleTimeCode.valueOf(0));
+        assertSame(SubtitleTimeCode.valueOf(7200000), SubtitleTimeCode.valueOf(3600000).withHour(2));
+        assertEquals(tested, SubtitleTimeCode.valueOf(tested.getTime()));
+
+        // Same range as the constructor
+        assertEquals(new SubtitleTimeCode(86400000 + 10).getTime(), SubtitleTimeCode.valueOf(86400000 + 10).getTime());
+        Exception exception = assertThrows(InvalidParameterException.class, () -> SubtitleTimeCode.valueOf(-1));
+        assertEquals("A Millisecond value must be between 0 and 999", exception.getMessage());
+        exception = assertThrows(InvalidParameterException.class, () -> SubtitleTimeCode.valueOf(-3600000));
+        assertEquals("Hour value must be between 0 and 23", exception.getMessage());
+    }
+
+    @Test
+    public void testConversion() throws Exception {
+        SubtitleTimeCode startTC = new SubtitleTimeCode(10, 0, 0, 0);
+        SubtitleTimeCode.Conversion conversion = new SubtitleTimeCode.Conversion(startTC, "00:00:00:00", 25, "24", "00:00:10:00");
+
+        // Conform to 24 fps, then add the offset, then move to the output start
+        SubtitleTimeCode tested2 = new SubtitleTimeCode(10, 4, 43, 360);
+        SubtitleTimeCode expected = new SubtitleTimeCode(0, 5, 5, 166);
+        assertEquals(expected.getTime(), conversion.apply(tested2).getTime());
+        assertEquals(expected.getTime(), conversion.apply(tested2.getTime()));
+        assertEquals(expected.getTime(), tested2.convertWithOptions(startTC, "00:00:00:00", 25, "24", "00:00:10:00").getTime());
+
+        // Time codes are left unchanged without options
+        SubtitleTimeCode.Conversion identity = new SubtitleTimeCode.Conversion(startTC, null, 25, null, null);
+        assertTrue(identity.isIdentity());
+        assertSame(tested2, identity.apply(tested2));
+    }
 }
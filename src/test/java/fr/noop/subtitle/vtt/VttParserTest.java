@@ -1,11 +1,15 @@
 package fr.noop.subtitle.vtt;
 
 import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 public class VttParserTest {
 
@@ -18,4 +22,52 @@ public class VttParserTest {
 
         Assertions.assertEquals(12, vttObject.getCues().size());
     }
+
+    @Test
+    public void testStyleBlocks() throws IOException, SubtitleParsingException {
+        String vtt = "WEBVTT\n\nSTYLE\n::cue(b) { color: red }\n::cue(b), ::cue(i) { color: blue; text-align: left }\n\n" +
+                "00:00:01.000 --> 00:00:02.000\n<b>bold</b> <i>italic</i>\n";
+        VttObject vttObject = vttParser.parse(new ByteArrayInputStream(vtt.getBytes(StandardCharsets.UTF_8)));
+        VttLine line = (VttLine) vttObject.getCues().get(0).getLines().get(0);
+
+        // Last declaration wins
+        SubtitleStyle bold = ((SubtitleStyledText) line.getTexts().get(0)).getStyle();
+        Assertions.assertEquals("blue", bold.getColor());
+        Assertions.assertEquals(SubtitleStyle.TextAlign.LEFT, bold.getTextAlign());
+        Assertions.assertEquals(SubtitleStyle.FontWeight.BOLD, bold.getFontWeight());
+        SubtitleStyle italic = ((SubtitleStyledText) line.getTexts().get(2)).getStyle();
+        Assertions.assertEquals("blue", italic.getColor());
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, italic.getFontStyle());
+    }
+
+    @Test
+    public void testCueTextTags() throws IOException, SubtitleParsingException {
+        String vtt = "WEBVTT\n\n00:00:01.000 --> 00:00:02.000\n" +
+                "<v.loud Mary>Tom &amp; <i>Jerry<b>!</b></i><b>?</b>\n" +
+                "<lang en><c.bg_black.yellow>a <00:00:01.500>b</c></lang> <ruby>c<rt>d</rt></ruby> < 3\n";
+        VttObject vttObject = vttParser.parse(new ByteArrayInputStream(vtt.getBytes(StandardCharsets.UTF_8)));
+        VttLine first = (VttLine) vttObject.getCues().get(0).getLines().get(0);
+        VttLine second = (VttLine) vttObject.getCues().get(0).getLines().get(1);
+
+        Assertions.assertEquals(2, vttObject.getCues().get(0).getLines().size());
+        Assertions.assertEquals("Mary", first.getVoice());
+        Assertions.assertEquals("Mary", second.getVoice());
+
+        // Adjacent tags stay on the same line
+        Assertions.assertEquals(4, first.getTexts().size());
+        Assertions.assertEquals("Tom & ", first.getTexts().get(0).toString());
+        SubtitleStyle italicBold = ((SubtitleStyledText) first.getTexts().get(2)).getStyle();
+        Assertions.assertEquals(SubtitleStyle.FontStyle.ITALIC, italicBold.getFontStyle());
+        Assertions.assertEquals(SubtitleStyle.FontWeight.BOLD, italicBold.getFontWeight());
+        SubtitleStyle bold = ((SubtitleStyledText) first.getTexts().get(3)).getStyle();
+        Assertions.assertNull(bold.getFontStyle());
+
+        // Timestamps, language and ruby tags only delimit text
+        Assertions.assertEquals("a ", second.getTexts().get(0).toString());
+        Assertions.assertEquals("yellow", ((SubtitleStyledText) second.getTexts().get(0)).getStyle().getColor());
+        Assertions.assertEquals("yellow", ((SubtitleStyledText) second.getTexts().get(1)).getStyle().getColor());
+        StringBuilder text = new StringBuilder();
+        second.getTexts().forEach(t -> text.append(t));
+        Assertions.assertEquals("a b cd < 3", text.toString());
+    }
 }